@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the response of a command from its output: as it is, compressed with gzip
+ * (results above {@code tower.agent.compression.min-size}) and ready to send as JSON
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandResponseBenchmark {
+
+    @Param({"64", "4096", "65536", "1048576"})
+    public int outputSize;
+
+    private MessageCodec codec;
+    private byte[] output;
+
+    @Setup
+    public void setup() {
+        codec = new MessageCodec(new ObjectMapper());
+        output = SampleMessages.output(outputSize);
+    }
+
+    @Benchmark
+    public CommandResponse plain() {
+        return new CommandResponse("id-1", output, 0);
+    }
+
+    @Benchmark
+    public CommandResponse gzip() throws IOException {
+        return new CommandResponse("id-1", ResultEncoding.encode(output, CommandResponse.ENCODING_GZIP), 0).encoding(CommandResponse.ENCODING_GZIP);
+    }
+
+    @Benchmark
+    public Object plainJson() throws IOException {
+        return codec.encode(new CommandResponse("id-1", output, 0), WireFormat.JSON);
+    }
+
+    @Benchmark
+    public Object gzipJson() throws IOException {
+        return codec.encode(gzip(), WireFormat.JSON);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of every message type, in both wire formats
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageCodecBenchmark {
+
+    @Param({
+            "command-request", "command-response", "command-chunk", "command-cancel",
+            "command-batch-request", "command-batch-response",
+            "job-status-request", "job-status-response",
+            "file-stat-request", "file-stat-response", "file-read-request", "file-read-response",
+            "log-subscribe", "log-unsubscribe", "log-data",
+            "dir-scan-request", "dir-scan-result",
+            "heartbeat", "info"
+    })
+    public String type;
+
+    @Param({"64", "65536", "1048576"})
+    public int payloadSize;
+
+    @Param({"JSON", "CBOR"})
+    public WireFormat format;
+
+    private MessageCodec codec;
+    private AgentMessage message;
+    private byte[] frame;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = new MessageCodec(new ObjectMapper());
+        message = SampleMessages.create(type, payloadSize);
+        final Object encoded = codec.encode(message, format);
+        frame = encoded instanceof String ? ((String) encoded).getBytes(StandardCharsets.UTF_8) : (byte[]) encoded;
+    }
+
+    @Benchmark
+    public Object encode() throws IOException {
+        return codec.encode(message, format);
+    }
+
+    @Benchmark
+    public AgentMessage decode() throws IOException {
+        return codec.decode(frame);
+    }
+}
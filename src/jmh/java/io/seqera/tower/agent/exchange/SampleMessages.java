@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Messages of every {@link AgentMessage} subtype, with a payload of about the given size
+ */
+final class SampleMessages {
+
+    private SampleMessages() {
+    }
+
+    /**
+     * @param type        Message type name, as in the {@code @type} property
+     * @param payloadSize Approximate size of the payload in bytes: the data of the binary
+     *                    messages, or the entries of the messages with a list
+     * @return A message of that type
+     */
+    static AgentMessage create(String type, int payloadSize) {
+        final byte[] data = output(payloadSize);
+        final int entries = Math.max(1, payloadSize / 100);
+        return switch (type) {
+            case "command-request" -> new CommandRequest("id-1", new String(data));
+            case "command-response" -> new CommandResponse("id-1", data, 0);
+            case "command-chunk" -> new CommandChunk("id-1", 1, data);
+            case "command-cancel" -> new CommandCancel("id-1");
+            case "command-batch-request" -> new CommandBatchRequest("id-1", list(entries, i -> new CommandRequest("id-" + i, "squeue -j " + i)), true);
+            case "command-batch-response" -> new CommandBatchResponse("id-1", list(entries, i -> new CommandResponse("id-" + i, output(100), 0)));
+            case "job-status-request" -> new JobStatusRequest("id-1", list(entries, String::valueOf));
+            case "job-status-response" -> new JobStatusResponse("id-1", list(entries, i -> new JobStatus(String.valueOf(i), JobStatus.State.RUNNING, "R")), System.currentTimeMillis());
+            case "file-stat-request" -> new FileStatRequest("id-1", "/scratch/work/ab/cdef/.command.log");
+            case "file-stat-response" -> new FileStatResponse("id-1", FileStatResponse.TYPE_FILE, payloadSize, System.currentTimeMillis());
+            case "file-read-request" -> new FileReadRequest("id-1", "/scratch/work/ab/cdef/.command.log", 0, (long) payloadSize);
+            case "file-read-response" -> new FileReadResponse("id-1", data, 0, data.length, true);
+            case "log-subscribe" -> new LogSubscribe("id-1", "/scratch/.nextflow.log", LogSubscribe.OFFSET_END);
+            case "log-unsubscribe" -> new LogUnsubscribe("id-1");
+            case "log-data" -> new LogData("id-1", 0, data, false);
+            case "dir-scan-request" -> new DirScanRequest("id-1", "/scratch/work", 2, false);
+            case "dir-scan-result" -> new DirScanResult("id-1", list(entries, i -> new DirSummary("/scratch/work/" + i, 10, 2, 1024L * i, 0)), new DirSummary("/scratch/work", 10L * entries, 2L * entries, 1024L * entries, 0));
+            case "heartbeat" -> new HeartbeatMessage();
+            case "info" -> new InfoMessage("user", "/scratch/work", "0.0.0", List.of(InfoMessage.CAPABILITY_COMMAND_BATCH), ResultEncoding.SUPPORTED);
+            default -> throw new IllegalArgumentException(String.format("Unknown message type '%s'", type));
+        };
+    }
+
+    /**
+     * @return Synthetic command output, lines of log-like text
+     */
+    static byte[] output(int size) {
+        final Random random = new Random(size);
+        final StringBuilder out = new StringBuilder(size + 128);
+        while (out.length() < size) {
+            out.append("1234").append(random.nextInt(1000)).append(" agent ").append(random.nextBoolean() ? "RUNNING" : "PENDING")
+                    .append(" 2026-01-01T00:00:").append(random.nextInt(60)).append(" nf-").append(Long.toHexString(random.nextLong())).append('\n');
+        }
+        out.setLength(size);
+        return out.toString().getBytes();
+    }
+
+    private static <T> List<T> list(int size, IntFunction<T> factory) {
+        final List<T> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(factory.apply(i));
+        }
+        return result;
+    }
+}
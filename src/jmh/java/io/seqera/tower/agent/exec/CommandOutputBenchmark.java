@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import io.seqera.tower.agent.Agent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The output capture loops of {@code Agent.execCommand} against synthetic process
+ * output: captured whole for a response, or read in chunks for a streaming request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandOutputBenchmark {
+
+    private static final int LIMIT = Agent.MAX_WEBSOCKET_PAYLOAD_SIZE - 100;
+
+    @Param({"1024", "1048576", "16777216"})
+    public int outputSize;
+
+    private final BufferPool pool = new BufferPool();
+    private byte[] output;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(outputSize);
+        final StringBuilder out = new StringBuilder(outputSize + 128);
+        while (out.length() < outputSize) {
+            out.append(random.nextInt(100000)).append(" RUNNING nf-").append(Long.toHexString(random.nextLong())).append('\n');
+        }
+        out.setLength(outputSize);
+        output = out.toString().getBytes();
+    }
+
+    @Benchmark
+    public byte[] capture() throws IOException {
+        try (OutputCapture capture = new OutputCapture(pool, LIMIT)) {
+            capture.read(new ByteArrayInputStream(output));
+            return capture.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public int stream(Blackhole blackhole) throws IOException {
+        return new ChunkedOutputReader(pool).read(new ByteArrayInputStream(output), blackhole::consume);
+    }
+}
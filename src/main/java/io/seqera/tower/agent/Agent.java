@@ -16,6 +16,7 @@
 
 package io.seqera.tower.agent;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.configuration.picocli.PicocliRunner;
 import io.micronaut.context.ApplicationContext;
 import io.micronaut.context.annotation.Value;
@@ -27,11 +28,49 @@ import io.micronaut.scheduling.TaskScheduler;
 import io.micronaut.websocket.exceptions.WebSocketClientException;
 import io.seqera.tower.agent.exceptions.RecoverableException;
 import io.seqera.tower.agent.exceptions.UnrecoverableException;
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.CommandBatchRequest;
+import io.seqera.tower.agent.exchange.CommandBatchResponse;
+import io.seqera.tower.agent.exchange.CommandCancel;
+import io.seqera.tower.agent.exchange.CommandChunk;
 import io.seqera.tower.agent.exchange.CommandRequest;
 import io.seqera.tower.agent.exchange.CommandResponse;
+import io.seqera.tower.agent.exchange.DirScanRequest;
+import io.seqera.tower.agent.exchange.DirScanResult;
+import io.seqera.tower.agent.exchange.DirSummary;
+import io.seqera.tower.agent.exchange.FileReadResponse;
+import io.seqera.tower.agent.exchange.FileStatResponse;
 import io.seqera.tower.agent.exchange.HeartbeatMessage;
 import io.seqera.tower.agent.exchange.InfoMessage;
+import io.seqera.tower.agent.exchange.JobStatusRequest;
+import io.seqera.tower.agent.exchange.JobStatusResponse;
+import io.seqera.tower.agent.exchange.LogData;
+import io.seqera.tower.agent.exchange.LogSubscribe;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import io.seqera.tower.agent.exchange.ResultEncoding;
+import io.seqera.tower.agent.exchange.WireFormat;
+import io.seqera.tower.agent.exec.BufferPool;
+import io.seqera.tower.agent.exec.ChunkedOutputReader;
+import io.seqera.tower.agent.exec.CommandCache;
+import io.seqera.tower.agent.exec.CommandExecutor;
+import io.seqera.tower.agent.exec.CommandRunner;
+import io.seqera.tower.agent.exec.OutputCapture;
+import io.seqera.tower.agent.exec.ProcessRunner;
+import io.seqera.tower.agent.exec.RequestHistory;
+import io.seqera.tower.agent.exec.ShellWorkerPool;
+import io.seqera.tower.agent.exec.TrackedCommand;
+import io.seqera.tower.agent.files.DirectoryScanner;
+import io.seqera.tower.agent.files.FileOperations;
+import io.seqera.tower.agent.files.LogTailer;
+import io.seqera.tower.agent.jfr.CommandEvent;
+import io.seqera.tower.agent.metrics.AgentMetrics;
+import io.seqera.tower.agent.metrics.Histogram;
+import io.seqera.tower.agent.metrics.MetricsExporter;
 import io.seqera.tower.agent.model.ServiceInfoResponse;
+import io.seqera.tower.agent.scheduler.JobStatusTracker;
+import io.seqera.tower.agent.scheduler.SchedulerParser;
+import io.seqera.tower.agent.scheduler.SchedulerParsers;
+import io.seqera.tower.agent.utils.Backoff;
 import io.seqera.tower.agent.utils.VersionProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,9 +78,8 @@ import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.lang.module.ModuleDescriptor;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -51,9 +89,27 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Command(
         name = "tw-agent",
@@ -73,12 +129,134 @@ import java.util.concurrent.TimeoutException;
 public class Agent implements Runnable {
     public static final int MAX_WEBSOCKET_PAYLOAD_SIZE = 10485760;
     private static final Logger logger = LoggerFactory.getLogger(Agent.class);
+    private static final int LOG_CHUNK_SIZE = 1024 * 1024;
+    private static final int DIR_SCAN_BATCH_SIZE = 1000;
 
     @Value("${tower.agent.heartbeat:`45s`}")
     Duration heartbeatDelay;
 
-    @Parameters(index = "0", paramLabel = "AGENT_CONNECTION_ID", description = "Agent connection ID to identify this agent.", arity = "1")
-    String agentKey;
+    @Value("${tower.agent.reconnect.initial-delay:`1s`}")
+    Duration reconnectInitialDelay;
+
+    @Value("${tower.agent.reconnect.max-delay:`2m`}")
+    Duration reconnectMaxDelay;
+
+    @Value("${tower.agent.reconnect.multiplier:`2`}")
+    double reconnectMultiplier;
+
+    @Value("${tower.agent.reconnect.preflight-ttl:`10m`}")
+    Duration preflightTtl;
+
+    @Value("${tower.agent.executor.virtual-threads:`true`}")
+    boolean virtualThreads;
+
+    @Value("${tower.agent.executor.max-in-flight:`32`}")
+    int maxInFlight;
+
+    @Value("${tower.agent.executor.queue-size:`256`}")
+    int queueSize;
+
+    @Value("${tower.agent.executor.max-batch-size:`1000`}")
+    int maxBatchSize;
+
+    @Value("${tower.agent.executor.timeout:`10m`}")
+    Duration commandTimeout;
+
+    @Value("${tower.agent.executor.kill-grace:`5s`}")
+    Duration killGrace;
+
+    @Value("${tower.agent.executor.shell-workers:`0`}")
+    int shellWorkers;
+
+    @Value("${tower.agent.executor.shell-worker-max-commands:`100`}")
+    int shellWorkerMaxCommands;
+
+    @Value("${tower.agent.cache.commands:`squeue( .*)?,sacct( .*)?,qstat( .*)?,bjobs( .*)?`}")
+    String cacheCommands;
+
+    @Value("${tower.agent.cache.ttl:`0s`}")
+    Duration cacheTtl;
+
+    @Value("${tower.agent.cache.max-size:`16777216`}")
+    long cacheMaxSize;
+
+    @Value("${tower.agent.scheduler.type:}")
+    String schedulerType;
+
+    @Value("${tower.agent.scheduler.interval:`10s`}")
+    Duration schedulerInterval;
+
+    @Value("${tower.agent.scheduler.command:}")
+    String schedulerCommand;
+
+    @Value("${tower.agent.files.roots:}")
+    String fileRoots;
+
+    @Value("${tower.agent.log-tail.interval:`1s`}")
+    Duration logTailInterval;
+
+    @Value("${tower.agent.log-tail.max-subscriptions:`256`}")
+    int logTailMaxSubscriptions;
+
+    @Value("${tower.agent.dir-scan.parallelism:`16`}")
+    int dirScanParallelism;
+
+    @Value("${tower.agent.dir-scan.cache-entries:`500000`}")
+    int dirScanCacheEntries;
+
+    @Value("${tower.agent.send.high-water-mark:`67108864`}")
+    long sendHighWaterMark;
+
+    @Value("${tower.agent.send.large-message-size:`65536`}")
+    int sendLargeMessageSize;
+
+    @Value("${tower.agent.send.sessions:`1`}")
+    int sendSessions;
+
+    @Value("${tower.agent.upload.min-size:`10485660`}")
+    int uploadMinSize;
+
+    @Value("${tower.agent.upload.chunk-size:`4194304`}")
+    int uploadChunkSize;
+
+    @Value("${tower.agent.journal.dir:}")
+    String journalDir;
+
+    @Value("${tower.agent.journal.max-size:`67108864`}")
+    long journalMaxSize;
+
+    @Value("${tower.agent.dedup.max-entries:`1024`}")
+    int dedupMaxEntries;
+
+    @Value("${tower.agent.dedup.max-size:`16777216`}")
+    long dedupMaxSize;
+
+    @Value("${tower.agent.dedup.dir:}")
+    String dedupDir;
+
+    @Value("${tower.agent.metrics.port:`0`}")
+    int metricsPort;
+
+    @Value("${tower.agent.metrics.host:`127.0.0.1`}")
+    String metricsHost;
+
+    @Value("${tower.agent.metrics.file:}")
+    String metricsFile;
+
+    @Value("${tower.agent.metrics.interval:`15s`}")
+    Duration metricsInterval;
+
+    @Value("${tower.agent.compression.min-size:`4096`}")
+    int compressionMinSize;
+
+    @Value("${tower.agent.wire-format.cbor:`true`}")
+    boolean cborEnabled;
+
+    @Value("${tower.agent.insecure-localhost:`false`}")
+    boolean insecureLocalhost;
+
+    @Parameters(paramLabel = "AGENT_CONNECTION_ID", description = "Agent connection ID to identify this agent. Give several IDs to serve several workspaces from one agent.", arity = "1..*")
+    List<String> agentKeys;
 
     @Option(names = {"-t", "--access-token"}, description = "Tower personal access token. If not provided TOWER_ACCESS_TOKEN variable will be used.", defaultValue = "${TOWER_ACCESS_TOKEN}", required = true)
     String token;
@@ -89,13 +267,40 @@ public class Agent implements Runnable {
     @Option(names = {"-w", "--work-dir"}, description = "Default path where the pipeline scratch data is stored. It can be changed when launching a pipeline from Tower [default: ~/work].")
     Path workDir;
 
-    private String validatedWorkDir;
+    @Option(names = {"--connection-access-token"}, paramLabel = "ID=TOKEN", description = "Tower personal access token of one of the connection IDs, when it is not the default one. It can be repeated.")
+    Map<String, String> connectionTokens = new LinkedHashMap<>();
+
+    @Option(names = {"--connection-url"}, paramLabel = "ID=URL", description = "Tower server API endpoint URL of one of the connection IDs, when it is not the default one. It can be repeated.")
+    Map<String, String> connectionUrls = new LinkedHashMap<>();
+
+    @Option(names = {"--connection-work-dir"}, paramLabel = "ID=PATH", description = "Default work directory of one of the connection IDs, when it is not the default one. It can be repeated.")
+    Map<String, Path> connectionWorkDirs = new LinkedHashMap<>();
+
     private String validatedUserName;
     private final ApplicationContext ctx;
-    private AgentClientSocket agentClient;
+    private final List<AgentConnection> connections = new ArrayList<>();
+    private CommandExecutor executor;
+    private CommandRunner commandRunner;
+    private CommandCache commandCache;
+    private JobStatusTracker jobStatusTracker;
+    private DirectoryScanner directoryScanner;
+    private final BufferPool bufferPool = new BufferPool();
+    private final AgentMetrics metrics = new AgentMetrics();
+    private final Histogram commandQueueTime = metrics.histogram("tw_agent_command_queue_seconds", "Time a command request waits for a free executor slot", Histogram.LATENCY_BUCKETS);
+    private final Histogram commandExecTime = metrics.histogram("tw_agent_command_exec_seconds", "Time to run a command request and build its response", Histogram.LATENCY_BUCKETS);
+    private final AgentMetrics.Counter rejectedCommands = metrics.counter("tw_agent_commands_rejected_total", "Command requests rejected because the agent was busy");
+    private final AgentMetrics.Counter truncatedResponses = metrics.counter("tw_agent_responses_truncated_total", "Command responses truncated to the maximum message size");
+    private final AgentMetrics.Counter sessions = metrics.counter("tw_agent_connections_total", "Websocket sessions opened with Tower");
+    private final AgentMetrics.Counter connectionFailures = metrics.counter("tw_agent_connection_failures_total", "Failed attempts to connect to Tower");
 
-    Agent() {
-        ctx = ApplicationContext.run();
+    // Contents of 'build-info.properties', see getProperties()
+    private Properties buildInfo;
+
+    /**
+     * The agent uses the application context created by {@link PicocliRunner}
+     */
+    Agent(ApplicationContext ctx) {
+        this.ctx = ctx;
     }
 
     public static void main(String[] args) throws Exception {
@@ -106,6 +311,9 @@ public class Agent implements Runnable {
     public void run() {
         try {
             validateParameters();
+            startExecutor();
+            openConnections();
+            startMetrics();
             sendPeriodicHeartbeat();
             infiniteLoop();
         } catch (UnrecoverableException e) {
@@ -117,41 +325,205 @@ public class Agent implements Runnable {
         }
     }
 
-    private void infiniteLoop() throws InterruptedException, IOException {
+    private void infiniteLoop() throws InterruptedException {
         while (true) {
-            try {
-                if (agentClient == null || !agentClient.isOpen()) {
-                    checkTower();
-                    connectTower();
+            long wait = TimeUnit.SECONDS.toNanos(2);
+            for (AgentConnection connection : connections) {
+                if (connection.isDisabled()) {
+                    continue;
+                }
+                if (connection.isOpen()) {
+                    wait = Math.min(wait, connectLanes(connection));
+                    continue;
+                }
+                if (connection.getClient() != null && connection.getClient().getCloseCode() == AgentClientSocket.DUPLICATED_AGENT) {
+                    disableConnection(connection, "Another agent is connected with the same connection ID");
+                    continue;
+                }
+                final long now = System.nanoTime();
+                if (!connection.isDue(now)) {
+                    wait = Math.min(wait, connection.getNextAttempt() - now);
+                    continue;
+                }
+                try {
+                    connectTower(connection);
+                    sessions.increment();
+                    connection.getSessions().incrementAndGet();
+                    connection.getBackoff().reset();
+                    wait = Math.min(wait, connectLanes(connection));
+                } catch (RecoverableException e) {
+                    logger.error(e.getMessage());
+                    connectionFailures.increment();
+                    connection.getFailures().incrementAndGet();
+                    // Check again the API and the token before the next attempt
+                    connection.setPreflightTime(0);
+                    final Duration delay = connection.getBackoff().next();
+                    logger.info("Reconnecting '{}' in {} ms (attempt {})", connection.getKey(), delay.toMillis(), connection.getBackoff().getAttempts());
+                    connection.setNextAttempt(System.nanoTime() + delay.toNanos());
+                    wait = Math.min(wait, delay.toNanos());
+                } catch (UnrecoverableException e) {
+                    disableConnection(connection, e.getMessage());
                 }
-            } catch (RecoverableException e) {
-                logger.error(e.getMessage());
             }
 
-            Thread.sleep(2000);
+            Thread.sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
         }
     }
 
     /**
-     * Connect the agent to Tower using websockets
+     * Stop using a connection after a fatal error. The agent keeps serving the other
+     * connections, and stops when none is left.
+     *
+     * @param connection The failed connection
+     * @param reason     Why it cannot be used
      */
-    private void connectTower() {
-        logger.info("Connecting to Tower");
+    private void disableConnection(AgentConnection connection, String reason) {
+        connection.disable();
+        if (connections.stream().allMatch(AgentConnection::isDisabled)) {
+            throw new UnrecoverableException(reason);
+        }
+        logger.error("Connection '{}' disabled - {}", connection.getKey(), reason);
+    }
+
+    /**
+     * Open the sessions of the lanes of a connection that are not open, when Tower
+     * supports more than one session per connection ID. A failure is not fatal, the
+     * frames of the lane go through the first session until it is opened again.
+     *
+     * @param connection A connection whose first session is open
+     * @return Nanoseconds until the next attempt
+     */
+    private long connectLanes(AgentConnection connection) {
+        final long now = System.nanoTime();
+        long wait = TimeUnit.SECONDS.toNanos(2);
+        if (!connection.isStriped()) {
+            return wait;
+        }
+        if (now - connection.getNextLaneAttempt() < 0) {
+            return connection.getNextLaneAttempt() - now;
+        }
+        for (int lane = 1; lane < connection.getLanes(); lane++) {
+            final AgentClientSocket current = connection.getLaneClient(lane);
+            if (current != null && current.getCloseCode() == AgentClientSocket.DUPLICATED_AGENT) {
+                logger.warn("Tower does not support more than one session per connection, '{}' uses only one", connection.getKey());
+                connection.disableStriping();
+                return wait;
+            }
+            if (current != null && current.isOpen()) {
+                continue;
+            }
+            try {
+                final URI uri = new URI(connection.getUrl() + "/agent/" + connection.getKey() + "/connect?" + AgentClientSocket.SESSION_PARAM + "=" + lane);
+                final AgentClientSocket client = openSession(connection, uri);
+                connection.setLaneClient(lane, client);
+                routeRequests(connection, client);
+                sessions.increment();
+                connection.getSessions().incrementAndGet();
+                connection.getLaneBackoff().reset();
+            } catch (Exception e) {
+                connectionFailures.increment();
+                connection.getFailures().incrementAndGet();
+                final Duration delay = connection.getLaneBackoff().next();
+                logger.warn("Unable to open session {} of '{}', trying again in {} ms - {}", lane, connection.getKey(), delay.toMillis(), e.getMessage());
+                connection.setNextLaneAttempt(System.nanoTime() + delay.toNanos());
+                return delay.toNanos();
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Open a websocket session of a connection. Its requests are not routed until
+     * {@link #routeRequests} is called, once the session is published in the connection.
+     *
+     * @param connection Connection of the session
+     * @param uri        Websocket endpoint, with the session index for the lanes
+     * @return The open session
+     */
+    private AgentClientSocket openSession(AgentConnection connection, URI uri) {
+        final MutableHttpRequest<?> req = HttpRequest.GET(uri).bearerAuth(connection.getToken());
+        if (cborEnabled) {
+            // Tower picks the wire format by the frames it sends, JSON is always supported
+            req.header(MessageCodec.WIRE_FORMATS_HEADER, WireFormat.CBOR.getLabel() + ", " + WireFormat.JSON.getLabel());
+        }
+        if (connection.isStriped()) {
+            req.header(AgentClientSocket.SESSIONS_HEADER, String.valueOf(connection.getLanes()));
+        }
+        final RxWebSocketClient webSocketClient = ctx.getBean(RxWebSocketClient.class);
+        final AgentClientSocket client = webSocketClient.connect(AgentClientSocket.class, req)
+                .timeout(5, TimeUnit.SECONDS)
+                .blockingFirst();
+        client.setOutboundQueue(connection.getOutboundQueue());
+        client.setMetrics(metrics);
+        return client;
+    }
+
+    /**
+     * Route the requests of a session to the handlers. The responses go through the
+     * session published in the connection, so it must be set before.
+     *
+     * @param connection Connection of the session
+     * @param client     A session of the connection
+     */
+    private void routeRequests(AgentConnection connection, AgentClientSocket client) {
+        final FileOperations files = connection.getFileOperations();
+        client.setCommandRequestCallback(message -> submitCommand(connection, message));
+        client.setCommandBatchRequestCallback(message -> submitBatch(connection, message));
+        client.setJobStatusRequestCallback(message -> submitJobStatus(connection, message));
+        client.setFileStatRequestCallback(message -> submitFileRequest(connection, message.getId(), () -> files.stat(message), error -> new FileStatResponse(message.getId(), false).error(error)));
+        client.setFileReadRequestCallback(message -> submitFileRequest(connection, message.getId(), () -> files.read(message), error -> new FileReadResponse(message.getId(), new byte[0], message.getOffset(), 0, false).error(error)));
+        client.setLogSubscribeCallback(message -> submitLogSubscribe(connection, message));
+        client.setLogUnsubscribeCallback(message -> connection.getLogTailer().unsubscribe(message.getId()));
+        client.setDirScanRequestCallback(message -> submitDirScan(connection, message));
+        client.setCommandCancelCallback(message -> cancelCommand(connection, message));
+    }
+
+    /**
+     * Connect the agent to Tower using websockets. The Tower API checks run while the
+     * websocket is opened, and must pass before the session is used.
+     */
+    private void connectTower(AgentConnection connection) {
+        logger.info("Connecting to Tower as '{}'", connection.getKey());
+        // Tower subscribes again to the logs it follows on the new session
+        connection.getLogTailer().unsubscribeAll();
         try {
-            final URI uri = new URI(url + "/agent/" + agentKey + "/connect");
-            if (!uri.getScheme().equals("https")) {
-                throw new UnrecoverableException(String.format("You are trying to connect to an insecure server: %s", url));
-            }
-
-            final MutableHttpRequest<?> req = HttpRequest.GET(uri).bearerAuth(token);
-            final RxWebSocketClient webSocketClient = ctx.getBean(RxWebSocketClient.class);
-            agentClient = webSocketClient.connect(AgentClientSocket.class, req)
-                    .timeout(5, TimeUnit.SECONDS)
-                    .blockingFirst();
-            agentClient.setCommandRequestCallback(this::execCommand);
-            sendInfoMessage();
+            final URI uri = new URI(connection.getUrl() + "/agent/" + connection.getKey() + "/connect");
+            if (!uri.getScheme().equals("https") && !(insecureLocalhost && isLoopback(uri))) {
+                throw new UnrecoverableException(String.format("You are trying to connect to an insecure server: %s", connection.getUrl()));
+            }
+            final Preflight preflight = startPreflight(connection);
+
+            final AgentClientSocket client;
+            try {
+                client = openSession(connection, uri);
+            } catch (RuntimeException e) {
+                // a failed check tells better why the connection failed
+                checkTower(connection, preflight);
+                throw e;
+            }
+            try {
+                checkTower(connection, preflight);
+            } catch (RuntimeException e) {
+                client.close();
+                throw e;
+            }
+            if (connection.getLanes() > 1) {
+                client.setLanes(connection::write);
+            }
+            if (connection.getJournal() != null) {
+                // the new responses wait for the ones kept while disconnected
+                connection.getJournal().hold();
+            }
+            connection.setClient(client);
+            routeRequests(connection, client);
+            sendInfoMessage(connection);
+            if (connection.getJournal() != null) {
+                connection.getJournal().replay(client);
+            }
+        } catch (RecoverableException | UnrecoverableException e) {
+            throw e;
         } catch (URISyntaxException e) {
-            throw new UnrecoverableException(String.format("Invalid URI: %s/agent/%s/connect - %s", url, agentKey, e.getMessage()));
+            throw new UnrecoverableException(String.format("Invalid URI: %s/agent/%s/connect - %s", connection.getUrl(), connection.getKey(), e.getMessage()));
         } catch (WebSocketClientException e) {
             throw new RecoverableException(String.format("Connection error - %s", e.getMessage()));
         } catch (UnknownHostException e) {
@@ -166,47 +538,696 @@ public class Agent implements Runnable {
     }
 
     /**
-     * Executes a command request and sends the response back to Tower
+     * Plain http is only accepted, when enabled, for a Tower running on the same host
+     * such as the local stand-in used to load test the agent
+     */
+    private static boolean isLoopback(URI uri) {
+        final String host = uri.getHost();
+        return host != null && (host.equals("localhost") || host.startsWith("127.") || host.equals("[::1]"));
+    }
+
+    /**
+     * Open the state kept for each connection: the outbound queue, the response journal,
+     * the request history and the files Tower can access
+     */
+    private void openConnections() {
+        for (AgentConnection connection : connections) {
+            try {
+                final String name = connections.size() == 1 ? "tw-agent-sender" : "tw-agent-sender-" + connection.getFileName();
+                connection.setOutboundQueue(new OutboundQueue(sendHighWaterMark, sendLargeMessageSize, sendSessions, name));
+            } catch (IllegalArgumentException e) {
+                throw new UnrecoverableException(e.getMessage());
+            }
+            openJournal(connection);
+            openRequestHistory(connection);
+            try {
+                connection.setFileOperations(new FileOperations(fileRoots(connection.getWorkDir()), MAX_WEBSOCKET_PAYLOAD_SIZE - 1024));
+            } catch (IOException e) {
+                throw new UnrecoverableException(String.format("Invalid file root - %s", e.getMessage()));
+            }
+            connection.setLogTailer(new LogTailer(connection.getFileOperations(), logTailInterval, LOG_CHUNK_SIZE, logTailMaxSubscriptions, connection::send, connection.getOutboundQueue()::hasCapacity));
+        }
+    }
+
+    /**
+     * Open the history of the recent command requests, kept in memory unless a
+     * directory is configured. With several connections each one has its own
+     * subdirectory, the request ids of different workspaces can be the same.
+     */
+    private void openRequestHistory(AgentConnection connection) {
+        try {
+            Path dir = dedupDir != null && !dedupDir.isBlank() ? Paths.get(dedupDir) : null;
+            if (dir != null && connections.size() > 1) {
+                dir = dir.resolve(connection.getFileName());
+            }
+            connection.setRequestHistory(new RequestHistory(dedupMaxEntries, dedupMaxSize, dir, new MessageCodec(ctx.getBean(ObjectMapper.class)), task -> {
+                if (!executor.submit(connection.getKey(), task)) {
+                    throw new RejectedExecutionException("Command executor is full");
+                }
+            }));
+        } catch (IOException | InvalidPathException e) {
+            throw new UnrecoverableException(String.format("Invalid request history directory '%s' - %s", dedupDir, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            throw new UnrecoverableException(e.getMessage());
+        }
+    }
+
+    /**
+     * Open the journal of the responses that could not be sent to Tower, one per
+     * connection ID so that several agents can share the same home directory.
+     */
+    private void openJournal(AgentConnection connection) {
+        if (journalMaxSize <= 0) {
+            logger.info("Response journal disabled, responses are lost if the connection drops");
+            return;
+        }
+        final Path dir = journalDir != null && !journalDir.isBlank()
+                ? Paths.get(journalDir)
+                : Paths.get(System.getProperty("user.home"), ".tw-agent");
+        final Path file = dir.resolve(connection.getFileName() + ".journal");
+        try {
+            connection.setJournal(new ResponseJournal(file, journalMaxSize, new MessageCodec(ctx.getBean(ObjectMapper.class))));
+        } catch (IOException | InvalidPathException e) {
+            throw new UnrecoverableException(String.format("Invalid response journal '%s' - %s", file, e.getMessage()));
+        }
+    }
+
+    /**
+     * Start the executor that runs the command requests, so that a slow command
+     * does not block the websocket while it is running.
+     */
+    private void startExecutor() {
+        try {
+            executor = new CommandExecutor(virtualThreads, maxInFlight, queueSize);
+            commandCache = new CommandCache(CommandCache.parseAllowList(cacheCommands), cacheTtl, cacheMaxSize);
+            commandRunner = shellWorkers > 0 ? new ShellWorkerPool(shellWorkers, shellWorkerMaxCommands, killGrace) : new ProcessRunner(killGrace);
+            if (schedulerType != null && !schedulerType.isBlank()) {
+                final SchedulerParser parser = SchedulerParsers.get(schedulerType.trim());
+                final String command = schedulerCommand != null && !schedulerCommand.isBlank() ? schedulerCommand : parser.pollCommand(validatedUserName);
+                jobStatusTracker = new JobStatusTracker(parser, command, schedulerInterval, commandRunner, bufferPool);
+                logger.info("Tracking {} jobs with '{}' every {}", parser.getName(), command, schedulerInterval);
+            }
+            directoryScanner = new DirectoryScanner(dirScanParallelism, dirScanCacheEntries);
+        } catch (IllegalArgumentException e) {
+            throw new UnrecoverableException(e.getMessage());
+        }
+        logger.info("Running up to {} commands in parallel using {} threads", maxInFlight, virtualThreads ? "virtual" : "platform");
+        if (shellWorkers > 0) {
+            logger.info("Running commands on a pool of {} shell workers", shellWorkers);
+        }
+    }
+
+    /**
+     * @return The work directory followed by the configured file roots
+     */
+    private List<Path> fileRoots(String workDir) {
+        final List<Path> roots = new ArrayList<>();
+        roots.add(Paths.get(workDir));
+        if (fileRoots != null) {
+            for (String root : fileRoots.split(",")) {
+                if (!root.isBlank()) {
+                    roots.add(Paths.get(root.trim()));
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Queue a command request for execution. If the executor is full the request
+     * is rejected and Tower gets an error response straight away.
      *
-     * @param message Command request message
+     * @param connection Connection of the request
+     * @param message    Command request message
      */
-    private void execCommand(CommandRequest message) {
-        CommandResponse response;
+    private void submitCommand(AgentConnection connection, CommandRequest message) {
+        connection.getRequests().incrementAndGet();
+        // Tower may send again a request after a reconnection, it gets the first response
+        final CompletableFuture<CommandResponse> previous = message.isStreaming() ? null : connection.getRequestHistory().attach(message.getId());
+        if (previous != null) {
+            logger.info("Command [{}] was already requested, sending its response", message.getId());
+            previous.whenComplete((response, error) -> {
+                if (error instanceof RejectedExecutionException) {
+                    connection.send(busyResponse(connection, message.getId()));
+                } else if (error == null && response != null) {
+                    connection.deliver(response);
+                } else if (error == null) {
+                    // the kept response could not be read
+                    queueCommand(connection, message);
+                }
+            });
+            return;
+        }
+        queueCommand(connection, message);
+    }
+
+    /**
+     * Queue a command request registered in the request history
+     *
+     * @param connection Connection of the request
+     * @param message    Command request message
+     */
+    private void queueCommand(AgentConnection connection, CommandRequest message) {
+        final TrackedCommand command = connection.getTracker().track(message.getId());
+        final long submitted = System.nanoTime();
+        if (executor.submit(connection.getKey(), () -> {
+            commandQueueTime.observeSince(submitted);
+            execCommand(connection, message, command);
+        })) {
+            return;
+        }
+
+        connection.getTracker().untrack(command);
+        connection.getRequestHistory().forget(message.getId());
+        connection.send(busyResponse(connection, message.getId()));
+    }
+
+    /**
+     * Answer a job status request from the job index. The index may need a poll of
+     * the scheduler, so the request runs on the executor.
+     *
+     * @param connection Connection of the request
+     * @param message    Job status request message
+     */
+    private void submitJobStatus(AgentConnection connection, JobStatusRequest message) {
+        if (jobStatusTracker == null) {
+            connection.send(new JobStatusResponse(message.getId(), List.of(), System.currentTimeMillis()).error("Job status tracking is not enabled"));
+            return;
+        }
+
+        final boolean accepted = executor.submit(connection.getKey(), () -> {
+            JobStatusResponse response;
+            try {
+                final JobStatusTracker.Snapshot snapshot = jobStatusTracker.query();
+                response = new JobStatusResponse(message.getId(), snapshot.get(message.getJobIds()), snapshot.getTimestamp());
+            } catch (Throwable e) {
+                final String error = e.getMessage() != null ? e.getMessage() : e.toString();
+                response = new JobStatusResponse(message.getId(), List.of(), System.currentTimeMillis()).error(error);
+            }
+            logger.trace("RESPONSE: {}", response);
+            sendQueued(connection, response);
+        });
+        if (!accepted) {
+            String error = String.format("Tower Agent is busy running %d commands, try again later", executor.getRunning());
+            connection.send(new JobStatusResponse(message.getId(), List.of(), System.currentTimeMillis()).error(error));
+        }
+    }
+
+    /**
+     * Answer a file request on the executor, file systems like NFS can block
+     *
+     * @param connection Connection of the request
+     * @param id         Request id, for the busy error
+     * @param answer     Builds the response, {@code null} when it was sent already
+     * @param busy       Builds the busy error response
+     */
+    private void submitFileRequest(AgentConnection connection, String id, Supplier<AgentMessage> answer, Function<String, AgentMessage> busy) {
+        final boolean accepted = executor.submit(connection.getKey(), () -> {
+            final AgentMessage response = answer.get();
+            if (response != null) {
+                logger.trace("RESPONSE: {}", response);
+                sendQueued(connection, response);
+            }
+        });
+        if (!accepted) {
+            logger.warn("Rejected file request [{}] - {} commands running and {} queued", id, executor.getRunning(), executor.getQueued());
+            connection.send(busy.apply(String.format("Tower Agent is busy running %d commands, try again later", executor.getRunning())));
+        }
+    }
+
+    /**
+     * Start following a log file. Opening the file can block, so it is done on the executor.
+     *
+     * @param connection Connection of the request
+     * @param message    Log subscribe message
+     */
+    private void submitLogSubscribe(AgentConnection connection, LogSubscribe message) {
+        submitFileRequest(connection, message.getId(), () -> {
+            connection.getLogTailer().subscribe(message);
+            return null;
+        }, error -> new LogData(message.getId(), message.getOffset(), new byte[0], false).error(error));
+    }
+
+    /**
+     * Queue a directory scan. It can be cancelled like a command, by its id.
+     *
+     * @param connection Connection of the request
+     * @param message    Directory scan request message
+     */
+    private void submitDirScan(AgentConnection connection, DirScanRequest message) {
+        final TrackedCommand command = connection.getTracker().track(message.getId());
+        if (executor.submit(connection.getKey(), () -> execDirScan(connection, message, command))) {
+            return;
+        }
 
+        connection.getTracker().untrack(command);
+        logger.warn("Rejected directory scan [{}] - {} commands running and {} queued", message.getId(), executor.getRunning(), executor.getQueued());
+        String error = String.format("Tower Agent is busy running %d commands, try again later", executor.getRunning());
+        connection.send(new DirScanResult(message.getId(), List.of(), null).error(error));
+    }
+
+    /**
+     * Scan a directory tree sending the directory summaries in batches as they are done.
+     * The scanner threads hand the batches over to this thread, they never wait for the
+     * outbound queue.
+     *
+     * @param connection Connection of the request
+     * @param message    Directory scan request message
+     * @param command    Tracks the scan cancellation
+     */
+    private void execDirScan(AgentConnection connection, DirScanRequest message, TrackedCommand command) {
+        final List<DirSummary> batch = new ArrayList<>();
+        final BlockingQueue<List<DirSummary>> batches = new LinkedBlockingQueue<>();
+        DirScanResult result;
         try {
-            logger.trace("REQUEST: {}", message.getCommand());
-            Process process = new ProcessBuilder()
-                    .command("sh", "-c", message.getCommand())
-                    .redirectErrorStream(true)
-                    .start();
-
-            // read the stdout
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            StringBuilder builder = new StringBuilder();
-            String line = null;
-            while ((line = reader.readLine()) != null) {
-                builder.append(line);
-                builder.append("\n");
-            }
-
-            // truncate response to fit the maximum websocket size
-            if (builder.length() > (MAX_WEBSOCKET_PAYLOAD_SIZE - 100)) {
-                logger.warn("Response to [{}] '{}' was truncated", message.getId(), message.getCommand());
-                builder.setLength(MAX_WEBSOCKET_PAYLOAD_SIZE - 100);
-            }
-
-            String result = builder.toString();
-            process.waitFor(10, TimeUnit.SECONDS);
-            int exitStatus = process.exitValue();
-            process.destroy();
-            response = new CommandResponse(message.getId(), result.getBytes(), exitStatus);
+            final Path root = connection.getFileOperations().access(message.getPath());
+            final CompletableFuture<DirSummary> scan = directoryScanner.scanAsync(root, message.getDepth(), message.isRefresh(), command, entry -> {
+                synchronized (batch) {
+                    batch.add(entry);
+                    if (batch.size() >= DIR_SCAN_BATCH_SIZE) {
+                        batches.add(new ArrayList<>(batch));
+                        batch.clear();
+                    }
+                }
+            });
+            // an empty batch marks the end of the scan
+            scan.whenComplete((summary, error) -> batches.add(List.of()));
+            for (List<DirSummary> next = batches.take(); !next.isEmpty(); next = batches.take()) {
+                sendQueued(connection, new DirScanResult(message.getId(), next, null));
+            }
+            final DirSummary total;
+            try {
+                total = scan.join();
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+            result = new DirScanResult(message.getId(), batch, total);
+        } catch (CancellationException e) {
+            result = new DirScanResult(message.getId(), List.of(), null).error("Scan cancelled");
         } catch (Throwable e) {
-            response = new CommandResponse(message.getId(), e.getMessage().getBytes(), 1);
+            final String error = e.getMessage() != null ? e.getMessage() : e.toString();
+            result = new DirScanResult(message.getId(), List.of(), null).error(error);
+        } finally {
+            connection.getTracker().untrack(command);
+        }
+        logger.info("Sending directory scan result {}'", result.getId());
+        logger.trace("RESPONSE: {}", result);
+        sendQueued(connection, result);
+    }
+
+    /**
+     * Cancel a queued or running command. The command is answered with
+     * {@link CommandResponse#EXIT_CANCELLED} once its processes are gone.
+     *
+     * @param connection Connection of the request
+     * @param message    Command cancel message
+     */
+    private void cancelCommand(AgentConnection connection, CommandCancel message) {
+        if (connection.getTracker().cancel(message.getId())) {
+            logger.info("Cancelling command [{}]", message.getId());
+        } else {
+            logger.debug("Command [{}] is not running, nothing to cancel", message.getId());
+        }
+    }
+
+    /**
+     * Queue a batch of commands for execution. Parallel batches take one executor
+     * slot per command, the other batches run their commands one after the other
+     * in a single slot. Tower gets all the results in one response.
+     *
+     * @param connection Connection of the request
+     * @param batch      Command batch request message
+     */
+    private void submitBatch(AgentConnection connection, CommandBatchRequest batch) {
+        final List<CommandRequest> requests = batch.getCommands() != null ? batch.getCommands() : List.of();
+        connection.getRequests().addAndGet(requests.size());
+        if (requests.size() > maxBatchSize) {
+            logger.warn("Rejected batch {} of {} commands, the limit is {}", batch.getId(), requests.size(), maxBatchSize);
+            String error = String.format("Batch of %d commands is over the limit of %d commands per batch", requests.size(), maxBatchSize);
+            connection.send(new CommandBatchResponse(batch.getId(), List.of()).error(error));
+            return;
+        }
+        // the results share one message, each gets its part of it
+        final int limit = Math.max(0, (MAX_WEBSOCKET_PAYLOAD_SIZE - 100) / Math.max(1, requests.size()) - 100);
+        final CommandResponse[] results = new CommandResponse[requests.size()];
+        final TrackedCommand[] commands = new TrackedCommand[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            commands[i] = connection.getTracker().track(requests.get(i).getId());
+        }
+        logger.info("Received batch {} of {} commands", batch.getId(), requests.size());
+
+        if (!batch.isParallel() || requests.isEmpty()) {
+            final boolean accepted = executor.submit(connection.getKey(), () -> {
+                for (int i = 0; i < requests.size(); i++) {
+                    results[i] = runCommand(connection, requests.get(i), commands[i], limit);
+                }
+                sendResponse(connection, batchResponse(batch, results));
+            });
+            if (!accepted) {
+                for (int i = 0; i < requests.size(); i++) {
+                    connection.getTracker().untrack(commands[i]);
+                    results[i] = busyResponse(connection, requests.get(i).getId());
+                }
+                connection.send(batchResponse(batch, results));
+            }
+            return;
         }
+
+        final AtomicInteger pending = new AtomicInteger(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final int index = i;
+            final boolean accepted = executor.submit(connection.getKey(), () -> {
+                results[index] = runCommand(connection, requests.get(index), commands[index], limit);
+                if (pending.decrementAndGet() == 0) {
+                    sendResponse(connection, batchResponse(batch, results));
+                }
+            });
+            if (!accepted) {
+                connection.getTracker().untrack(commands[index]);
+                results[index] = busyResponse(connection, requests.get(index).getId());
+                if (pending.decrementAndGet() == 0) {
+                    connection.send(batchResponse(batch, results));
+                }
+            }
+        }
+    }
+
+    private CommandBatchResponse batchResponse(CommandBatchRequest batch, CommandResponse[] results) {
+        for (int i = 0; i < results.length; i++) {
+            if (batch.getCommands().get(i).isOmitResultAsString()) {
+                results[i].omitResultAsString();
+            }
+        }
+        final CommandBatchResponse response = new CommandBatchResponse(batch.getId(), List.of(results));
+        logger.info("Sending batch response {}'", response.getId());
+        logger.trace("RESPONSE: {}", response);
+        return response;
+    }
+
+    private CommandResponse busyResponse(AgentConnection connection, String id) {
+        rejectedCommands.increment();
+        connection.getRejected().incrementAndGet();
+        logger.warn("Rejected command [{}] - {} commands running and {} queued", id, executor.getRunning(), executor.getQueued());
+        String error = String.format("Tower Agent is busy running %d commands, try again later", executor.getRunning());
+        return new CommandResponse(id, error.getBytes(), 1);
+    }
+
+    /**
+     * Executes a command request and sends the response back to Tower
+     *
+     * @param connection Connection of the request
+     * @param message    Command request message
+     * @param command    Tracks the command cancellation and timeout
+     */
+    private void execCommand(AgentConnection connection, CommandRequest message, TrackedCommand command) {
+        final long start = System.nanoTime();
+        final CommandEvent event = new CommandEvent();
+        event.begin();
+        final CommandResponse response = message.isStreaming()
+                ? streamCommand(connection, message, command)
+                : runCommand(connection, message, command, MAX_WEBSOCKET_PAYLOAD_SIZE - 100);
+        commandExecTime.observeSince(start);
+        event.commit(message.getId(), message.getCommand(), message.isStreaming(), response.getExitStatus());
+        if (message.isOmitResultAsString()) {
+            response.omitResultAsString();
+        }
+        if (!message.isStreaming()) {
+            connection.getRequestHistory().complete(message.getId(), response);
+        }
+
         // send result
         logger.info("Sending response {}'", response.getId());
         logger.trace("RESPONSE: {}", response);
-        agentClient.sendAsync(response);
+        sendResponse(connection, response);
+    }
+
+    /**
+     * Run a command sending the stdout to Tower as it is produced
+     *
+     * @param connection Connection of the request
+     * @param message    Command request message
+     * @param command    Tracks the command cancellation and timeout
+     * @return The final response, with the number of chunks sent
+     */
+    private CommandResponse streamCommand(AgentConnection connection, CommandRequest message, TrackedCommand command) {
+        final AtomicInteger sequence = new AtomicInteger();
+        final AtomicBoolean finished = new AtomicBoolean();
+
+        try {
+            logger.trace("REQUEST: {}", message.getCommand());
+            if (!command.isActive()) {
+                return new CommandResponse(message.getId(), "Command cancelled before it started".getBytes(), CommandResponse.EXIT_CANCELLED, 0);
+            }
+
+            int exitStatus = commandRunner.run(message.getCommand(), command, commandTimeout(message), input ->
+                    new ChunkedOutputReader(bufferPool).read(input, data -> {
+                        // drop the output of an abandoned command after its response
+                        if (finished.get()) {
+                            return;
+                        }
+                        CommandChunk chunk = new CommandChunk(message.getId(), sequence.getAndIncrement(), data);
+                        logger.trace("CHUNK: {}", chunk);
+                        sendQueued(connection, chunk);
+                    })
+            );
+
+            finished.set(true);
+            return new CommandResponse(message.getId(), new byte[0], exitStatus(message, command, exitStatus), sequence.get());
+        } catch (Throwable e) {
+            finished.set(true);
+            final String error = e.getMessage() != null ? e.getMessage() : e.toString();
+            return new CommandResponse(message.getId(), error.getBytes(), exitStatus(message, command, 1), sequence.get());
+        } finally {
+            connection.getTracker().untrack(command);
+        }
+    }
+
+    /**
+     * Run a command and capture its stdout
+     *
+     * @param connection Connection of the request
+     * @param message    Command request message
+     * @param command    Tracks the command cancellation and timeout
+     * @param limit      Maximum bytes of output in the response
+     * @return The response
+     */
+    private CommandResponse runCommand(AgentConnection connection, CommandRequest message, TrackedCommand command, int limit) {
+        try {
+            logger.trace("REQUEST: {}", message.getCommand());
+            if (!command.isActive()) {
+                return new CommandResponse(message.getId(), "Command cancelled before it started".getBytes(), CommandResponse.EXIT_CANCELLED);
+            }
+
+            // read-only commands can share the result of an identical request
+            final boolean cacheable = commandCache.isCacheable(message.getCommand());
+            final ResultUpload upload = !cacheable && uploadMinSize > 0 && connection.isUploading()
+                    ? new ResultUpload(ctx.getBean(RxHttpClient.class), connection.getUrl(), connection.getKey(), message.getId(), connection.getToken(), uploadChunkSize, new Backoff(reconnectInitialDelay, reconnectMaxDelay, reconnectMultiplier))
+                    : null;
+            final CommandCache.Result result = cacheable
+                    ? commandCache.run(message.getCommand(), command, commandTimeout(message), () -> captureCommand(message, command, MAX_WEBSOCKET_PAYLOAD_SIZE - 100, null))
+                    : captureCommand(message, command, limit, upload);
+
+            // a result over the upload size goes to Tower over HTTP, or in the response
+            if (upload != null && upload.isStarted()) {
+                if (upload.isFinished()) {
+                    logger.info("Uploaded the result of [{}] '{}' ({} bytes)", message.getId(), message.getCommand(), upload.getSize());
+                    return new CommandResponse(message.getId(), new byte[0], exitStatus(message, command, result.getExitStatus())).resultRef(upload.getRef(), upload.getSize());
+                }
+                if (upload.isUnsupported()) {
+                    logger.warn("Tower does not accept the upload of large results from '{}', they will be truncated", connection.getKey());
+                    connection.disableUploads();
+                }
+                logger.warn("Result of [{}] '{}' is sent in the response, the upload failed - {}", message.getId(), message.getCommand(), upload.getError());
+            }
+
+            byte[] output = result.getOutput();
+            if (output.length > limit) {
+                logger.warn("Response to [{}] '{}' was truncated ({} bytes)", message.getId(), message.getCommand(), output.length);
+                truncatedResponses.increment();
+                output = Arrays.copyOf(output, limit);
+            }
+            return encodeResult(message, new CommandResponse(message.getId(), output, exitStatus(message, command, result.getExitStatus())));
+        } catch (Throwable e) {
+            final String error = e.getMessage() != null ? e.getMessage() : e.toString();
+            return new CommandResponse(message.getId(), error.getBytes(), exitStatus(message, command, 1));
+        } finally {
+            connection.getTracker().untrack(command);
+        }
+    }
+
+    /**
+     * Run a command capturing the stdout as it is
+     *
+     * @param message Command request message
+     * @param command Tracks the command cancellation and timeout
+     * @param limit   Maximum bytes of output kept
+     * @param upload  Receives the whole output when it is over the upload size, {@code null} to truncate it
+     * @return The command output and exit status, no output once it is uploaded
+     */
+    private CommandCache.Result captureCommand(CommandRequest message, TrackedCommand command, int limit, ResultUpload upload) throws IOException, InterruptedException {
+        try (OutputCapture output = upload != null ? new OutputCapture(bufferPool, limit, uploadMinSize, upload) : new OutputCapture(bufferPool, limit)) {
+            int exitStatus = commandRunner.run(message.getCommand(), command, commandTimeout(message), output::read);
+            // the first bytes are kept in case the upload fails
+            if (upload != null && upload.isStarted() && upload.finish()) {
+                return new CommandCache.Result(new byte[0], exitStatus);
+            }
+            if (output.isTruncated()) {
+                logger.warn("Response to [{}] '{}' was truncated ({} bytes)", message.getId(), message.getCommand(), output.getTotal());
+                truncatedResponses.increment();
+            }
+            return new CommandCache.Result(output.toByteArray(), exitStatus);
+        }
+    }
+
+    /**
+     * Send a message from a thread that runs a request, waiting first while the
+     * outbound queue of the connection is over its high-water mark. It must not be
+     * used on the websocket threads.
+     *
+     * @param connection Connection to send the message to
+     * @param message    The message to send
+     */
+    private void sendQueued(AgentConnection connection, AgentMessage message) {
+        try {
+            connection.getOutboundQueue().awaitCapacity();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connection.send(message);
+    }
+
+    /**
+     * Send the final response of a request. When the connection is lost the response
+     * is kept in the journal and sent again after reconnecting.
+     *
+     * @param connection Connection to send the response to
+     * @param response   The response to send
+     */
+    private void sendResponse(AgentConnection connection, AgentMessage response) {
+        try {
+            connection.getOutboundQueue().awaitCapacity();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connection.deliver(response);
+    }
+
+    /**
+     * @param message Command request message
+     * @return The command timeout, {@code null} if it can run forever
+     */
+    private Duration commandTimeout(CommandRequest message) {
+        final Duration timeout = message.getTimeout() != null ? Duration.ofMillis(message.getTimeout()) : commandTimeout;
+        return timeout.isZero() || timeout.isNegative() ? null : timeout;
+    }
+
+    /**
+     * Replace the exit status of the commands that were killed by the agent
+     */
+    private static int exitStatus(CommandRequest message, TrackedCommand command, int exitStatus) {
+        switch (command.getState()) {
+            case TIMED_OUT:
+                logger.warn("Command [{}] '{}' timed out", message.getId(), message.getCommand());
+                return CommandResponse.EXIT_TIMEOUT;
+            case CANCELLED:
+                return CommandResponse.EXIT_CANCELLED;
+            default:
+                return exitStatus;
+        }
+    }
+
+    /**
+     * Compress the response result if Tower accepts one of the supported encodings
+     * and the result is big enough to be worth it.
+     *
+     * @param message  Command request message
+     * @param response Response with the result as it is
+     * @return The response to send
+     */
+    private CommandResponse encodeResult(CommandRequest message, CommandResponse response) {
+        final String encoding = ResultEncoding.negotiate(message.getAcceptEncoding());
+        final byte[] result = response.getResult();
+        if (encoding == null || result.length < compressionMinSize) {
+            return response;
+        }
+
+        final byte[] encoded = ResultEncoding.encode(result, encoding);
+        if (encoded.length >= result.length) {
+            return response;
+        }
+
+        logger.debug("Response to [{}] encoded with {} from {} to {} bytes", message.getId(), encoding, result.length, encoded.length);
+        return new CommandResponse(response.getId(), encoded, response.getExitStatus()).encoding(encoding);
+    }
+
+    /**
+     * Register the metrics of the agent components and make them available on the
+     * configured HTTP port and/or file
+     */
+    private void startMetrics() {
+        commandRunner.setSpawnTime(metrics.getSpawnTime());
+        metrics.gauge("tw_agent_commands_running", "Command requests running", executor::getRunning);
+        metrics.gauge("tw_agent_commands_queued", "Command requests waiting for a free executor slot", executor::getQueued);
+        metrics.gauge("tw_agent_outbound_queued_messages", "Messages waiting to be sent to Tower", () -> connections.stream().mapToLong(it -> it.getOutboundQueue().getQueued()).sum());
+        metrics.gauge("tw_agent_outbound_queued_bytes", "Bytes waiting to be sent to Tower", () -> connections.stream().mapToLong(it -> it.getOutboundQueue().getQueuedBytes()).sum());
+        if (sendSessions > 1) {
+            metrics.gauge("tw_agent_outbound_lane_queued_bytes", "Bytes waiting to be sent to Tower in each lane", "lane", () -> {
+                final Map<String, Number> result = new LinkedHashMap<>();
+                for (int lane = 0; lane < sendSessions; lane++) {
+                    final int current = lane;
+                    result.put(String.valueOf(lane), connections.stream().mapToLong(it -> it.getOutboundQueue().getQueuedBytes(current)).sum());
+                }
+                return result;
+            });
+        }
+        metrics.counter("tw_agent_outbound_sent_total", "Messages sent to Tower", () -> connections.stream().mapToLong(it -> it.getOutboundQueue().getSent()).sum());
+        metrics.counter("tw_agent_outbound_failed_total", "Messages that could not be sent to Tower", () -> connections.stream().mapToLong(it -> it.getOutboundQueue().getFailed()).sum());
+        metrics.gauge("tw_agent_connected", "Websocket sessions with Tower that are open", () -> connections.stream().filter(AgentConnection::isOpen).count());
+        metrics.counter("tw_agent_command_cache_hits_total", "Command results served from the cache", commandCache::getHits);
+        metrics.counter("tw_agent_command_cache_coalesced_total", "Command requests that shared a running command", commandCache::getCoalesced);
+        metrics.counter("tw_agent_command_cache_misses_total", "Cacheable commands that had to run", commandCache::getMisses);
+        metrics.counter("tw_agent_repeated_requests_total", "Repeated command request ids answered with the first response",
+                () -> connections.stream().mapToLong(it -> it.getRequestHistory().getRepeated() + it.getRequestHistory().getAttached()).sum());
+        if (journalMaxSize > 0) {
+            metrics.gauge("tw_agent_journal_pending", "Responses waiting for a connection to Tower", () -> connections.stream().mapToLong(it -> it.getJournal().getPending()).sum());
+        }
+
+        // the same metrics for each connection, labelled with its connection ID
+        metrics.gauge("tw_agent_connection_up", "1 when the websocket session of the connection is open", "connection", () -> byConnection(it -> it.isOpen() ? 1 : 0));
+        metrics.gauge("tw_agent_connection_sessions_open", "Websocket sessions of the connection that are open, the first one and those of the lanes", "connection", () -> byConnection(AgentConnection::getOpenSessions));
+        metrics.gauge("tw_agent_connection_outbound_queued_bytes", "Bytes of the connection waiting to be sent to Tower", "connection", () -> byConnection(it -> it.getOutboundQueue().getQueuedBytes()));
+        metrics.counter("tw_agent_connection_commands_total", "Command requests received on the connection", "connection", () -> byConnection(it -> it.getRequests().get()));
+        metrics.counter("tw_agent_connection_sessions_total", "Websocket sessions opened for the connection", "connection", () -> byConnection(it -> it.getSessions().get()));
+        metrics.counter("tw_agent_connection_failures_total", "Failed attempts to connect", "connection", () -> byConnection(it -> it.getFailures().get()));
+        metrics.counter("tw_agent_connection_commands_rejected_total", "Command requests of the connection rejected because the agent was busy", "connection", () -> byConnection(it -> it.getRejected().get()));
+        if (journalMaxSize > 0) {
+            metrics.gauge("tw_agent_connection_journal_pending", "Responses of the connection waiting to be sent", "connection", () -> byConnection(it -> it.getJournal().getPending()));
+        }
+
+        final MetricsExporter exporter = new MetricsExporter(metrics);
+        if (metricsPort > 0) {
+            try {
+                exporter.start(metricsHost, metricsPort);
+            } catch (IOException e) {
+                throw new UnrecoverableException(String.format("Unable to serve the metrics at %s:%d - %s", metricsHost, metricsPort, e.getMessage()));
+            }
+        }
+        if (metricsFile != null && !metricsFile.isBlank()) {
+            final Path file = Paths.get(metricsFile);
+            ctx.getBean(TaskScheduler.class).scheduleWithFixedDelay(metricsInterval, metricsInterval, () -> exporter.write(file));
+            logger.info("Writing metrics to '{}' every {}", file, metricsInterval);
+        }
+    }
+
+    /**
+     * @return The value of a metric for each connection ID
+     */
+    private Map<String, Number> byConnection(Function<AgentConnection, Number> value) {
+        final Map<String, Number> result = new LinkedHashMap<>();
+        for (AgentConnection connection : connections) {
+            result.put(connection.getKey(), value.apply(connection));
+        }
+        return result;
     }
 
     /**
@@ -215,19 +1236,57 @@ public class Agent implements Runnable {
     private void sendPeriodicHeartbeat() {
         TaskScheduler scheduler = ctx.getBean(TaskScheduler.class);
         scheduler.scheduleWithFixedDelay(heartbeatDelay, heartbeatDelay, () -> {
-            if (agentClient != null && agentClient.isOpen()) {
-                logger.info("Sending heartbeat");
-                logger.trace("websocket session '{}'", agentClient.getId());
-                agentClient.send(new HeartbeatMessage());
+            if (connections.stream().noneMatch(AgentConnection::isOpen)) {
+                return;
+            }
+            logger.info("Sending heartbeat ({} commands running, {} queued)", executor.getRunning(), executor.getQueued());
+            logger.debug("Command cache: {} hits, {} coalesced, {} misses", commandCache.getHits(), commandCache.getCoalesced(), commandCache.getMisses());
+            for (AgentConnection connection : connections) {
+                if (!connection.isOpen()) {
+                    continue;
+                }
+                final OutboundQueue queue = connection.getOutboundQueue();
+                logger.debug("Outbound queue of '{}': {} messages, {} bytes queued (peak {}), {} sent, {} failed, latency mean {} ms max {} ms", connection.getKey(),
+                        queue.getQueued(), queue.getQueuedBytes(), queue.getPeakBytes(), queue.getSent(), queue.getFailed(),
+                        String.format("%.1f", queue.getMeanLatencyMillis()), String.format("%.1f", queue.getMaxLatencyMillis()));
+                final RequestHistory history = connection.getRequestHistory();
+                logger.debug("Request history of '{}': {} requests ({} bytes), {} repeated, {} attached", connection.getKey(), history.getEntries(), history.getSize(), history.getRepeated(), history.getAttached());
+                logger.trace("websocket session '{}'", connection.getClient().getId());
+                // a slow or failed session must not hold back the heartbeats of the others
+                connection.getClient().sendAsync(new HeartbeatMessage()).whenComplete((result, error) -> {
+                    if (error != null) {
+                        logger.warn("Unable to send heartbeat to '{}' - {}", connection.getKey(), error.getMessage());
+                    }
+                });
+                // the sessions of the lanes must not look idle either
+                for (int lane = 1; lane < connection.getLanes(); lane++) {
+                    final AgentClientSocket client = connection.getLaneClient(lane);
+                    if (client != null && client.isOpen()) {
+                        client.sendAsync(new HeartbeatMessage());
+                    }
+                }
             }
         });
     }
 
-    private void sendInfoMessage() throws IOException {
-        agentClient.send(new InfoMessage(
+    private List<String> capabilities() {
+        final List<String> capabilities = new ArrayList<>(List.of(InfoMessage.CAPABILITY_COMMAND_CHUNK, InfoMessage.CAPABILITY_COMMAND_BATCH, InfoMessage.CAPABILITY_FILE_OPS, InfoMessage.CAPABILITY_LOG_TAIL, InfoMessage.CAPABILITY_DIR_SCAN));
+        if (jobStatusTracker != null) {
+            capabilities.add(InfoMessage.CAPABILITY_JOB_STATUS);
+        }
+        if (uploadMinSize > 0) {
+            capabilities.add(InfoMessage.CAPABILITY_RESULT_UPLOAD);
+        }
+        return capabilities;
+    }
+
+    private void sendInfoMessage(AgentConnection connection) throws IOException {
+        connection.getClient().send(new InfoMessage(
                 validatedUserName,
-                validatedWorkDir,
-                getVersion()
+                connection.getWorkDir(),
+                getVersion(),
+                capabilities(),
+                ResultEncoding.SUPPORTED
         ));
     }
 
@@ -254,32 +1313,115 @@ public class Agent implements Runnable {
             }
         }
 
-        // Validate workDir exists
-        if (!Files.exists(workDir)) {
-            throw new UnrecoverableException(String.format("The work directory '%s' do not exists. Create it or provide a different one using '--work-dir'.", workDir));
+        if (uploadMinSize > 0 && uploadChunkSize <= 0) {
+            throw new UnrecoverableException(String.format("Invalid result upload chunk size: %d", uploadChunkSize));
+        }
+        if (sendSessions < 1) {
+            throw new UnrecoverableException(String.format("Invalid number of sessions per connection: %d", sendSessions));
+        }
+
+        // The per connection settings must refer to one of the connection IDs
+        final Set<String> keys = new LinkedHashSet<>(agentKeys);
+        if (keys.size() < agentKeys.size()) {
+            throw new UnrecoverableException("The same agent connection ID is given more than once.");
         }
-        validatedWorkDir = workDir.toAbsolutePath().normalize().toString();
+        checkConnectionIds("--connection-access-token", connectionTokens.keySet(), keys);
+        checkConnectionIds("--connection-url", connectionUrls.keySet(), keys);
+        checkConnectionIds("--connection-work-dir", connectionWorkDirs.keySet(), keys);
 
         String agentVersion = getVersion();
         String requiredApiVersion = getVersionApi();
 
         logger.info("TOWER AGENT v{}", agentVersion);
         logger.info("Compatible with TOWER API v{}", requiredApiVersion);
-        logger.info("Connecting as user '{}' with default work directory '{}'", validatedUserName, validatedWorkDir);
+
+        for (String key : keys) {
+            // Validate workDir exists
+            final Path dir = connectionWorkDirs.getOrDefault(key, workDir);
+            if (!Files.exists(dir)) {
+                throw new UnrecoverableException(String.format("The work directory '%s' do not exists. Create it or provide a different one using '--work-dir'.", dir));
+            }
+            final String validatedWorkDir = dir.toAbsolutePath().normalize().toString();
+            final String connectionUrl = connectionUrls.getOrDefault(key, url);
+            final Backoff backoff = new Backoff(reconnectInitialDelay, reconnectMaxDelay, reconnectMultiplier);
+            final Backoff laneBackoff = new Backoff(reconnectInitialDelay, reconnectMaxDelay, reconnectMultiplier);
+            connections.add(new AgentConnection(key, connectionTokens.getOrDefault(key, token), connectionUrl, validatedWorkDir, backoff, laneBackoff, sendSessions));
+            if (keys.size() == 1) {
+                logger.info("Connecting as user '{}' with default work directory '{}'", validatedUserName, validatedWorkDir);
+            } else {
+                logger.info("Connecting '{}' to {} as user '{}' with default work directory '{}'", key, connectionUrl, validatedUserName, validatedWorkDir);
+            }
+        }
+    }
+
+    private static void checkConnectionIds(String option, Set<String> ids, Set<String> keys) {
+        for (String id : ids) {
+            if (!keys.contains(id)) {
+                throw new UnrecoverableException(String.format("Unknown agent connection ID '%s' in option '%s'.", id, option));
+            }
+        }
+    }
+
+    /**
+     * Requests of the Tower API checks, see {@link #checkTower(AgentConnection, Preflight)}
+     */
+    private static class Preflight {
+        final Future<ServiceInfoResponse> infoRequest;
+        final Future<String> userRequest;
+
+        Preflight(Future<ServiceInfoResponse> infoRequest, Future<String> userRequest) {
+            this.infoRequest = infoRequest;
+            this.userRequest = userRequest;
+        }
+    }
+
+    /**
+     * Send the requests of the Tower API checks. A successful check is reused for
+     * {@code preflightTtl}, so a quick reconnection goes straight to the websocket.
+     *
+     * @return The running requests, {@code null} if there is nothing to check
+     */
+    private Preflight startPreflight(AgentConnection connection) {
+        final long preflightTime = connection.getPreflightTime();
+        if (preflightTime != 0 && System.nanoTime() - preflightTime < preflightTtl.toNanos()) {
+            logger.debug("Tower API and token checked less than {} ago", preflightTtl);
+            return null;
+        }
+
+        // Both requests run at the same time, the results are checked in order
+        final RxHttpClient httpClient = ctx.getBean(RxHttpClient.class);
+        final String url = connection.getUrl();
+        final String token = connection.getToken();
+        try {
+            return new Preflight(
+                    httpClient.retrieve(HttpRequest.GET(new URI(url + "/service-info")).bearerAuth(token), ServiceInfoResponse.class).toFuture(),
+                    httpClient.retrieve(HttpRequest.GET(new URI(url + "/user")).bearerAuth(token)).toFuture());
+        } catch (URISyntaxException e) {
+            throw new UnrecoverableException(String.format("Invalid URI: %s - %s", url, e.getMessage()));
+        }
     }
 
     /**
      * Do some health checks to the Tower API endpoint to verify that it is available and
      * compatible with this Agent.
+     *
+     * @param connection The connection to check
+     * @param preflight  The requests sent by {@link #startPreflight(AgentConnection)}, {@code null} to skip the checks
      */
-    private void checkTower() throws IOException {
-        final RxHttpClient httpClient = ctx.getBean(RxHttpClient.class);
+    private void checkTower(AgentConnection connection, Preflight preflight) throws IOException {
+        if (preflight == null) {
+            return;
+        }
+        final String url = connection.getUrl();
+
         ServiceInfoResponse infoResponse = null;
         try {
-            final URI uri = new URI(url + "/service-info");
-            final MutableHttpRequest<?> req = HttpRequest.GET(uri).bearerAuth(token);
-            infoResponse = httpClient.retrieve(req, ServiceInfoResponse.class).blockingFirst();
+            infoResponse = preflight.infoRequest.get();
         } catch (Exception e) {
+            preflight.userRequest.cancel(true);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             if (url.contains("/api")) {
                 throw new RecoverableException(String.format("Tower API endpoint '%s' it is not available", url));
             }
@@ -296,12 +1438,14 @@ public class Agent implements Runnable {
         }
 
         try {
-            final URI uri = new URI(url + "/user");
-            final MutableHttpRequest<?> req = HttpRequest.GET(uri).bearerAuth(token);
-            httpClient.retrieve(req).blockingFirst();
+            preflight.userRequest.get();
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             throw new UnrecoverableException(String.format("Invalid TOWER_ACCESS_TOKEN, check that the given token has access at '%s'.", url));
         }
+        connection.setPreflightTime(System.nanoTime());
     }
 
     /**
@@ -325,14 +1469,19 @@ public class Agent implements Runnable {
     }
 
     /**
-     * Load 'build-info.properties'
+     * Load 'build-info.properties', it is only read the first time
      *
      * @return Build properties
      * @throws IOException On reading properties file
      */
     private Properties getProperties() throws IOException {
-        Properties properties = new Properties();
-        properties.load(this.getClass().getResourceAsStream("/META-INF/build-info.properties"));
-        return properties;
+        if (buildInfo == null) {
+            Properties properties = new Properties();
+            try (InputStream input = this.getClass().getResourceAsStream("/META-INF/build-info.properties")) {
+                properties.load(input);
+            }
+            buildInfo = properties;
+        }
+        return buildInfo;
     }
 }
@@ -16,7 +16,7 @@
 
 package io.seqera.tower.agent;
 
-import io.micronaut.scheduling.TaskScheduler;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.websocket.CloseReason;
 import io.micronaut.websocket.WebSocketSession;
 import io.micronaut.websocket.annotation.ClientWebSocket;
@@ -24,14 +24,38 @@ import io.micronaut.websocket.annotation.OnClose;
 import io.micronaut.websocket.annotation.OnMessage;
 import io.micronaut.websocket.annotation.OnOpen;
 import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.CommandBatchRequest;
+import io.seqera.tower.agent.exchange.CommandCancel;
+import io.seqera.tower.agent.exchange.CommandChunk;
 import io.seqera.tower.agent.exchange.CommandRequest;
+import io.seqera.tower.agent.exchange.CommandResponse;
+import io.seqera.tower.agent.exchange.DirScanRequest;
+import io.seqera.tower.agent.exchange.DirScanResult;
+import io.seqera.tower.agent.exchange.FileReadRequest;
+import io.seqera.tower.agent.exchange.FileStatRequest;
 import io.seqera.tower.agent.exchange.HeartbeatMessage;
+import io.seqera.tower.agent.exchange.InfoMessage;
+import io.seqera.tower.agent.exchange.JobStatusRequest;
+import io.seqera.tower.agent.exchange.LogData;
+import io.seqera.tower.agent.exchange.LogSubscribe;
+import io.seqera.tower.agent.exchange.LogUnsubscribe;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import io.seqera.tower.agent.exchange.WireFormat;
+import io.seqera.tower.agent.jfr.FrameSentEvent;
+import io.seqera.tower.agent.jfr.MessageReceivedEvent;
+import io.seqera.tower.agent.jfr.ResponseSerializedEvent;
+import io.seqera.tower.agent.metrics.AgentMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 /**
@@ -41,22 +65,126 @@ import java.util.function.Consumer;
 abstract class AgentClientSocket implements AutoCloseable {
     private static Logger logger = LoggerFactory.getLogger(AgentClientSocket.class);
 
+    /**
+     * Number of sessions the agent opens for the connection ID, sent in the handshake of
+     * the first one. Tower accepts the other sessions only if it supports them.
+     */
+    static final String SESSIONS_HEADER = "X-Tower-Agent-Sessions";
+
+    /**
+     * Query parameter with the index of the session, only set on the additional sessions
+     */
+    static final String SESSION_PARAM = "session";
+
+    /**
+     * Close code of Tower when there is already an agent with the same connection ID
+     */
+    static final int DUPLICATED_AGENT = 4000;
+
     private WebSocketSession session;
     private Instant openingTime;
+    private final MessageCodec codec;
+
+    // Index of the session among those of the connection ID, 0 for the first one
+    private volatile int index;
+
+    // Close code of the session, 0 while it is open
+    private volatile int closeCode;
+
+    // Writes the frames of each lane of the outbound queue to a session of the connection ID
+    private volatile OutboundQueue.LaneTransport lanes;
+
+    // Queue of the outgoing frames, shared by the sessions of the agent
+    private volatile OutboundQueue outboundQueue;
+
+    // Metrics of the traffic with Tower, shared by the sessions of the agent
+    private volatile AgentMetrics metrics;
+
+    // Outgoing messages use the same wire format as the last message received from Tower
+    private volatile WireFormat wireFormat = WireFormat.JSON;
 
     // Callback to manage a command request
     private Consumer<CommandRequest> commandRequestCallback;
 
+    // Callback to manage a batch of commands
+    private Consumer<CommandBatchRequest> commandBatchRequestCallback;
+
+    // Callback to manage a job status request
+    private Consumer<JobStatusRequest> jobStatusRequestCallback;
+
+    // Callbacks to manage the file requests
+    private Consumer<FileStatRequest> fileStatRequestCallback;
+    private Consumer<FileReadRequest> fileReadRequestCallback;
+
+    // Callbacks to manage the log subscriptions
+    private Consumer<LogSubscribe> logSubscribeCallback;
+    private Consumer<LogUnsubscribe> logUnsubscribeCallback;
+
+    // Callback to manage a directory scan
+    private Consumer<DirScanRequest> dirScanRequestCallback;
+
+    // Callback to manage a command cancellation
+    private Consumer<CommandCancel> commandCancelCallback;
+
+    AgentClientSocket(ObjectMapper objectMapper) {
+        this.codec = new MessageCodec(objectMapper);
+    }
+
     @OnOpen
     void onOpen(WebSocketSession session) {
         this.session = session;
         this.openingTime = Instant.now();
-        logger.info("Connection to Tower established");
+        this.index = sessionIndex(session.getRequestURI());
+        if (index == 0) {
+            logger.info("Connection to Tower established");
+        } else {
+            logger.info("Additional session {} to Tower established", index);
+        }
         logger.debug("Websocket session URL: {}", session.getRequestURI());
     }
 
+    /**
+     * @return The value of the {@link #SESSION_PARAM} query parameter, 0 if it is not set
+     */
+    static int sessionIndex(URI uri) {
+        final String query = uri != null ? uri.getQuery() : null;
+        if (query == null) {
+            return 0;
+        }
+        for (String param : query.split("&")) {
+            if (param.startsWith(SESSION_PARAM + "=")) {
+                try {
+                    return Integer.parseInt(param.substring(SESSION_PARAM.length() + 1));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
     @OnMessage(maxPayloadLength=Agent.MAX_WEBSOCKET_PAYLOAD_SIZE)
-    void onMessage(AgentMessage message) {
+    void onMessage(byte[] frame) throws IOException {
+        if (metrics != null) {
+            metrics.getReceivedBytes().add(frame.length);
+        }
+        final WireFormat format = MessageCodec.detect(frame);
+        if (format != wireFormat) {
+            logger.info("Tower selected {} wire format", format);
+            wireFormat = format;
+        }
+
+        final MessageReceivedEvent event = new MessageReceivedEvent();
+        event.begin();
+        final AgentMessage message = codec.decode(frame);
+        try {
+            dispatch(message);
+        } finally {
+            event.commit(message, frame.length);
+        }
+    }
+
+    private void dispatch(AgentMessage message) {
         if (message instanceof HeartbeatMessage) {
             logger.info("Received heartbeat");
             return;
@@ -67,16 +195,67 @@ abstract class AgentClientSocket implements AutoCloseable {
             return;
         }
 
+        if (message instanceof CommandBatchRequest && commandBatchRequestCallback != null) {
+            commandBatchRequestCallback.accept((CommandBatchRequest) message);
+            return;
+        }
+
+        if (message instanceof JobStatusRequest && jobStatusRequestCallback != null) {
+            jobStatusRequestCallback.accept((JobStatusRequest) message);
+            return;
+        }
+
+        if (message instanceof FileStatRequest && fileStatRequestCallback != null) {
+            fileStatRequestCallback.accept((FileStatRequest) message);
+            return;
+        }
+
+        if (message instanceof FileReadRequest && fileReadRequestCallback != null) {
+            fileReadRequestCallback.accept((FileReadRequest) message);
+            return;
+        }
+
+        if (message instanceof LogSubscribe && logSubscribeCallback != null) {
+            logSubscribeCallback.accept((LogSubscribe) message);
+            return;
+        }
+
+        if (message instanceof LogUnsubscribe && logUnsubscribeCallback != null) {
+            logUnsubscribeCallback.accept((LogUnsubscribe) message);
+            return;
+        }
+
+        if (message instanceof DirScanRequest && dirScanRequestCallback != null) {
+            dirScanRequestCallback.accept((DirScanRequest) message);
+            return;
+        }
+
+        if (message instanceof CommandCancel && commandCancelCallback != null) {
+            commandCancelCallback.accept((CommandCancel) message);
+            return;
+        }
+
         throw new RuntimeException(String.format("Unknown agent message '%s'", message.getClass().getSimpleName()));
     }
 
     @OnClose
     void onClose(CloseReason reason) {
+        closeCode = reason.getCode();
 
         // Duplicated agent
-        if (reason.getCode() == 4000) {
+        if (reason.getCode() == DUPLICATED_AGENT) {
+            if (index > 0) {
+                // this Tower does not support more than one session per connection ID
+                logger.warn("Tower rejected the additional session {}, sending everything through the first one", index);
+                return;
+            }
+            // the agent stops using this connection ID, and exits if it was the last one
             logger.error("There is an active agent for this user and connection ID. Please close it before starting a new one.");
-            System.exit(-1);
+            return;
+        }
+
+        if (metrics != null && openingTime != null) {
+            metrics.getSessionDuration().observe(Duration.between(openingTime, Instant.now()).toMillis() / 1000.0);
         }
 
         if (reason.getCode() == 4001) {
@@ -91,18 +270,172 @@ abstract class AgentClientSocket implements AutoCloseable {
         }
     }
 
-    abstract void send(AgentMessage message);
+    /**
+     * Send a message and wait until it is written
+     */
+    void send(AgentMessage message) {
+        if (outboundQueue == null) {
+            try {
+                session.sendSync(codec.encode(message, wireFormat));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        try {
+            sendAsync(message).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while sending a message"));
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException(e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause()));
+        }
+    }
+
+    /**
+     * Queue a message, it never blocks
+     *
+     * @return Completes when the message is written
+     */
+    public CompletableFuture<?> sendAsync(AgentMessage message) {
+        final long start = System.nanoTime();
+        final ResponseSerializedEvent serialized = new ResponseSerializedEvent();
+        serialized.begin();
+        final WireFormat format = wireFormat;
+        final Object frame;
+        try {
+            frame = codec.encode(message, format);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final long size = frame instanceof byte[] ? ((byte[]) frame).length : ((String) frame).length();
+        serialized.commit(message, format.getLabel(), size);
+        if (metrics != null) {
+            metrics.getEncodeTime().observeSince(start);
+            metrics.getSentBytes().add(size);
+        }
+        if (outboundQueue == null) {
+            return session.sendAsync(frame);
+        }
+
+        final boolean control = message instanceof HeartbeatMessage || message instanceof InfoMessage;
+        final WebSocketSession target = session;
+        final OutboundQueue.LaneTransport transport = lanes;
+        return outboundQueue.offer(frame, size, control, orderingKey(message), (lane, it) -> {
+            final FrameSentEvent sent = new FrameSentEvent();
+            sent.begin();
+            if (transport != null) {
+                transport.send(lane, it);
+            } else {
+                target.sendSync(it);
+            }
+            sent.commit(message, size);
+        });
+    }
+
+    /**
+     * Write an encoded frame to this session, blocking until it is written
+     */
+    void write(Object frame) throws IOException {
+        session.sendSync(frame);
+    }
+
+    /**
+     * Send the messages through the agent outbound queue, instead of straight to the session
+     */
+    void setOutboundQueue(OutboundQueue outboundQueue) {
+        this.outboundQueue = outboundQueue;
+    }
+
+    /**
+     * Spread the messages of this session across the sessions of the connection ID, one
+     * for each lane of the outbound queue. Without it all the lanes write to this session.
+     */
+    void setLanes(OutboundQueue.LaneTransport lanes) {
+        this.lanes = lanes;
+    }
+
+    /**
+     * Record the traffic and session metrics
+     */
+    void setMetrics(AgentMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-    public abstract Future<String> sendAsync(AgentMessage message);
+    /**
+     * @return The key of the messages that must keep their order
+     */
+    private static String orderingKey(AgentMessage message) {
+        if (message instanceof CommandChunk) {
+            return "command:" + ((CommandChunk) message).getId();
+        }
+        if (message instanceof CommandResponse) {
+            return "command:" + ((CommandResponse) message).getId();
+        }
+        if (message instanceof LogData) {
+            return "log:" + ((LogData) message).getId();
+        }
+        if (message instanceof DirScanResult) {
+            return "scan:" + ((DirScanResult) message).getId();
+        }
+        return null;
+    }
 
     public boolean isOpen() {
         return session.isOpen();
     }
 
+    /**
+     * @return The close code of the session, 0 while it is open
+     */
+    int getCloseCode() {
+        return closeCode;
+    }
+
+    /**
+     * @return Index of the session among those of the connection ID, 0 for the first one
+     */
+    int getIndex() {
+        return index;
+    }
+
     public void setCommandRequestCallback(Consumer<CommandRequest> callback) {
         this.commandRequestCallback = callback;
     }
 
+    public void setCommandBatchRequestCallback(Consumer<CommandBatchRequest> callback) {
+        this.commandBatchRequestCallback = callback;
+    }
+
+    public void setJobStatusRequestCallback(Consumer<JobStatusRequest> callback) {
+        this.jobStatusRequestCallback = callback;
+    }
+
+    public void setFileStatRequestCallback(Consumer<FileStatRequest> callback) {
+        this.fileStatRequestCallback = callback;
+    }
+
+    public void setFileReadRequestCallback(Consumer<FileReadRequest> callback) {
+        this.fileReadRequestCallback = callback;
+    }
+
+    public void setLogSubscribeCallback(Consumer<LogSubscribe> callback) {
+        this.logSubscribeCallback = callback;
+    }
+
+    public void setLogUnsubscribeCallback(Consumer<LogUnsubscribe> callback) {
+        this.logUnsubscribeCallback = callback;
+    }
+
+    public void setDirScanRequestCallback(Consumer<DirScanRequest> callback) {
+        this.dirScanRequestCallback = callback;
+    }
+
+    public void setCommandCancelCallback(Consumer<CommandCancel> callback) {
+        this.commandCancelCallback = callback;
+    }
+
     public String getId() {
         return session.getId();
     }
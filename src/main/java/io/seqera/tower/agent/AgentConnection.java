@@ -0,0 +1,395 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exec.CommandTracker;
+import io.seqera.tower.agent.exec.RequestHistory;
+import io.seqera.tower.agent.files.FileOperations;
+import io.seqera.tower.agent.files.LogTailer;
+import io.seqera.tower.agent.utils.Backoff;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * One of the Tower connections served by the agent. It keeps the websocket session and
+ * everything that must not be mixed with the other connections: the work directory,
+ * the request ids, the pending responses, the files Tower can access and the outbound
+ * queue, so a slow Tower does not hold back the messages of the other connections. The
+ * command execution and the caches are shared by all the connections.
+ * <p>
+ * When Tower supports it the connection has one additional websocket session for each
+ * extra lane of the outbound queue, so large responses are written in parallel with the
+ * small ones. The first session also carries the heartbeats and the replayed responses,
+ * and the frames of a lane whose session is closed go through the first session.
+ */
+class AgentConnection {
+
+    private final String key;
+    private final String token;
+    private final String url;
+    private final String workDir;
+    private final Backoff backoff;
+    private final Backoff laneBackoff;
+    private final CommandTracker tracker = new CommandTracker();
+
+    // Sessions of the lanes after the first one, null until they are opened
+    private final AtomicReferenceArray<AgentClientSocket> laneClients;
+
+    // Cleared when Tower rejects an additional session
+    private volatile boolean striped;
+
+    // Cleared when Tower does not accept result uploads
+    private volatile boolean uploading = true;
+
+    // Set after a fatal error, the connection is not used again
+    private volatile boolean disabled;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile AgentClientSocket client;
+    private OutboundQueue outboundQueue;
+    private ResponseJournal journal;
+    private RequestHistory requestHistory;
+    private FileOperations fileOperations;
+    private LogTailer logTailer;
+
+    // Time of the last successful check of the Tower API and token
+    private volatile long preflightTime;
+
+    // Time of the next connection attempt after a failure
+    private volatile long nextAttempt;
+
+    // Time of the next attempt to open the sessions of the lanes after a failure
+    private volatile long nextLaneAttempt;
+
+    /**
+     * @param key         Agent connection ID
+     * @param token       Tower access token
+     * @param url         Tower API endpoint
+     * @param workDir     Default work directory
+     * @param backoff     Delays between the connection attempts
+     * @param laneBackoff Delays between the attempts to open the sessions of the lanes
+     * @param lanes       Websocket sessions to open, one for each lane of the outbound queue
+     */
+    AgentConnection(String key, String token, String url, String workDir, Backoff backoff, Backoff laneBackoff, int lanes) {
+        this.key = key;
+        this.token = token;
+        this.url = url;
+        this.workDir = workDir;
+        this.backoff = backoff;
+        this.laneBackoff = laneBackoff;
+        this.laneClients = new AtomicReferenceArray<>(lanes - 1);
+        this.striped = lanes > 1;
+        this.nextAttempt = System.nanoTime();
+        this.nextLaneAttempt = nextAttempt;
+    }
+
+    /**
+     * @return The connection ID usable as a file name
+     */
+    String getFileName() {
+        return key.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * @return {@code true} if the websocket session is open
+     */
+    boolean isOpen() {
+        final AgentClientSocket current = client;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * @return The number of open websocket sessions, the first one and those of the lanes
+     */
+    int getOpenSessions() {
+        int count = isOpen() ? 1 : 0;
+        for (int i = 0; i < laneClients.length(); i++) {
+            final AgentClientSocket lane = laneClients.get(i);
+            if (lane != null && lane.isOpen()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write a frame of a lane of the outbound queue to the session of that lane. When the
+     * session is not open or the write fails, the frame goes through the first session.
+     *
+     * @param lane  Lane of the outbound queue
+     * @param frame The encoded message
+     */
+    void write(int lane, Object frame) throws IOException {
+        final AgentClientSocket target = lane > 0 && lane <= laneClients.length() ? laneClients.get(lane - 1) : null;
+        if (target != null && target.isOpen()) {
+            try {
+                target.write(frame);
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (!isOpen()) {
+                    throw e;
+                }
+            }
+        }
+        client.write(frame);
+    }
+
+    /**
+     * Queue a message on the current session, it never blocks
+     */
+    CompletableFuture<?> send(AgentMessage message) {
+        return client.sendAsync(message);
+    }
+
+    /**
+     * Send the final response of a request, keeping it in the journal until it is
+     * written to a session
+     */
+    void deliver(AgentMessage response) {
+        if (journal == null) {
+            client.sendAsync(response);
+            return;
+        }
+        journal.deliver(client, response);
+    }
+
+    /**
+     * @return {@code true} if it is time to try to connect again
+     */
+    boolean isDue(long now) {
+        return now - nextAttempt >= 0;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getWorkDir() {
+        return workDir;
+    }
+
+    Backoff getBackoff() {
+        return backoff;
+    }
+
+    CommandTracker getTracker() {
+        return tracker;
+    }
+
+    AgentClientSocket getClient() {
+        return client;
+    }
+
+    void setClient(AgentClientSocket client) {
+        this.client = client;
+    }
+
+    OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    void setOutboundQueue(OutboundQueue outboundQueue) {
+        this.outboundQueue = outboundQueue;
+    }
+
+    ResponseJournal getJournal() {
+        return journal;
+    }
+
+    void setJournal(ResponseJournal journal) {
+        this.journal = journal;
+    }
+
+    RequestHistory getRequestHistory() {
+        return requestHistory;
+    }
+
+    void setRequestHistory(RequestHistory requestHistory) {
+        this.requestHistory = requestHistory;
+    }
+
+    FileOperations getFileOperations() {
+        return fileOperations;
+    }
+
+    void setFileOperations(FileOperations fileOperations) {
+        this.fileOperations = fileOperations;
+    }
+
+    LogTailer getLogTailer() {
+        return logTailer;
+    }
+
+    void setLogTailer(LogTailer logTailer) {
+        this.logTailer = logTailer;
+    }
+
+    long getPreflightTime() {
+        return preflightTime;
+    }
+
+    void setPreflightTime(long preflightTime) {
+        this.preflightTime = preflightTime;
+    }
+
+    /**
+     * @return Number of lanes, the first session included
+     */
+    int getLanes() {
+        return laneClients.length() + 1;
+    }
+
+    /**
+     * @param lane Lane index, from 1
+     * @return The session of the lane, {@code null} if it was never opened
+     */
+    AgentClientSocket getLaneClient(int lane) {
+        return laneClients.get(lane - 1);
+    }
+
+    void setLaneClient(int lane, AgentClientSocket client) {
+        laneClients.set(lane - 1, client);
+    }
+
+    /**
+     * @return {@code true} while the additional sessions of the lanes must be opened
+     */
+    boolean isStriped() {
+        return striped;
+    }
+
+    /**
+     * Stop opening additional sessions, Tower does not support them
+     */
+    void disableStriping() {
+        this.striped = false;
+    }
+
+    /**
+     * @return {@code true} after a fatal error of the connection
+     */
+    boolean isDisabled() {
+        return disabled;
+    }
+
+    /**
+     * Stop using the connection after a fatal error, closing its sessions and its
+     * outbound queue. The other connections of the agent keep running.
+     */
+    void disable() {
+        disabled = true;
+        striped = false;
+        for (int i = 0; i < laneClients.length(); i++) {
+            close(laneClients.getAndSet(i, null));
+        }
+        close(client);
+        if (logTailer != null) {
+            logTailer.unsubscribeAll();
+        }
+        if (outboundQueue != null) {
+            outboundQueue.close();
+        }
+    }
+
+    private static void close(AgentClientSocket session) {
+        if (session == null || !session.isOpen()) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (Exception e) {
+            // the connection is disabled anyway
+        }
+    }
+
+    /**
+     * @return {@code true} while the large results must be uploaded
+     */
+    boolean isUploading() {
+        return uploading;
+    }
+
+    /**
+     * Stop uploading the large results, Tower does not support it
+     */
+    void disableUploads() {
+        this.uploading = false;
+    }
+
+    Backoff getLaneBackoff() {
+        return laneBackoff;
+    }
+
+    long getNextLaneAttempt() {
+        return nextLaneAttempt;
+    }
+
+    void setNextLaneAttempt(long nextLaneAttempt) {
+        this.nextLaneAttempt = nextLaneAttempt;
+    }
+
+    long getNextAttempt() {
+        return nextAttempt;
+    }
+
+    void setNextAttempt(long nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    /**
+     * @return Command requests received from Tower on this connection
+     */
+    AtomicLong getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return Websocket sessions opened
+     */
+    AtomicLong getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return Failed attempts to connect
+     */
+    AtomicLong getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return Command requests rejected because the agent was busy
+     */
+    AtomicLong getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The single way out of the agent for the messages to Tower.
+ * <p>
+ * One sender thread writes the frames one at a time, taking first the control messages
+ * (heartbeats), then the small messages and then the large ones, so a large result does
+ * not delay a heartbeat until Tower closes the connection as idle. Messages with the same
+ * key (e.g. the chunks and the response of a command) never overtake each other.
+ * <p>
+ * The bytes of the queued frames are counted until they are written. The threads that
+ * produce messages call {@link #awaitCapacity()} to wait while they are above the high-water
+ * mark, which slows down the commands instead of piling up their output in memory.
+ * <p>
+ * With more than one lane each lane has its own sender thread, writing to its own websocket
+ * session. The control and small messages go through the first lane and the large ones
+ * through the least loaded of the others, so writing a large result does not hold back the
+ * small ones. Messages with the same key stay in the lane of the first one while any of
+ * them is queued.
+ */
+public class OutboundQueue implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundQueue.class);
+
+    public enum Priority {CONTROL, SMALL, LARGE}
+
+    /**
+     * Writes a frame to the websocket, blocking until it is written
+     */
+    @FunctionalInterface
+    public interface Transport {
+        void send(Object frame) throws IOException;
+    }
+
+    /**
+     * Writes a frame to the websocket session of a lane, blocking until it is written
+     */
+    @FunctionalInterface
+    public interface LaneTransport {
+        void send(int lane, Object frame) throws IOException;
+    }
+
+    private static class Item {
+        final Object frame;
+        final long size;
+        final Priority priority;
+        final String key;
+        final int lane;
+        final LaneTransport transport;
+        final long enqueued = System.nanoTime();
+        final CompletableFuture<Void> sent = new CompletableFuture<>();
+
+        Item(Object frame, long size, Priority priority, String key, int lane, LaneTransport transport) {
+            this.frame = frame;
+            this.size = size;
+            this.priority = priority;
+            this.key = key;
+            this.lane = lane;
+            this.transport = transport;
+        }
+    }
+
+    private static class KeyState {
+        int pending;
+        Priority lowest;
+        int lane;
+    }
+
+    private final long highWaterMark;
+    private final int largeMessageSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] available;
+    private final Condition capacity = lock.newCondition();
+    private final ArrayDeque<Item>[][] queues;
+    private final long[] laneBytes;
+    private final Map<String, KeyState> keys = new HashMap<>();
+    private long queuedBytes;
+    private int queuedCount;
+    private boolean closed;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+
+    private final Thread[] senders;
+
+    /**
+     * @param highWaterMark    Queued bytes above which the producers wait
+     * @param largeMessageSize Frames from this size are sent after the smaller ones
+     */
+    public OutboundQueue(long highWaterMark, int largeMessageSize) {
+        this(highWaterMark, largeMessageSize, 1);
+    }
+
+    /**
+     * @param highWaterMark    Queued bytes above which the producers wait
+     * @param largeMessageSize Frames from this size are sent after the smaller ones
+     * @param lanes            Frames written at the same time, one sender thread each
+     */
+    public OutboundQueue(long highWaterMark, int largeMessageSize, int lanes) {
+        this(highWaterMark, largeMessageSize, lanes, "tw-agent-sender");
+    }
+
+    /**
+     * @param highWaterMark    Queued bytes above which the producers wait
+     * @param largeMessageSize Frames from this size are sent after the smaller ones
+     * @param lanes            Frames written at the same time, one sender thread each
+     * @param name             Name of the sender threads, followed by the lane when there are several
+     */
+    @SuppressWarnings("unchecked")
+    public OutboundQueue(long highWaterMark, int largeMessageSize, int lanes, String name) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("At least one lane is required");
+        }
+        this.highWaterMark = highWaterMark;
+        this.largeMessageSize = largeMessageSize;
+        this.available = new Condition[lanes];
+        this.queues = new ArrayDeque[lanes][Priority.values().length];
+        this.laneBytes = new long[lanes];
+        this.senders = new Thread[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            available[lane] = lock.newCondition();
+            for (int i = 0; i < Priority.values().length; i++) {
+                queues[lane][i] = new ArrayDeque<>();
+            }
+        }
+        for (int lane = 0; lane < lanes; lane++) {
+            final int current = lane;
+            senders[lane] = Thread.ofPlatform().name(lanes == 1 ? name : name + "-" + lane).daemon(true).start(() -> run(current));
+        }
+    }
+
+    /**
+     * Queue a frame, it never blocks
+     *
+     * @param frame     The encoded message
+     * @param size      Frame size in bytes
+     * @param control   {@code true} for the control messages, sent before everything else
+     * @param key       Messages with the same key are sent in order, {@code null} for none
+     * @param transport Writes the frame
+     * @return Completes when the frame is written
+     */
+    public CompletableFuture<Void> offer(Object frame, long size, boolean control, String key, Transport transport) {
+        return offer(frame, size, control, key, (lane, it) -> transport.send(it));
+    }
+
+    /**
+     * Queue a frame on the lane of its size class, it never blocks
+     *
+     * @param frame     The encoded message
+     * @param size      Frame size in bytes
+     * @param control   {@code true} for the control messages, sent before everything else
+     * @param key       Messages with the same key are sent in order, {@code null} for none
+     * @param transport Writes the frame to the session of the lane
+     * @return Completes when the frame is written
+     */
+    public CompletableFuture<Void> offer(Object frame, long size, boolean control, String key, LaneTransport transport) {
+        Priority priority = control ? Priority.CONTROL : size < largeMessageSize ? Priority.SMALL : Priority.LARGE;
+        lock.lock();
+        try {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("Outbound queue closed"));
+            }
+            int lane = lane(priority);
+            if (key != null) {
+                final KeyState state = keys.computeIfAbsent(key, k -> new KeyState());
+                // do not overtake a queued message with the same key
+                if (state.pending > 0) {
+                    if (state.lowest.compareTo(priority) > 0) {
+                        priority = state.lowest;
+                    }
+                    lane = state.lane;
+                }
+                state.pending++;
+                state.lowest = priority;
+                state.lane = lane;
+            }
+
+            final Item item = new Item(frame, size, priority, key, lane, transport);
+            queues[lane][priority.ordinal()].add(item);
+            queuedCount++;
+            queuedBytes += size;
+            laneBytes[lane] += size;
+            peakBytes.accumulateAndGet(queuedBytes, Math::max);
+            available[lane].signal();
+            return item.sent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The first lane for the control and small messages, otherwise the other lane
+     * with the fewest queued bytes
+     */
+    private int lane(Priority priority) {
+        if (queues.length == 1 || priority != Priority.LARGE) {
+            return 0;
+        }
+        int result = 1;
+        for (int lane = 2; lane < queues.length; lane++) {
+            if (laneBytes[lane] < laneBytes[result]) {
+                result = lane;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wait while the queued bytes are above the high-water mark
+     *
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public void awaitCapacity() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queuedBytes > highWaterMark && !closed) {
+                capacity.await(1, TimeUnit.SECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} while the queued bytes are not above the high-water mark, it never blocks
+     */
+    public boolean hasCapacity() {
+        lock.lock();
+        try {
+            return queuedBytes <= highWaterMark || closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (int lane = 0; lane < queues.length; lane++) {
+                for (ArrayDeque<Item> queue : queues[lane]) {
+                    for (Item item : queue) {
+                        item.sent.completeExceptionally(new IOException("Outbound queue closed"));
+                    }
+                    queue.clear();
+                }
+                laneBytes[lane] = 0;
+                available[lane].signalAll();
+            }
+            keys.clear();
+            queuedBytes = 0;
+            queuedCount = 0;
+            capacity.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread sender : senders) {
+            sender.interrupt();
+        }
+    }
+
+    private void run(int lane) {
+        while (true) {
+            final Item item;
+            try {
+                item = take(lane);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                item.transport.send(lane, item.frame);
+                final long latency = System.nanoTime() - item.enqueued;
+                sent.incrementAndGet();
+                latencyNanos.addAndGet(latency);
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                item.sent.complete(null);
+            } catch (Throwable e) {
+                failed.incrementAndGet();
+                logger.debug("Cannot send message - {}", e.getMessage());
+                item.sent.completeExceptionally(e);
+            } finally {
+                done(item);
+            }
+        }
+    }
+
+    private Item take(int lane) throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new InterruptedException();
+                }
+                for (ArrayDeque<Item> queue : queues[lane]) {
+                    final Item item = queue.poll();
+                    if (item != null) {
+                        return item;
+                    }
+                }
+                available[lane].await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void done(Item item) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            queuedCount--;
+            queuedBytes -= item.size;
+            laneBytes[item.lane] -= item.size;
+            if (item.key != null) {
+                final KeyState state = keys.get(item.key);
+                if (state != null && --state.pending == 0) {
+                    keys.remove(item.key);
+                }
+            }
+            if (queuedBytes <= highWaterMark) {
+                capacity.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Frames queued or being written
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queuedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority Priority class
+     * @return Frames waiting in that class
+     */
+    public int getQueued(Priority priority) {
+        lock.lock();
+        try {
+            int count = 0;
+            for (ArrayDeque<Item>[] lane : queues) {
+                count += lane[priority.ordinal()].size();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of frames written at the same time
+     */
+    public int getLanes() {
+        return queues.length;
+    }
+
+    /**
+     * @param lane Lane index
+     * @return Bytes of the frames queued or being written in that lane
+     */
+    public long getQueuedBytes(int lane) {
+        lock.lock();
+        try {
+            return laneBytes[lane];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Bytes of the frames queued or being written
+     */
+    public long getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Highest number of bytes queued at the same time
+     */
+    public long getPeakBytes() {
+        return peakBytes.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return Mean time from queueing a frame to having it written, in milliseconds
+     */
+    public double getMeanLatencyMillis() {
+        final long count = sent.get();
+        return count == 0 ? 0 : latencyNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * @return Longest time from queueing a frame to having it written, in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import io.seqera.tower.agent.exchange.WireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps on disk the responses that could not be sent to Tower, so that they are not
+ * lost when the connection drops while a command is running. Tower would otherwise
+ * run the command again, submitting a job twice in the case of {@code sbatch}.
+ * <p>
+ * The journal is an append only file of records:
+ * <pre>
+ *     state (1 byte) | length (4 bytes) | message as JSON (length bytes)
+ * </pre>
+ * A record is written {@code PENDING} and flipped to {@code DELIVERED} in place once
+ * the replayed message is written to a new session. The file is truncated when no
+ * pending record is left, so it only grows while the agent is disconnected.
+ * <p>
+ * While the journal is replayed on a new session the new responses are appended behind
+ * the pending ones, so Tower gets the responses in order. The responses that fail to
+ * send are appended on a thread of the journal, not on the sender thread of the
+ * outbound queue, as each append waits for the disk.
+ */
+public class ResponseJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseJournal.class);
+
+    private static final byte PENDING = 1;
+    private static final byte DELIVERED = 2;
+    private static final int HEADER_SIZE = 5;
+
+    private final Path file;
+    private final long maxSize;
+    private final MessageCodec codec;
+    private final FileChannel channel;
+    private final ExecutorService appender;
+
+    // Position of the pending records, in order
+    private final Set<Long> pending = new LinkedHashSet<>();
+    private long size;
+
+    // Set from hold() until the end of the replay
+    private boolean held;
+
+    /**
+     * @param file    Journal file, created if it does not exist
+     * @param maxSize Maximum size of the file in bytes, responses beyond that are dropped
+     * @param codec   Encodes the journal records
+     * @throws IOException If the file cannot be opened
+     */
+    public ResponseJournal(Path file, long maxSize, MessageCodec codec) throws IOException {
+        if (maxSize < HEADER_SIZE) {
+            throw new IllegalArgumentException(String.format("Invalid response journal size: %d", maxSize));
+        }
+        this.file = file;
+        this.maxSize = maxSize;
+        this.codec = codec;
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.appender = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("tw-agent-journal").daemon(true).factory());
+        load();
+        if (!pending.isEmpty()) {
+            logger.info("Found {} undelivered responses at '{}'", pending.size(), file);
+        }
+    }
+
+    /**
+     * Find the pending records of a previous run, dropping an incomplete record at the
+     * end of the file (e.g. the agent was killed while appending it)
+     */
+    private void load() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        final long end = channel.size();
+        long position = 0;
+        while (position + HEADER_SIZE <= end) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            final byte state = header.get();
+            final int length = header.getInt();
+            if ((state != PENDING && state != DELIVERED) || length < 0 || position + HEADER_SIZE + length > end) {
+                break;
+            }
+            if (state == PENDING) {
+                pending.add(position);
+            }
+            position += HEADER_SIZE + length;
+        }
+        if (position < end) {
+            logger.warn("Discarding {} bytes of incomplete records at the end of '{}'", end - position, file);
+        }
+        size = pending.isEmpty() ? 0 : position;
+        channel.truncate(size);
+    }
+
+    /**
+     * Send a response to Tower, keeping it in the journal if it cannot be sent
+     *
+     * @param client  Current connection to Tower, {@code null} if there is none
+     * @param message Response to send
+     * @return Completes when the response is sent or written to the journal
+     */
+    public CompletableFuture<?> deliver(AgentClientSocket client, AgentMessage message) {
+        synchronized (this) {
+            if (held || client == null || !client.isOpen()) {
+                append(message);
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        return client.sendAsync(message).handleAsync((result, error) -> {
+            if (error != null) {
+                logger.warn("Failed to send response, keeping it to send on the next connection - {}", error.getMessage());
+                append(message);
+            }
+            return result;
+        }, appender);
+    }
+
+    /**
+     * Keep the new responses in the journal until the next {@link #replay(AgentClientSocket)}.
+     * It must be called before a new session is used for the responses.
+     */
+    public synchronized void hold() {
+        held = true;
+    }
+
+    /**
+     * Send the pending responses in order, stopping at the first failure. The responses
+     * added while replaying are sent too, then the new ones go straight to the session.
+     *
+     * @param client A new connection to Tower
+     * @return The number of responses sent
+     */
+    public int replay(AgentClientSocket client) {
+        awaitAppends();
+        int sent = 0;
+        try {
+            while (true) {
+                final List<Long> positions;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        held = false;
+                        break;
+                    }
+                    positions = new ArrayList<>(pending);
+                }
+                for (Long position : positions) {
+                    client.send(read(position));
+                    markDelivered(position);
+                    sent++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                held = false;
+            }
+            logger.warn("Failed to send the undelivered responses, {} left - {}", getPending(), e.getMessage());
+        }
+        if (sent > 0) {
+            logger.info("Sent {} responses that were undelivered", sent);
+        }
+        return sent;
+    }
+
+    /**
+     * Wait for the responses of the previous session that failed to send, so they are
+     * replayed in order
+     */
+    private void awaitAppends() {
+        try {
+            appender.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("Failed to wait for the journal appends - {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Add a response to the journal
+     *
+     * @param message Response that could not be sent
+     * @return {@code false} if the journal is full or cannot be written
+     */
+    public synchronized boolean append(AgentMessage message) {
+        try {
+            final byte[] data = ((String) codec.encode(message, WireFormat.JSON)).getBytes(StandardCharsets.UTF_8);
+            if (size + HEADER_SIZE + data.length > maxSize) {
+                logger.error("Response journal '{}' is full, dropping {}", file, message);
+                return false;
+            }
+
+            final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + data.length);
+            record.put(PENDING).putInt(data.length).put(data).flip();
+            writeFully(record, size);
+            channel.force(false);
+            pending.add(size);
+            size += record.capacity();
+            logger.info("Response kept at '{}' until it can be sent ({} pending)", file, pending.size());
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to write the response journal '{}', dropping {} - {}", file, message, e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized AgentMessage read(long position) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, position);
+        header.flip();
+        header.get();
+        final ByteBuffer data = ByteBuffer.allocate(header.getInt());
+        readFully(data, position + HEADER_SIZE);
+        return codec.decode(data.array());
+    }
+
+    private synchronized void markDelivered(long position) throws IOException {
+        if (!pending.remove(position)) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            channel.truncate(0);
+            size = 0;
+        } else {
+            writeFully(ByteBuffer.wrap(new byte[]{DELIVERED}), position);
+        }
+        channel.force(false);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException(String.format("Unexpected end of '%s'", file));
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * @return Number of responses waiting for a connection
+     */
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * @return Current size of the journal file
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        appender.shutdown();
+        channel.close();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.rxjava2.http.client.RxHttpClient;
+import io.seqera.tower.agent.exec.OutputCapture;
+import io.seqera.tower.agent.model.ResultUploadResponse;
+import io.seqera.tower.agent.utils.Backoff;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Uploads a command result that is too large for a websocket message to Tower over HTTP,
+ * in chunks sent while the command is still writing its output.
+ * <p>
+ * Each chunk is sent with {@code PUT <url>/agent/<connection ID>/results/<request ID>?offset=<n>},
+ * the last one with {@code last=true}, and Tower answers with the bytes of the result it
+ * has. When a chunk fails the agent asks Tower for that size with a {@code GET} of the same
+ * path and resumes from there. The {@link io.seqera.tower.agent.exchange.CommandResponse}
+ * then carries the path of the result instead of the output.
+ * <p>
+ * Only one chunk is kept in memory, from the first byte over the limit. The upload gives
+ * up after a chunk fails {@link #MAX_ATTEMPTS} times, or at once if Tower does not know
+ * the endpoint.
+ */
+class ResultUpload implements OutputCapture.Overflow {
+    private static final Logger logger = LoggerFactory.getLogger(ResultUpload.class);
+
+    // Attempts to send a chunk before giving up the upload
+    static final int MAX_ATTEMPTS = 3;
+
+    private final RxHttpClient httpClient;
+    private final String url;
+    private final String ref;
+    private final String token;
+    private final int chunkSize;
+    private final Backoff backoff;
+
+    // Allocated when the output goes over the limit, most commands never need it
+    private byte[] chunk;
+
+    // Bytes waiting in the chunk
+    private int buffered;
+
+    // Bytes of the result received by Tower
+    private long sent;
+
+    private boolean started;
+    private boolean finished;
+    private boolean unsupported;
+    private String error;
+
+    /**
+     * @param httpClient   Client of the Tower API
+     * @param url          Tower API endpoint
+     * @param connectionId Agent connection ID
+     * @param requestId    Id of the command request
+     * @param token        Tower access token
+     * @param chunkSize    Bytes sent in each request
+     * @param backoff      Delays between the attempts to send a chunk
+     */
+    ResultUpload(RxHttpClient httpClient, String url, String connectionId, String requestId, String token, int chunkSize, Backoff backoff) {
+        this.httpClient = httpClient;
+        this.ref = "/agent/" + encode(connectionId) + "/results/" + encode(requestId);
+        this.url = url + ref;
+        this.token = token;
+        this.chunkSize = chunkSize;
+        this.backoff = backoff;
+    }
+
+    @Override
+    public boolean write(byte[] data, int offset, int length) {
+        if (error != null) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            chunk = new byte[chunkSize];
+        }
+        while (length > 0) {
+            final int n = Math.min(length, chunk.length - buffered);
+            System.arraycopy(data, offset, chunk, buffered, n);
+            buffered += n;
+            offset += n;
+            length -= n;
+            if (buffered == chunk.length && !send(false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Send the last chunk, it must be called once the command output is read
+     *
+     * @return {@code true} if Tower has the whole result
+     */
+    boolean finish() {
+        finished = started && error == null && send(true);
+        return finished;
+    }
+
+    private boolean send(boolean last) {
+        // bytes of the chunk that Tower already has
+        int from = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final URI uri = new URI(url + "?offset=" + (sent + from) + (last ? "&last=true" : ""));
+                final byte[] body = from == 0 && buffered == chunk.length ? chunk : Arrays.copyOfRange(chunk, from, buffered);
+                final ResultUploadResponse response = httpClient.retrieve(HttpRequest.PUT(uri, body)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                        .bearerAuth(token), ResultUploadResponse.class).blockingFirst();
+                if (response.getSize() == null || response.getSize() == sent + buffered) {
+                    sent += buffered;
+                    buffered = 0;
+                    backoff.reset();
+                    return true;
+                }
+                error = String.format("Tower has %d bytes of the result, %d were sent", response.getSize(), sent + buffered);
+            } catch (HttpClientResponseException e) {
+                if (e.getStatus() == HttpStatus.NOT_FOUND && sent == 0) {
+                    unsupported = true;
+                    return fail("Tower does not accept result uploads");
+                }
+                error = e.getMessage();
+            } catch (URISyntaxException e) {
+                return fail(e.getMessage());
+            } catch (RuntimeException e) {
+                error = e.getMessage() != null ? e.getMessage() : e.toString();
+            }
+
+            if (attempt == MAX_ATTEMPTS) {
+                return fail(error);
+            }
+            final Duration delay = backoff.next();
+            logger.debug("Failed to upload {} bytes of {} (attempt {}), trying again in {} ms - {}", buffered - from, ref, attempt, delay.toMillis(), error);
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return fail("Interrupted");
+            }
+
+            // resume from the bytes that Tower has
+            final long received = received();
+            if (received >= 0) {
+                if (received < sent || received > sent + buffered) {
+                    return fail(String.format("Tower has %d bytes of the result, cannot resume from %d", received, sent));
+                }
+                from = (int) (received - sent);
+                if (from == buffered && !last) {
+                    sent += buffered;
+                    buffered = 0;
+                    return true;
+                }
+            }
+            error = null;
+        }
+    }
+
+    /**
+     * @return The bytes of the result that Tower has, -1 if it is not known
+     */
+    private long received() {
+        try {
+            final ResultUploadResponse response = httpClient.retrieve(HttpRequest.GET(new URI(url)).bearerAuth(token), ResultUploadResponse.class).blockingFirst();
+            return response.getSize() != null ? response.getSize() : -1;
+        } catch (URISyntaxException | RuntimeException e) {
+            logger.debug("Unable to get the size of {} - {}", ref, e.getMessage());
+            return -1;
+        }
+    }
+
+    private boolean fail(String message) {
+        error = message;
+        logger.warn("Upload of {} failed after {} bytes - {}", ref, sent, message);
+        return false;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /**
+     * @return {@code true} once the output is over the limit and the upload has begun
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return {@code true} once Tower has the whole result
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return {@code true} if Tower does not have the upload endpoint
+     */
+    boolean isUnsupported() {
+        return unsupported;
+    }
+
+    /**
+     * @return Why the upload failed, {@code null} if it did not
+     */
+    String getError() {
+        return error;
+    }
+
+    /**
+     * @return Path of the result, relative to the Tower API endpoint
+     */
+    String getRef() {
+        return ref;
+    }
+
+    /**
+     * @return Bytes of the result received by Tower
+     */
+    long getSize() {
+        return sent;
+    }
+}
@@ -27,6 +27,21 @@ import java.io.Serializable;
 @JsonSubTypes({
         @JsonSubTypes.Type(value = CommandRequest.class, name = "command-request"),
         @JsonSubTypes.Type(value = CommandResponse.class, name = "command-response"),
+        @JsonSubTypes.Type(value = CommandChunk.class, name = "command-chunk"),
+        @JsonSubTypes.Type(value = CommandCancel.class, name = "command-cancel"),
+        @JsonSubTypes.Type(value = CommandBatchRequest.class, name = "command-batch-request"),
+        @JsonSubTypes.Type(value = CommandBatchResponse.class, name = "command-batch-response"),
+        @JsonSubTypes.Type(value = JobStatusRequest.class, name = "job-status-request"),
+        @JsonSubTypes.Type(value = JobStatusResponse.class, name = "job-status-response"),
+        @JsonSubTypes.Type(value = FileStatRequest.class, name = "file-stat-request"),
+        @JsonSubTypes.Type(value = FileStatResponse.class, name = "file-stat-response"),
+        @JsonSubTypes.Type(value = FileReadRequest.class, name = "file-read-request"),
+        @JsonSubTypes.Type(value = FileReadResponse.class, name = "file-read-response"),
+        @JsonSubTypes.Type(value = LogSubscribe.class, name = "log-subscribe"),
+        @JsonSubTypes.Type(value = LogUnsubscribe.class, name = "log-unsubscribe"),
+        @JsonSubTypes.Type(value = LogData.class, name = "log-data"),
+        @JsonSubTypes.Type(value = DirScanRequest.class, name = "dir-scan-request"),
+        @JsonSubTypes.Type(value = DirScanResult.class, name = "dir-scan-result"),
         @JsonSubTypes.Type(value = HeartbeatMessage.class, name = "heartbeat"),
         @JsonSubTypes.Type(value = InfoMessage.class, name = "info")
 })
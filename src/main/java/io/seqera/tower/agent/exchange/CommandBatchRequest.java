@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+import java.util.List;
+
+/**
+ * Many commands sent by Tower in one message, answered with a single
+ * {@link CommandBatchResponse}. The commands are regular {@code command-request}
+ * messages, including their type. Each command keeps its own id, timeout and accepted
+ * encodings, and can be cancelled by its id. The {@code streaming} flag of the
+ * commands is ignored, the outputs are always returned in the batch response.
+ * <p>
+ * Tower only sends it if the agent advertised {@link InfoMessage#CAPABILITY_COMMAND_BATCH}.
+ */
+@ReflectiveAccess
+public class CommandBatchRequest extends AgentMessage {
+    private String id;
+    private List<CommandRequest> commands;
+    private boolean parallel;
+
+    public CommandBatchRequest() {
+    }
+
+    public CommandBatchRequest(String id, List<CommandRequest> commands, boolean parallel) {
+        this.id = id;
+        this.commands = commands;
+        this.parallel = parallel;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<CommandRequest> getCommands() {
+        return commands;
+    }
+
+    /**
+     * When it is set the commands run at the same time, otherwise one after the other in the given order
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandBatchRequest[id=" + id + "; commands=" + commands + "; parallel=" + parallel + "]";
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+import java.util.List;
+
+/**
+ * Results of a {@link CommandBatchRequest}, in the same order as the requested commands
+ */
+@ReflectiveAccess
+public class CommandBatchResponse extends AgentMessage {
+    private String id;
+    private List<CommandResponse> results;
+
+    // Why the batch was rejected without running any command, only set on failures
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public CommandBatchResponse() {
+    }
+
+    public CommandBatchResponse(String id, List<CommandResponse> results) {
+        this.id = id;
+        this.results = results;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<CommandResponse> getResults() {
+        return results;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public CommandBatchResponse error(String error) {
+        this.error = error;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandBatchResponse[id=" + id + "; results=" + results + "; error=" + error + "]";
+    }
+
+}
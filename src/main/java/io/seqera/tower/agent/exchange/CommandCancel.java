@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * Sent by Tower to cancel a queued or running command. The agent kills the command
+ * processes and answers the original request with {@link CommandResponse#EXIT_CANCELLED}.
+ */
+@ReflectiveAccess
+public class CommandCancel extends AgentMessage {
+    private String id;
+
+    public CommandCancel() {
+    }
+
+    public CommandCancel(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandCancel[id=" + id + "]";
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * A piece of the output of a streamed command. Chunks are sent in order
+ * as the output is produced and are followed by a {@link CommandResponse}
+ * with the exit status and the total number of chunks.
+ */
+@ReflectiveAccess
+public class CommandChunk extends AgentMessage {
+    private String id;
+    private int sequence;
+    private byte[] data;
+
+    public CommandChunk() {
+    }
+
+    public CommandChunk(String id, int sequence, byte[] data) {
+        this.id = id;
+        this.sequence = sequence;
+        this.data = data;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandChunk[id=" + id + "; sequence=" + sequence + "; length=" + (data != null ? data.length : 0) + "]";
+    }
+
+}
@@ -18,6 +18,8 @@ package io.seqera.tower.agent.exchange;
 
 import io.micronaut.core.annotation.ReflectiveAccess;
 
+import java.util.List;
+
 /**
  * @author Jordi Deu-Pons <jordi@seqera.io>
  */
@@ -25,6 +27,10 @@ import io.micronaut.core.annotation.ReflectiveAccess;
 public class CommandRequest extends AgentMessage {
     private String id;
     private String command;
+    private boolean streaming;
+    private List<String> acceptEncoding;
+    private Long timeout;
+    private boolean omitResultAsString;
 
     public CommandRequest() {
     }
@@ -34,6 +40,12 @@ public class CommandRequest extends AgentMessage {
         this.command = command;
     }
 
+    public CommandRequest(String id, String command, boolean streaming) {
+        this.id = id;
+        this.command = command;
+        this.streaming = streaming;
+    }
+
     public String getId() {
         return id;
     }
@@ -42,9 +54,56 @@ public class CommandRequest extends AgentMessage {
         return command;
     }
 
+    /**
+     * Tower sets this flag when it wants the output as a sequence of {@link CommandChunk}
+     * messages. It is only set if the agent advertised {@link InfoMessage#CAPABILITY_COMMAND_CHUNK}.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Encodings that Tower accepts for the response result, chosen among the
+     * ones the agent advertised in {@link InfoMessage#getEncodings()}.
+     */
+    public List<String> getAcceptEncoding() {
+        return acceptEncoding;
+    }
+
+    public CommandRequest acceptEncoding(List<String> acceptEncoding) {
+        this.acceptEncoding = acceptEncoding;
+        return this;
+    }
+
+    /**
+     * Maximum run time in milliseconds. When it is not set the agent default applies,
+     * zero or a negative value means no timeout.
+     */
+    public Long getTimeout() {
+        return timeout;
+    }
+
+    public CommandRequest timeout(Long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Tower sets this flag when it reads the response result bytes only, the response
+     * then does not repeat the result as text in {@code resultAsString}.
+     */
+    public boolean isOmitResultAsString() {
+        return omitResultAsString;
+    }
+
+    public CommandRequest omitResultAsString(boolean omitResultAsString) {
+        this.omitResultAsString = omitResultAsString;
+        return this;
+    }
+
     @Override
     public String toString() {
-        return "CommandRequest[id=" + id + "; command=" + command + "]";
+        return "CommandRequest[id=" + id + "; command=" + command + "; streaming=" + streaming + "; acceptEncoding=" + acceptEncoding + "; timeout=" + timeout + "; omitResultAsString=" + omitResultAsString + "]";
     }
 
 }
@@ -16,6 +16,9 @@
 
 package io.seqera.tower.agent.exchange;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.micronaut.core.annotation.ReflectiveAccess;
 
 import java.nio.charset.StandardCharsets;
@@ -25,10 +28,46 @@ import java.nio.charset.StandardCharsets;
  */
 @ReflectiveAccess
 public class CommandResponse extends AgentMessage {
+
+    /**
+     * The result is compressed with gzip
+     */
+    public static final String ENCODING_GZIP = "gzip";
+
+    /**
+     * Exit status of a command killed after its timeout, as with coreutils 'timeout'
+     */
+    public static final int EXIT_TIMEOUT = 124;
+
+    /**
+     * Exit status of a command cancelled by Tower
+     */
+    public static final int EXIT_CANCELLED = 130;
+
     private String id;
     private byte[] result;
     private int exitStatus;
 
+    // Number of chunks sent before this response, only set on streamed commands
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer chunks;
+
+    // Encoding of the result, not set when the result is sent as it is
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String encoding;
+
+    // Reference of the result uploaded over HTTP, the result is then empty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String resultRef;
+
+    // Size in bytes of the uploaded result
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long resultSize;
+
+    // Set when Tower reads the result bytes only and does not need them again as text
+    @JsonIgnore
+    private boolean omitResultAsString;
+
     public CommandResponse() {
     }
 
@@ -38,6 +77,13 @@ public class CommandResponse extends AgentMessage {
         this.exitStatus = exitStatus;
     }
 
+    public CommandResponse(String id, byte[] result, int exitStatus, Integer chunks) {
+        this.id = id;
+        this.result = result;
+        this.exitStatus = exitStatus;
+        this.chunks = chunks;
+    }
+
     public String getId() {
         return id;
     }
@@ -46,21 +92,71 @@ public class CommandResponse extends AgentMessage {
         return result;
     }
 
+    @JsonIgnore
     public String getResultAsString() {
         if (result == null) {
             return null;
         }
 
-        return new String(result, StandardCharsets.UTF_8);
+        return new String(ResultEncoding.decode(result, encoding), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The result as text for the Towers that read it instead of the result bytes. It is
+     * not sent when the result is encoded or when Tower does not need it.
+     */
+    @JsonProperty("resultAsString")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String getPlainResult() {
+        return encoding == null && !omitResultAsString ? getResultAsString() : null;
     }
 
     public int getExitStatus() {
         return exitStatus;
     }
 
+    public Integer getChunks() {
+        return chunks;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public CommandResponse encoding(String encoding) {
+        this.encoding = encoding;
+        return this;
+    }
+
+    /**
+     * Do not send the result again as text, see {@link CommandRequest#isOmitResultAsString()}
+     */
+    public CommandResponse omitResultAsString() {
+        this.omitResultAsString = true;
+        return this;
+    }
+
+    public String getResultRef() {
+        return resultRef;
+    }
+
+    public Long getResultSize() {
+        return resultSize;
+    }
+
+    /**
+     * @param resultRef  Reference of the result uploaded to Tower
+     * @param resultSize Size in bytes of the uploaded result
+     */
+    public CommandResponse resultRef(String resultRef, long resultSize) {
+        this.resultRef = resultRef;
+        this.resultSize = resultSize;
+        return this;
+    }
+
     @Override
     public String toString() {
-        return "CommandResponse[id=" + id + "; result=" + new String(result, StandardCharsets.UTF_8) + "; exitStatus=" + exitStatus + "]";
+        return "CommandResponse[id=" + id + "; result=" + (encoding == null ? getResultAsString() : "<" + result.length + " bytes " + encoding + ">") + "; exitStatus=" + exitStatus + "; chunks=" + chunks + "; encoding=" + encoding + (resultRef != null ? "; resultRef=" + resultRef + "; resultSize=" + resultSize : "") + "]";
     }
 
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * Sent by Tower to get the size of a directory tree, instead of running {@code du} or
+ * {@code find}. The agent streams the summaries of the directories at {@code depth}
+ * levels below the path as {@link DirScanResult} messages as soon as they are done, and
+ * then a last one with the total. It can be cancelled with a {@link CommandCancel}.
+ * <p>
+ * Tower only sends it if the agent advertised {@link InfoMessage#CAPABILITY_DIR_SCAN}.
+ */
+@ReflectiveAccess
+public class DirScanRequest extends AgentMessage {
+    private String id;
+    private String path;
+    private int depth;
+    private boolean refresh;
+
+    public DirScanRequest() {
+    }
+
+    public DirScanRequest(String id, String path, int depth, boolean refresh) {
+        this.id = id;
+        this.path = path;
+        this.depth = depth;
+        this.refresh = refresh;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The directory to scan, relative paths are resolved against the agent work directory
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Level of the directories to report, e.g. 2 for the task directories of a Nextflow
+     * work directory. Zero only reports the total.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Read every directory again instead of using the cached summaries of the unchanged ones
+     */
+    public boolean isRefresh() {
+        return refresh;
+    }
+
+    @Override
+    public String toString() {
+        return "DirScanRequest[id=" + id + "; path=" + path + "; depth=" + depth + "; refresh=" + refresh + "]";
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+import java.util.List;
+
+/**
+ * Part of the answer to a {@link DirScanRequest}. The last message of a scan has
+ * the {@code total}, or the {@code error} if the scan failed.
+ */
+@ReflectiveAccess
+public class DirScanResult extends AgentMessage {
+    private String id;
+    private List<DirSummary> entries;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private DirSummary total;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public DirScanResult() {
+    }
+
+    public DirScanResult(String id, List<DirSummary> entries, DirSummary total) {
+        this.id = id;
+        this.entries = entries;
+        this.total = total;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<DirSummary> getEntries() {
+        return entries;
+    }
+
+    public DirSummary getTotal() {
+        return total;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public DirScanResult error(String error) {
+        this.error = error;
+        return this;
+    }
+
+    /**
+     * @return {@code true} for the last message of a scan
+     */
+    @JsonIgnore
+    public boolean isLast() {
+        return total != null || error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "DirScanResult[id=" + id + "; entries=" + (entries != null ? entries.size() : 0) + "; total=" + total + "; error=" + error + "]";
+    }
+
+}
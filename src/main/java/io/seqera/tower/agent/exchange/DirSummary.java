@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * Size of a directory tree, as part of a {@link DirScanResult}
+ */
+@ReflectiveAccess
+public class DirSummary {
+    private String path;
+    private long files;
+    private long directories;
+    private long bytes;
+    private long errors;
+
+    public DirSummary() {
+    }
+
+    public DirSummary(String path, long files, long directories, long bytes, long errors) {
+        this.path = path;
+        this.files = files;
+        this.directories = directories;
+        this.bytes = bytes;
+        this.errors = errors;
+    }
+
+    /**
+     * The directory, relative to the scanned path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Number of files, including symbolic links that are not followed
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * Number of directories below this one
+     */
+    public long getDirectories() {
+        return directories;
+    }
+
+    /**
+     * Apparent size of the files in bytes, as {@code du --apparent-size}
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Number of directories that could not be read
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "DirSummary[path=" + path + "; files=" + files + "; directories=" + directories + "; bytes=" + bytes + "; errors=" + errors + "]";
+    }
+
+}
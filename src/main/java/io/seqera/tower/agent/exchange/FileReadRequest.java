@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * Sent by Tower to read a range of a file, instead of running {@code cat} or
+ * {@code head}. Relative paths are resolved against the agent work directory.
+ * <p>
+ * The agent returns at most what fits in one websocket message, Tower reads
+ * the rest with further requests starting where the response ended.
+ * Tower only sends it if the agent advertised {@link InfoMessage#CAPABILITY_FILE_OPS}.
+ */
+@ReflectiveAccess
+public class FileReadRequest extends AgentMessage {
+    private String id;
+    private String path;
+    private long offset;
+    private Long length;
+
+    public FileReadRequest() {
+    }
+
+    public FileReadRequest(String id, String path, long offset, Long length) {
+        this.id = id;
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * First byte to read
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Maximum number of bytes to read, up to the end of the file when it is not set
+     */
+    public Long getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "FileReadRequest[id=" + id + "; path=" + path + "; offset=" + offset + "; length=" + length + "]";
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+@ReflectiveAccess
+public class FileReadResponse extends AgentMessage {
+    private String id;
+    private byte[] data;
+    private long offset;
+    private long size;
+    private boolean eof;
+
+    // Why the file could not be read, only set on failures
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public FileReadResponse() {
+    }
+
+    public FileReadResponse(String id, byte[] data, long offset, long size, boolean eof) {
+        this.id = id;
+        this.data = data;
+        this.offset = offset;
+        this.size = size;
+        this.eof = eof;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The bytes read, as they are in the file
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Position of the first byte of {@link #getData()} in the file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * The file size when it was read
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * {@code true} when the data reaches the end of the file
+     */
+    public boolean isEof() {
+        return eof;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public FileReadResponse error(String error) {
+        this.error = error;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "FileReadResponse[id=" + id + "; offset=" + offset + "; length=" + (data != null ? data.length : 0) + "; size=" + size + "; eof=" + eof + "; error=" + error + "]";
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * Sent by Tower to get the attributes of a file, instead of running {@code stat} or
+ * {@code test -f}. Relative paths are resolved against the agent work directory.
+ * <p>
+ * Tower only sends it if the agent advertised {@link InfoMessage#CAPABILITY_FILE_OPS}.
+ */
+@ReflectiveAccess
+public class FileStatRequest extends AgentMessage {
+    private String id;
+    private String path;
+
+    public FileStatRequest() {
+    }
+
+    public FileStatRequest(String id, String path) {
+        this.id = id;
+        this.path = path;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "FileStatRequest[id=" + id + "; path=" + path + "]";
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+@ReflectiveAccess
+public class FileStatResponse extends AgentMessage {
+
+    public static final String TYPE_FILE = "file";
+    public static final String TYPE_DIRECTORY = "directory";
+    public static final String TYPE_OTHER = "other";
+
+    private String id;
+    private boolean exists;
+
+    // The attributes are only set when the file exists
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String type;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long size;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long lastModified;
+
+    // Why the file could not be checked, only set on failures
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public FileStatResponse() {
+    }
+
+    public FileStatResponse(String id, boolean exists) {
+        this.id = id;
+        this.exists = exists;
+    }
+
+    public FileStatResponse(String id, String type, long size, long lastModified) {
+        this.id = id;
+        this.exists = true;
+        this.type = type;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isExists() {
+        return exists;
+    }
+
+    /**
+     * One of {@link #TYPE_FILE}, {@link #TYPE_DIRECTORY} or {@link #TYPE_OTHER}, symbolic links are followed
+     */
+    public String getType() {
+        return type;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * Last modification time in epoch milliseconds
+     */
+    public Long getLastModified() {
+        return lastModified;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public FileStatResponse error(String error) {
+        this.error = error;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "FileStatResponse[id=" + id + "; exists=" + exists + "; type=" + type + "; size=" + size + "; lastModified=" + lastModified + "; error=" + error + "]";
+    }
+
+}
@@ -18,23 +18,65 @@ package io.seqera.tower.agent.exchange;
 
 import io.micronaut.core.annotation.ReflectiveAccess;
 
+import java.util.List;
+
 /**
  * @author Jordi Deu-Pons <jordi@seqera.io>
  */
 @ReflectiveAccess
 public class InfoMessage extends AgentMessage {
 
+    /**
+     * The agent can stream the output of a command as {@link CommandChunk} messages
+     */
+    public static final String CAPABILITY_COMMAND_CHUNK = "command-chunk";
+
+    /**
+     * The agent accepts {@link CommandBatchRequest} messages
+     */
+    public static final String CAPABILITY_COMMAND_BATCH = "command-batch";
+
+    /**
+     * The agent answers {@link JobStatusRequest} messages
+     */
+    public static final String CAPABILITY_JOB_STATUS = "job-status";
+
+    /**
+     * The agent answers {@link FileStatRequest} and {@link FileReadRequest} messages
+     */
+    public static final String CAPABILITY_FILE_OPS = "file-ops";
+
+    /**
+     * The agent accepts {@link LogSubscribe} and {@link LogUnsubscribe} messages
+     */
+    public static final String CAPABILITY_LOG_TAIL = "log-tail";
+
+    /**
+     * The agent answers {@link DirScanRequest} messages
+     */
+    public static final String CAPABILITY_DIR_SCAN = "dir-scan";
+
+    /**
+     * The agent uploads the command results too large for a message over HTTP, see
+     * {@link CommandResponse#getResultRef()}
+     */
+    public static final String CAPABILITY_RESULT_UPLOAD = "result-upload";
+
     private String userName;
     private String workDir;
     private String agentVersion;
+    private List<String> capabilities;
+    private List<String> encodings;
 
     public InfoMessage() {
     }
 
-    public InfoMessage(String userName, String workDir, String agentVersion) {
+    public InfoMessage(String userName, String workDir, String agentVersion, List<String> capabilities, List<String> encodings) {
         this.userName = userName;
         this.workDir = workDir;
         this.agentVersion = agentVersion;
+        this.capabilities = capabilities;
+        this.encodings = encodings;
     }
 
     public String getUserName() {
@@ -49,12 +91,25 @@ public class InfoMessage extends AgentMessage {
         return agentVersion;
     }
 
+    public List<String> getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Encodings the agent can use to compress a {@link CommandResponse} result
+     */
+    public List<String> getEncodings() {
+        return encodings;
+    }
+
     @Override
     public String toString() {
         return "InfoMessage[" +
                 "userName='" + userName + '\'' +
                 "; workDir='" + workDir + '\'' +
                 "; agentVersion='" + agentVersion + '\'' +
+                "; capabilities=" + capabilities +
+                "; encodings=" + encodings +
                 ']';
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * State of a batch scheduler job, as part of a {@link JobStatusResponse}
+ */
+@ReflectiveAccess
+public class JobStatus {
+
+    /**
+     * Scheduler independent job state
+     */
+    public enum State {
+        PENDING,
+        RUNNING,
+        HOLD,
+        DONE,
+        ERROR,
+        // the scheduler does not know the job, usually because it finished a while ago
+        NOT_FOUND,
+        // the scheduler reported a state that the agent does not know
+        UNKNOWN
+    }
+
+    private String jobId;
+    private State state;
+    private String status;
+
+    public JobStatus() {
+    }
+
+    public JobStatus(String jobId, State state, String status) {
+        this.jobId = jobId;
+        this.state = state;
+        this.status = status;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * The state as reported by the scheduler, e.g. {@code PD} for Slurm or {@code PEND} for LSF
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "JobStatus[jobId=" + jobId + "; state=" + state + "; status=" + status + "]";
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+import java.util.List;
+
+/**
+ * Sent by Tower to get the state of batch scheduler jobs. The agent answers from an
+ * index of the user's jobs that it refreshes at most once per polling interval, instead
+ * of running the scheduler command for every request.
+ * <p>
+ * Tower only sends it if the agent advertised {@link InfoMessage#CAPABILITY_JOB_STATUS}.
+ */
+@ReflectiveAccess
+public class JobStatusRequest extends AgentMessage {
+    private String id;
+    private List<String> jobIds;
+
+    public JobStatusRequest() {
+    }
+
+    public JobStatusRequest(String id, List<String> jobIds) {
+        this.id = id;
+        this.jobIds = jobIds;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The jobs to report, all the jobs in the index when it is empty
+     */
+    public List<String> getJobIds() {
+        return jobIds;
+    }
+
+    @Override
+    public String toString() {
+        return "JobStatusRequest[id=" + id + "; jobIds=" + jobIds + "]";
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+import java.util.List;
+
+@ReflectiveAccess
+public class JobStatusResponse extends AgentMessage {
+    private String id;
+    private List<JobStatus> jobs;
+
+    // Epoch milliseconds when the scheduler was polled
+    private long timestamp;
+
+    // Why the scheduler could not be polled, only set on failures
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public JobStatusResponse() {
+    }
+
+    public JobStatusResponse(String id, List<JobStatus> jobs, long timestamp) {
+        this.id = id;
+        this.jobs = jobs;
+        this.timestamp = timestamp;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<JobStatus> getJobs() {
+        return jobs;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public JobStatusResponse error(String error) {
+        this.error = error;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "JobStatusResponse[id=" + id + "; jobs=" + jobs + "; timestamp=" + timestamp + "; error=" + error + "]";
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * Bytes appended to a followed log file
+ */
+@ReflectiveAccess
+public class LogData extends AgentMessage {
+    private String id;
+    private long offset;
+    private byte[] data;
+    private boolean reset;
+
+    // Why the subscription ended, no more data is sent after it
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public LogData() {
+    }
+
+    public LogData(String id, long offset, byte[] data, boolean reset) {
+        this.id = id;
+        this.offset = offset;
+        this.data = data;
+        this.reset = reset;
+    }
+
+    /**
+     * The subscription id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Position of the first byte of {@link #getData()} in the file
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * {@code true} when the file was truncated or rotated, the data then starts
+     * a new file and what Tower had before should be discarded
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public LogData error(String error) {
+        this.error = error;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "LogData[id=" + id + "; offset=" + offset + "; length=" + (data != null ? data.length : 0) + "; reset=" + reset + "; error=" + error + "]";
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import io.micronaut.core.annotation.ReflectiveAccess;
+
+/**
+ * Sent by Tower to follow a log file. The agent pushes the bytes appended to the
+ * file as {@link LogData} messages until Tower sends a {@link LogUnsubscribe} with
+ * the same id, or the connection is closed.
+ * <p>
+ * Tower only sends it if the agent advertised {@link InfoMessage#CAPABILITY_LOG_TAIL}.
+ */
+@ReflectiveAccess
+public class LogSubscribe extends AgentMessage {
+
+    /**
+     * Offset to start at the current end of the file
+     */
+    public static final long OFFSET_END = -1;
+
+    private String id;
+    private String path;
+    private long offset;
+
+    public LogSubscribe() {
+    }
+
+    public LogSubscribe(String id, String path, long offset) {
+        this.id = id;
+        this.path = path;
+        this.offset = offset;
+    }
+
+    /**
+     * The subscription id, chosen by Tower
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The log file, relative paths are resolved against the agent work directory
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * First byte to send, for example the end of what Tower already has, or {@link #OFFSET_END}
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return "LogSubscribe[id=" + id + "; path=" + path + "; offset=" + offset + "]";
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes {@link AgentMessage}s as websocket frames.
+ * <p>
+ * The agent lists the wire formats it supports in the {@link #WIRE_FORMATS_HEADER} header
+ * of the connection request. A Tower that supports a binary format selects it by sending
+ * its messages in that format, older ones keep sending JSON text frames.
+ */
+public class MessageCodec {
+
+    /**
+     * Handshake header with the wire formats supported by the agent, in order of preference
+     */
+    public static final String WIRE_FORMATS_HEADER = "X-Tower-Agent-Wire-Formats";
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+
+    public MessageCodec(ObjectMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+        this.cborMapper = new CBORMapper();
+        this.cborMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.cborMapper.addMixIn(CommandResponse.class, CborCommandResponse.class);
+    }
+
+    /**
+     * A Tower that selected CBOR reads the result bytes, it does not need them again as text
+     */
+    @JsonIgnoreProperties(value = "resultAsString", ignoreUnknown = true)
+    private abstract static class CborCommandResponse {
+    }
+
+    /**
+     * Encode a message as the payload of a websocket frame
+     *
+     * @param message Message to encode
+     * @param format  Wire format
+     * @return A {@link String} to send as a text frame or a {@code byte[]} to send as a binary frame
+     * @throws IOException On serialisation errors
+     */
+    public Object encode(AgentMessage message, WireFormat format) throws IOException {
+        if (format == WireFormat.CBOR) {
+            return cborMapper.writeValueAsBytes(message);
+        }
+        return jsonMapper.writeValueAsString(message);
+    }
+
+    /**
+     * Decode the payload of a websocket frame
+     *
+     * @param frame Frame payload, either JSON or CBOR
+     * @return The decoded message
+     * @throws IOException On deserialisation errors
+     */
+    public AgentMessage decode(byte[] frame) throws IOException {
+        final ObjectMapper mapper = detect(frame) == WireFormat.CBOR ? cborMapper : jsonMapper;
+        return mapper.readValue(frame, AgentMessage.class);
+    }
+
+    /**
+     * Detect the wire format of a frame. A JSON message always starts with '{' (after
+     * optional white space), while a CBOR message starts with a map header (0xa0 - 0xbf).
+     *
+     * @param frame Frame payload
+     * @return The wire format of the payload
+     */
+    public static WireFormat detect(byte[] frame) {
+        for (byte b : frame) {
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                continue;
+            }
+            return b == '{' ? WireFormat.JSON : WireFormat.CBOR;
+        }
+        return WireFormat.JSON;
+    }
+}
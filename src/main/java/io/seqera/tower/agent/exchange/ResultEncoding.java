@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodings that can be applied to a {@link CommandResponse} result
+ */
+public class ResultEncoding {
+
+    /**
+     * Encodings supported by this agent, in order of preference
+     */
+    public static final List<String> SUPPORTED = List.of(CommandResponse.ENCODING_GZIP);
+
+    private ResultEncoding() {
+    }
+
+    /**
+     * Pick the first supported encoding that Tower accepts
+     *
+     * @param accepted Encodings accepted by Tower, can be {@code null}
+     * @return The encoding to use or {@code null} to send the result as it is
+     */
+    public static String negotiate(List<String> accepted) {
+        if (accepted == null) {
+            return null;
+        }
+        for (String encoding : SUPPORTED) {
+            if (accepted.contains(encoding)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    public static byte[] encode(byte[] data, String encoding) {
+        if (!CommandResponse.ENCODING_GZIP.equals(encoding)) {
+            throw new IllegalArgumentException(String.format("Unsupported result encoding '%s'", encoding));
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(32, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 8192)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public static byte[] decode(byte[] data, String encoding) {
+        if (encoding == null) {
+            return data;
+        }
+        if (!CommandResponse.ENCODING_GZIP.equals(encoding)) {
+            throw new IllegalArgumentException(String.format("Unsupported result encoding '%s'", encoding));
+        }
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data), 8192)) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+/**
+ * Encodings of the {@link AgentMessage}s on the websocket
+ */
+public enum WireFormat {
+
+    /**
+     * Jackson JSON in text frames, understood by every Tower version
+     */
+    JSON("json"),
+
+    /**
+     * Jackson CBOR in binary frames, byte arrays are sent as they are instead of base64
+     */
+    CBOR("cbor");
+
+    private final String label;
+
+    WireFormat(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
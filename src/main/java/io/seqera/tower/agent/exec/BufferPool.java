@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed size byte arrays used to capture the output of the commands.
+ * <p>
+ * Buffers are handed out in LIFO order so the most recently used (and most likely
+ * still in cache) are reused first. At most {@code maxPooled} buffers are kept,
+ * anything released beyond that is left to the garbage collector.
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_POOLED = 128;
+
+    private final int segmentSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedDeque<byte[]> free = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public BufferPool() {
+        this(DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_POOLED);
+    }
+
+    public BufferPool(int segmentSize, int maxPooled) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException(String.format("Invalid buffer segment size: %d", segmentSize));
+        }
+        this.segmentSize = segmentSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return A buffer of {@link #getSegmentSize()} bytes, its content is undefined
+     */
+    public byte[] acquire() {
+        byte[] buffer = free.pollFirst();
+        if (buffer == null) {
+            return new byte[segmentSize];
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Give back a buffer obtained with {@link #acquire()}
+     *
+     * @param buffer Buffer to reuse
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != segmentSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offerFirst(buffer);
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return Number of buffers ready to be reused
+     */
+    public int getPooled() {
+        return pooled.get();
+    }
+}
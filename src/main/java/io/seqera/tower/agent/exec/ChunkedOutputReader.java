@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.seqera.tower.agent.exec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reads a process output and hands it over in chunks as soon as it is available.
+ * <p>
+ * A chunk is emitted when the buffer is full or when the process has no more output
+ * ready, so a command that writes slowly gets its first bytes out immediately and
+ * a command that writes fast gets them grouped in chunks of one pool segment.
+ */
+public class ChunkedOutputReader {
+
+    private final BufferPool pool;
+
+    public ChunkedOutputReader(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Read the stream until EOF
+     *
+     * @param input Process output
+     * @param sink  Receives each chunk, the arrays are not reused
+     * @return Number of chunks emitted
+     * @throws IOException On reading the stream
+     */
+    public int read(InputStream input, Consumer<byte[]> sink) throws IOException {
+        byte[] buffer = pool.acquire();
+        int length = 0;
+        int count = 0;
+        int n;
+        try {
+            while ((n = input.read(buffer, length, buffer.length - length)) != -1) {
+                length += n;
+                if (length == buffer.length || input.available() == 0) {
+                    sink.accept(Arrays.copyOf(buffer, length));
+                    count++;
+                    length = 0;
+                }
+            }
+
+            if (length > 0) {
+                sink.accept(Arrays.copyOf(buffer, length));
+                count++;
+            }
+        } finally {
+            pool.release(buffer);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Shares the result of read-only commands between identical requests.
+ * <p>
+ * Only the commands that fully match one of the allow-listed patterns, and that do not
+ * contain any shell operator ({@code ; & | < >}, backticks, {@code $(} or new lines),
+ * are handled here. While such a command is running, identical requests wait for its
+ * result instead of starting their own process (single flight). When a TTL is set, the
+ * successful results are also kept in a size bounded cache for that long.
+ */
+public class CommandCache {
+    private static final Logger logger = LoggerFactory.getLogger(CommandCache.class);
+
+    private static final Pattern SHELL_OPERATORS = Pattern.compile("[;&|<>`\\n]|\\$\\(");
+
+    /**
+     * Output and exit status of a command
+     */
+    public static class Result {
+        private final byte[] output;
+        private final int exitStatus;
+
+        public Result(byte[] output, int exitStatus) {
+            this.output = output;
+            this.exitStatus = exitStatus;
+        }
+
+        public byte[] getOutput() {
+            return output;
+        }
+
+        public int getExitStatus() {
+            return exitStatus;
+        }
+    }
+
+    /**
+     * Runs the command when there is nothing to share
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Result load() throws Exception;
+    }
+
+    private static class Entry {
+        final Result result;
+        final long expires;
+
+        Entry(Result result, long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+    }
+
+    private final List<Pattern> allowList;
+    private final long ttlNanos;
+    private final long maxSize;
+
+    private final Map<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cacheSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param allowList Regular expressions of the read-only commands
+     * @param ttl       How long a result is cached, zero to only share running commands
+     * @param maxSize   Maximum bytes of output kept in the cache
+     */
+    public CommandCache(List<Pattern> allowList, Duration ttl, long maxSize) {
+        this.allowList = allowList;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param patterns Comma separated regular expressions
+     * @return The compiled patterns
+     * @throws IllegalArgumentException If a pattern is not valid
+     */
+    public static List<Pattern> parseAllowList(String patterns) {
+        final List<Pattern> result = new ArrayList<>();
+        if (patterns == null) {
+            return result;
+        }
+        for (String pattern : patterns.split(",")) {
+            if (pattern.isBlank()) {
+                continue;
+            }
+            try {
+                result.add(Pattern.compile(pattern.trim()));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException(String.format("Invalid cacheable command pattern '%s' - %s", pattern.trim(), e.getDescription()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param command Shell command line
+     * @return {@code true} if the command result can be shared
+     */
+    public boolean isCacheable(String command) {
+        if (command == null || SHELL_OPERATORS.matcher(command).find()) {
+            return false;
+        }
+        final String trimmed = command.trim();
+        for (Pattern pattern : allowList) {
+            if (pattern.matcher(trimmed).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the result of a cacheable command from the cache, from an identical running
+     * command, or by running it.
+     *
+     * @param command Shell command line
+     * @param tracked Tracks the cancellation of this request
+     * @param timeout Maximum time to wait for an identical running command, {@code null} to wait forever
+     * @param loader  Runs the command
+     * @return The command result
+     * @throws CancellationException If this request is cancelled or timed out while waiting
+     * @throws Exception             If the command cannot be run
+     */
+    public Result run(String command, TrackedCommand tracked, Duration timeout, Loader loader) throws Exception {
+        final long deadline = timeout != null ? System.nanoTime() + timeout.toNanos() : Long.MAX_VALUE;
+        while (true) {
+            final Result cached = lookup(command);
+            if (cached != null) {
+                hits.incrementAndGet();
+                logger.debug("Cache hit for '{}'", command);
+                return cached;
+            }
+
+            final CompletableFuture<Result> mine = new CompletableFuture<>();
+            final CompletableFuture<Result> running = inFlight.putIfAbsent(command, mine);
+            if (running == null) {
+                misses.incrementAndGet();
+                return load(command, tracked, loader, mine);
+            }
+
+            coalesced.incrementAndGet();
+            logger.debug("Waiting for running command '{}'", command);
+            try {
+                return await(running, tracked, deadline);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof CancellationException)) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                // the command was killed on behalf of another request, run it again
+            }
+        }
+    }
+
+    private Result load(String command, TrackedCommand tracked, Loader loader, CompletableFuture<Result> future) throws Exception {
+        try {
+            final Result result = loader.load();
+            if (!tracked.isActive()) {
+                // do not share the output of a cancelled or timed out command
+                future.completeExceptionally(new CancellationException());
+            } else {
+                store(command, result);
+                future.complete(result);
+            }
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(command, future);
+        }
+    }
+
+    private Result await(CompletableFuture<Result> running, TrackedCommand tracked, long deadline) throws Exception {
+        final CompletableFuture<Object> done = CompletableFuture.anyOf(running, tracked.killed());
+        try {
+            if (deadline == Long.MAX_VALUE) {
+                done.get();
+            } else {
+                done.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            tracked.timeout();
+        }
+        if (!tracked.isActive()) {
+            throw new CancellationException(String.format("Command %s while waiting for an identical command", tracked.getState() == TrackedCommand.State.CANCELLED ? "cancelled" : "timed out"));
+        }
+        return running.get();
+    }
+
+    private synchronized Result lookup(String command) {
+        if (ttlNanos <= 0) {
+            return null;
+        }
+        final Entry entry = cache.get(command);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires - System.nanoTime() <= 0) {
+            remove(command);
+            return null;
+        }
+        return entry.result;
+    }
+
+    private synchronized void store(String command, Result result) {
+        // failures can be transient, only the successful results are kept
+        if (ttlNanos <= 0 || result.getExitStatus() != 0 || result.getOutput().length > maxSize) {
+            return;
+        }
+        remove(command);
+        cache.put(command, new Entry(result, System.nanoTime() + ttlNanos));
+        cacheSize += result.getOutput().length;
+
+        // evict the expired entries, then the least recently used
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Entry> e = it.next();
+            if (cacheSize > maxSize || e.getValue().expires - now <= 0) {
+                cacheSize -= e.getValue().result.getOutput().length;
+                it.remove();
+            }
+        }
+    }
+
+    private void remove(String command) {
+        final Entry old = cache.remove(command);
+        if (old != null) {
+            cacheSize -= old.result.getOutput().length;
+        }
+    }
+
+    /**
+     * @return Requests answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Requests that waited for an identical running command
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return Requests that ran the command
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of cached results
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.seqera.tower.agent.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs command requests outside the websocket I/O thread.
+ * <p>
+ * At most {@code maxInFlight} tasks run at the same time and up to {@code queueSize}
+ * more wait for a free slot. Anything beyond that is rejected, so a burst of requests
+ * cannot pile up an unbounded number of processes on the login node.
+ * <p>
+ * Tasks can be submitted with a key, e.g. the Tower connection that requested them.
+ * The limit of accepted tasks applies to each key, so a connection with a burst of
+ * requests does not get the others rejected, and the free slots are given to the
+ * waiting tasks of each key in turn, so it does not delay them either.
+ */
+public class CommandExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(CommandExecutor.class);
+
+    private static final String DEFAULT_KEY = "";
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final int capacity;
+
+    // Tasks accepted and not yet finished (queued + running), in total and by key
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<String, AtomicInteger> pendingByKey = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    // Waiting tasks by key, the first key gets the next free slot
+    private final LinkedHashMap<String, ArrayDeque<Task>> waiting = new LinkedHashMap<>();
+    private int freeSlots;
+
+    private static class Task {
+        final Runnable runnable;
+        final AtomicInteger keyPending;
+
+        Task(Runnable runnable, AtomicInteger keyPending) {
+            this.runnable = runnable;
+            this.keyPending = keyPending;
+        }
+    }
+
+    /**
+     * @param virtualThreads Run each task on its own virtual thread, otherwise use a fixed pool of platform threads
+     * @param maxInFlight    Maximum number of tasks running at the same time
+     * @param queueSize      Maximum number of tasks of each key waiting for a free slot
+     */
+    public CommandExecutor(boolean virtualThreads, int maxInFlight, int queueSize) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(String.format("Invalid maximum number of in-flight commands: %d", maxInFlight));
+        }
+        if (queueSize < 0) {
+            throw new IllegalArgumentException(String.format("Invalid command queue size: %d", queueSize));
+        }
+
+        this.maxInFlight = maxInFlight;
+        this.capacity = maxInFlight + queueSize;
+        this.freeSlots = maxInFlight;
+
+        if (virtualThreads) {
+            ThreadFactory factory = Thread.ofVirtual().name("tw-agent-exec-", 0).factory();
+            this.executor = Executors.newThreadPerTaskExecutor(factory);
+        } else {
+            ThreadFactory factory = Thread.ofPlatform().name("tw-agent-exec-", 0).daemon(true).factory();
+            this.executor = Executors.newFixedThreadPool(maxInFlight, factory);
+        }
+    }
+
+    /**
+     * Submit a task for execution
+     *
+     * @param task Task to run
+     * @return {@code false} if the task was rejected because the executor is full
+     */
+    public boolean submit(Runnable task) {
+        return submit(DEFAULT_KEY, task);
+    }
+
+    /**
+     * Submit a task for execution, taking turns with the tasks of other keys
+     *
+     * @param key  Owner of the task
+     * @param task Task to run
+     * @return {@code false} if the task was rejected because the executor is full for this key
+     */
+    public boolean submit(String key, Runnable task) {
+        final AtomicInteger keyPending = pendingByKey.computeIfAbsent(key, it -> new AtomicInteger());
+        if (keyPending.incrementAndGet() > capacity) {
+            keyPending.decrementAndGet();
+            return false;
+        }
+        pending.incrementAndGet();
+
+        final Task queued = new Task(task, keyPending);
+        final boolean start;
+        synchronized (waiting) {
+            start = freeSlots > 0;
+            if (start) {
+                freeSlots--;
+            } else {
+                waiting.computeIfAbsent(key, it -> new ArrayDeque<>()).add(queued);
+            }
+        }
+        if (start && !execute(queued)) {
+            return false;
+        }
+
+        logger.debug("Command submitted ({} running, {} queued)", getRunning(), getQueued());
+        return true;
+    }
+
+    private boolean execute(Task task) {
+        try {
+            executor.execute(() -> runTask(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            task.keyPending.decrementAndGet();
+            pending.decrementAndGet();
+            release();
+            return false;
+        }
+    }
+
+    private void runTask(Task task) {
+        running.incrementAndGet();
+        try {
+            task.runnable.run();
+        } catch (Throwable e) {
+            logger.error("Unexpected error running command - {}", e.getMessage(), e);
+        } finally {
+            running.decrementAndGet();
+            task.keyPending.decrementAndGet();
+            pending.decrementAndGet();
+            release();
+        }
+    }
+
+    /**
+     * Give a finished task slot to the next waiting task, the key that gets it goes to
+     * the end of the line
+     */
+    private void release() {
+        Task next = null;
+        synchronized (waiting) {
+            final Iterator<Map.Entry<String, ArrayDeque<Task>>> it = waiting.entrySet().iterator();
+            if (it.hasNext()) {
+                final Map.Entry<String, ArrayDeque<Task>> first = it.next();
+                next = first.getValue().poll();
+                it.remove();
+                if (!first.getValue().isEmpty()) {
+                    waiting.put(first.getKey(), first.getValue());
+                }
+            } else {
+                freeSlots++;
+            }
+        }
+        if (next != null) {
+            execute(next);
+        }
+    }
+
+    /**
+     * @return Number of tasks currently running
+     */
+    public int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return Number of tasks waiting for a free slot
+     */
+    public int getQueued() {
+        return Math.max(0, pending.get() - running.get());
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Stop accepting tasks and interrupt the running ones
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
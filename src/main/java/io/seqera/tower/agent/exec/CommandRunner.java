@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import io.seqera.tower.agent.jfr.FirstOutputEvent;
+import io.seqera.tower.agent.metrics.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs shell commands on behalf of Tower.
+ * <p>
+ * The output is read on its own virtual thread, so the command can be timed out or
+ * cancelled while its output is still open. Timed out and cancelled commands are
+ * killed together with all their descendants.
+ */
+public abstract class CommandRunner implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CommandRunner.class);
+
+    /**
+     * Reads the output of a command until EOF
+     */
+    @FunctionalInterface
+    public interface OutputReader {
+        void read(InputStream input) throws IOException;
+    }
+
+    protected final Duration killGrace;
+    protected final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("tw-agent-killer").daemon(true).factory());
+    private final ExecutorService readers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tw-agent-output-", 0).factory());
+    private volatile Histogram spawnTime;
+
+    /**
+     * @param killGrace Time given to a process to exit after SIGTERM before sending SIGKILL
+     */
+    protected CommandRunner(Duration killGrace) {
+        this.killGrace = killGrace;
+    }
+
+    /**
+     * Run a command and wait until it finishes, times out or is cancelled
+     *
+     * @param command Shell command line
+     * @param tracked Tracks the command cancellation
+     * @param timeout Maximum run time, {@code null} to wait forever
+     * @param reader  Consumes the merged stdout and stderr
+     * @return The command exit status, undefined if the command was timed out or cancelled
+     * @throws IOException          If the command cannot be started, the output cannot be read or it is still open after killing the command
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public abstract int run(String command, TrackedCommand tracked, Duration timeout, OutputReader reader) throws IOException, InterruptedException;
+
+    /**
+     * @param spawnTime Records the time taken to start each command
+     */
+    public void setSpawnTime(Histogram spawnTime) {
+        this.spawnTime = spawnTime;
+    }
+
+    /**
+     * Record that a command was started
+     *
+     * @param start Value of {@link System#nanoTime()} before starting the command
+     */
+    protected void spawned(long start) {
+        final Histogram histogram = spawnTime;
+        if (histogram != null) {
+            histogram.observeSince(start);
+        }
+    }
+
+    /**
+     * Release the resources held between commands. Running commands are not affected.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Read the command output until EOF, the timeout or a cancellation. The command
+     * must be attached to {@code tracked} so it can be killed.
+     *
+     * @param input   Command output
+     * @param reader  Consumes the output
+     * @param tracked Tracks the command cancellation
+     * @param timeout Maximum run time, {@code null} to wait forever
+     * @throws IOException          On reading the output, or if it is still open after killing the command
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    protected void readOutput(InputStream input, OutputReader reader, TrackedCommand tracked, Duration timeout) throws IOException, InterruptedException {
+        final InputStream output = watchFirstOutput(input, tracked.getId());
+        final CompletableFuture<Void> reading = CompletableFuture.runAsync(() -> {
+            try {
+                reader.read(output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, readers);
+
+        try {
+            final CompletableFuture<Object> done = CompletableFuture.anyOf(reading, tracked.killed());
+            if (timeout != null) {
+                done.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                done.get();
+            }
+        } catch (TimeoutException e) {
+            logger.debug("Command [{}] timed out after {}", tracked.getId(), timeout);
+            tracked.timeout();
+        } catch (ExecutionException e) {
+            throw outputError(e);
+        }
+
+        if (!tracked.isActive()) {
+            // the processes were killed, give them time to exit and close the output
+            try {
+                reading.get(killGrace.toMillis() + 1000, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new IOException(String.format("Command output still open after it was %s", tracked.getState() == TrackedCommand.State.CANCELLED ? "cancelled" : "timed out"));
+            } catch (ExecutionException e) {
+                // the output was closed by the kill
+                logger.trace("Command [{}] output closed - {}", tracked.getId(), e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Record a {@link FirstOutputEvent} when the command writes its first byte. The
+     * stream is only wrapped while JFR is recording the event.
+     */
+    private static InputStream watchFirstOutput(InputStream input, String requestId) {
+        final FirstOutputEvent event = new FirstOutputEvent();
+        if (!event.isEnabled()) {
+            return input;
+        }
+        event.begin();
+        return new FilterInputStream(input) {
+            private boolean seen;
+
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b >= 0) {
+                    seen();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) {
+                    seen();
+                }
+                return n;
+            }
+
+            private void seen() {
+                if (!seen) {
+                    seen = true;
+                    event.commit(requestId);
+                }
+            }
+        };
+    }
+
+    private static IOException outputError(ExecutionException e) {
+        final Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the commands that are queued or running, so that Tower can cancel them by id
+ */
+public class CommandTracker {
+
+    private final Map<String, TrackedCommand> commands = new ConcurrentHashMap<>();
+
+    /**
+     * Start tracking a command
+     *
+     * @param id Command request id
+     * @return The tracked command
+     */
+    public TrackedCommand track(String id) {
+        final TrackedCommand command = new TrackedCommand(id);
+        commands.put(id, command);
+        return command;
+    }
+
+    /**
+     * Stop tracking a command once its response has been sent
+     *
+     * @param command The tracked command
+     */
+    public void untrack(TrackedCommand command) {
+        commands.remove(command.getId(), command);
+    }
+
+    /**
+     * Cancel a queued or running command
+     *
+     * @param id Command request id
+     * @return {@code false} if there is no such command
+     */
+    public boolean cancel(String id) {
+        final TrackedCommand command = commands.get(id);
+        if (command == null) {
+            return false;
+        }
+        command.cancel();
+        return true;
+    }
+
+    public int size() {
+        return commands.size();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The output of one command run by a {@link ShellWorker}.
+ * <p>
+ * The worker writes the command output followed by {@code \n<marker> <exit status>\n}.
+ * This stream returns the bytes before the delimiter, exactly as the command wrote them,
+ * and then EOF. Bytes that could be the start of the delimiter are held back until
+ * it is known whether they belong to the output.
+ */
+class FrameInputStream extends InputStream {
+
+    private final InputStream input;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+
+    // Bytes read from the worker and not returned yet are buffer[start, end)
+    private int start;
+    private int end;
+
+    private boolean complete;
+    private int exitStatus = -1;
+
+    FrameInputStream(InputStream input, byte[] delimiter) {
+        this.input = input;
+        this.delimiter = delimiter;
+        this.buffer = new byte[8192 + delimiter.length];
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        final int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (!complete) {
+            final int found = indexOfDelimiter();
+            final int safe = found >= 0 ? found : end - partialDelimiter();
+            if (safe > start) {
+                final int n = Math.min(len, safe - start);
+                System.arraycopy(buffer, start, b, off, n);
+                start += n;
+                return n;
+            }
+
+            if (found >= 0) {
+                start = found + delimiter.length;
+                exitStatus = readExitStatus();
+                complete = true;
+                break;
+            }
+
+            fill();
+        }
+        return -1;
+    }
+
+    /**
+     * @return Output bytes that can be returned without blocking
+     */
+    @Override
+    public int available() {
+        if (complete) {
+            return 0;
+        }
+        final int found = indexOfDelimiter();
+        return Math.max(0, (found >= 0 ? found : end - partialDelimiter()) - start);
+    }
+
+    /**
+     * @return {@code true} once the whole output and the exit status have been read
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return The command exit status, -1 until the stream is complete
+     */
+    int getExitStatus() {
+        return exitStatus;
+    }
+
+    private int readExitStatus() throws IOException {
+        int status = 0;
+        while (true) {
+            if (start == end) {
+                fill();
+            }
+            final byte b = buffer[start++];
+            if (b == '\n') {
+                return status;
+            }
+            if (b < '0' || b > '9') {
+                throw new IOException("Invalid exit status from shell worker");
+            }
+            status = status * 10 + (b - '0');
+        }
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        final int n = input.read(buffer, end, buffer.length - end);
+        if (n == -1) {
+            throw new EOFException("Shell worker exited before the end of the command output");
+        }
+        end += n;
+    }
+
+    private int indexOfDelimiter() {
+        outer:
+        for (int i = start; i <= end - delimiter.length; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Length of the longest tail of the buffer that is a prefix of the delimiter
+     */
+    private int partialDelimiter() {
+        final int max = Math.min(delimiter.length - 1, end - start);
+        outer:
+        for (int k = max; k > 0; k--) {
+            for (int j = 0; j < k; j++) {
+                if (buffer[end - k + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return k;
+        }
+        return 0;
+    }
+}
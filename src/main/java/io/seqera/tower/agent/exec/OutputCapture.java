@@ -0,0 +1,240 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Captures the raw bytes of a process output into buffers taken from a {@link BufferPool}.
+ * <p>
+ * The output is kept byte by byte as the process wrote it (no charset decoding and no
+ * line ending changes) and it is only copied once, when the response payload is built
+ * with {@link #toByteArray()}. Output beyond {@code limit} bytes is read and discarded,
+ * so the process never blocks on a full pipe, unless an {@link Overflow} takes it: it then
+ * gets the whole output, the captured bytes first, while the process is still writing.
+ * The overflow can start below the limit, the first {@code limit} bytes are still captured
+ * in case it fails.
+ * <p>
+ * The capture can be closed from another thread while it is still reading (for example
+ * when the command is abandoned after a timeout), the buffers then go back to the pool
+ * when the read finishes.
+ */
+public class OutputCapture implements AutoCloseable {
+
+    /**
+     * Receives the whole output of a process that writes more than the limit
+     */
+    @FunctionalInterface
+    public interface Overflow {
+        /**
+         * @return {@code false} to discard the rest of the output
+         */
+        boolean write(byte[] data, int offset, int length);
+    }
+
+    private final BufferPool pool;
+    private final int limit;
+    private final long overflowSize;
+    private final List<byte[]> segments = new ArrayList<>();
+
+    // Takes the output over the overflow size, null once it gives up
+    private Overflow overflow;
+
+    // The overflow has the bytes read so far
+    private boolean overflowing;
+
+    // Bytes kept in the segments
+    private int length;
+
+    // Bytes read from the stream, including the discarded ones
+    private long total;
+
+    private boolean reading;
+    private boolean closed;
+
+    public OutputCapture(BufferPool pool, int limit) {
+        this(pool, limit, null);
+    }
+
+    /**
+     * @param pool     Buffers of the captured output
+     * @param limit    Maximum bytes captured
+     * @param overflow Receives the whole output when it is over the limit, {@code null} to discard it
+     */
+    public OutputCapture(BufferPool pool, int limit, Overflow overflow) {
+        this(pool, limit, limit, overflow);
+    }
+
+    /**
+     * @param pool         Buffers of the captured output
+     * @param limit        Maximum bytes captured
+     * @param overflowSize Output size over which the overflow gets it, at most {@code limit}
+     * @param overflow     Receives the whole output when it is over the overflow size, {@code null} to discard it
+     */
+    public OutputCapture(BufferPool pool, int limit, int overflowSize, Overflow overflow) {
+        this.pool = pool;
+        this.limit = limit;
+        this.overflowSize = Math.min(overflowSize, limit);
+        this.overflow = overflow;
+    }
+
+    /**
+     * Read the stream until EOF
+     *
+     * @param input Process output
+     * @return This capture
+     * @throws IOException On reading the stream
+     */
+    public OutputCapture read(InputStream input) throws IOException {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Output capture already closed");
+            }
+            reading = true;
+        }
+        try {
+            readSegments(input);
+        } finally {
+            synchronized (this) {
+                reading = false;
+                if (closed) {
+                    releaseSegments();
+                }
+            }
+        }
+        return this;
+    }
+
+    private void readSegments(InputStream input) throws IOException {
+        byte[] current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        int position = length - (segments.size() - 1) * pool.getSegmentSize();
+        int n;
+
+        while (length < limit) {
+            if (current == null || position == current.length) {
+                current = pool.acquire();
+                segments.add(current);
+                position = 0;
+            }
+
+            n = input.read(current, position, Math.min(current.length - position, limit - length));
+            if (n == -1) {
+                return;
+            }
+            position += n;
+            length += n;
+            total += n;
+            if (overflow != null && total > overflowSize) {
+                // the segments already have the new bytes
+                if (overflowing ? !overflow.write(current, position - n, n) : !startOverflow()) {
+                    overflow = null;
+                }
+            }
+        }
+
+        // over the limit, pass the output to the overflow or drain the rest of it
+        byte[] scratch = pool.acquire();
+        try {
+            while ((n = input.read(scratch)) != -1) {
+                if (overflow != null && !overflowing && !startOverflow()) {
+                    overflow = null;
+                }
+                total += n;
+                if (overflow != null && !overflow.write(scratch, 0, n)) {
+                    overflow = null;
+                }
+            }
+        } finally {
+            pool.release(scratch);
+        }
+    }
+
+    /**
+     * Pass the captured bytes to the overflow
+     */
+    private boolean startOverflow() {
+        overflowing = true;
+        int offset = 0;
+        for (byte[] segment : segments) {
+            int n = Math.min(segment.length, length - offset);
+            if (!overflow.write(segment, 0, n)) {
+                return false;
+            }
+            offset += n;
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of bytes captured
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return Number of bytes the process wrote, including the ones over the limit
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return {@code true} if the process wrote more than {@code limit} bytes
+     */
+    public boolean isTruncated() {
+        return total > length;
+    }
+
+    /**
+     * @return The captured bytes in a new array of exactly {@link #length()} bytes
+     */
+    public byte[] toByteArray() {
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] segment : segments) {
+            int n = Math.min(segment.length, length - offset);
+            System.arraycopy(segment, 0, result, offset, n);
+            offset += n;
+        }
+        return result;
+    }
+
+    /**
+     * Give the buffers back to the pool. The capture must not be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!reading) {
+            releaseSegments();
+        }
+    }
+
+    private void releaseSegments() {
+        for (byte[] segment : segments) {
+            pool.release(segment);
+        }
+        segments.clear();
+        length = 0;
+    }
+}
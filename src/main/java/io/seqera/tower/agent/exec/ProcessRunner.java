@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import io.seqera.tower.agent.exchange.CommandResponse;
+import io.seqera.tower.agent.jfr.ProcessExitEvent;
+import io.seqera.tower.agent.jfr.ProcessStartEvent;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each command in a new {@code sh -c} process
+ */
+public class ProcessRunner extends CommandRunner {
+
+    /**
+     * @param killGrace Time given to a process to exit after SIGTERM before sending SIGKILL
+     */
+    public ProcessRunner(Duration killGrace) {
+        super(killGrace);
+    }
+
+    @Override
+    public int run(String command, TrackedCommand tracked, Duration timeout, OutputReader reader) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final ProcessStartEvent started = new ProcessStartEvent();
+        final ProcessExitEvent exited = new ProcessExitEvent();
+        started.begin();
+        exited.begin();
+        final Process process = new ProcessBuilder()
+                .command("sh", "-c", command)
+                .redirectErrorStream(true)
+                .start();
+        spawned(start);
+        started.commit(tracked.getId(), "process");
+        tracked.attach(() -> ProcessTree.kill(process.toHandle(), killGrace, scheduler));
+
+        readOutput(process.getInputStream(), reader, tracked, timeout);
+
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            // the output is closed but the process is still running
+            ProcessTree.kill(process.toHandle(), killGrace, scheduler);
+            if (!process.waitFor(killGrace.toMillis() + 1000, TimeUnit.MILLISECONDS)) {
+                return exitStatus(tracked);
+            }
+        }
+        exited.commit(tracked.getId(), process.exitValue());
+        return process.exitValue();
+    }
+
+    /**
+     * Exit status of a process that is still running after SIGKILL, it comes from
+     * the reason why the command was stopped
+     */
+    private static int exitStatus(TrackedCommand tracked) throws IOException {
+        switch (tracked.getState()) {
+            case TIMED_OUT:
+                return CommandResponse.EXIT_TIMEOUT;
+            case CANCELLED:
+                return CommandResponse.EXIT_CANCELLED;
+            default:
+                throw new IOException("Command process still running after it was killed");
+        }
+    }
+}
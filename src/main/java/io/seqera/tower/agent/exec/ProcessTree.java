@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kills a process together with all its descendants
+ */
+public class ProcessTree {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessTree.class);
+
+    private ProcessTree() {
+    }
+
+    /**
+     * Send SIGTERM to the process and all its descendants, and SIGKILL to the ones
+     * that are still alive after the grace period.
+     * <p>
+     * The descendants are collected before signalling anything, so the children of a
+     * process that dies first are not lost when they are re-parented.
+     *
+     * @param root      Process to kill
+     * @param grace     Time to wait before SIGKILL
+     * @param scheduler Scheduler for the SIGKILL escalation, this method does not block
+     */
+    public static void kill(ProcessHandle root, Duration grace, ScheduledExecutorService scheduler) {
+        final List<ProcessHandle> tree = new ArrayList<>();
+        root.descendants().forEach(tree::add);
+        tree.add(root);
+
+        logger.debug("Terminating process {} and {} descendants", root.pid(), tree.size() - 1);
+        for (ProcessHandle process : tree) {
+            process.destroy();
+        }
+
+        scheduler.schedule(() -> {
+            for (ProcessHandle process : tree) {
+                if (process.isAlive()) {
+                    logger.debug("Killing process {}", process.pid());
+                    process.destroyForcibly();
+                }
+            }
+        }, grace.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import io.seqera.tower.agent.exchange.CommandResponse;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import io.seqera.tower.agent.exchange.WireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the recent command request ids, so that a request that Tower sends again
+ * after a reconnection is not run twice (e.g. a second {@code sbatch}).
+ * <p>
+ * A repeated id gets the response of the first request, waiting for it when the
+ * command is still running. The history is a LRU bounded by number of entries and
+ * by bytes of response. When a directory is given, the responses are kept there
+ * instead of in memory and the history survives a restart of the agent. The files are
+ * read and written outside the lock of the history, and a response is read back on
+ * the given executor, never on the thread that registers the request.
+ */
+public class RequestHistory {
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistory.class);
+
+    private static final String FILE_SUFFIX = ".json";
+
+    private static class Entry {
+        // Response of the request, null when it is only on disk
+        CompletableFuture<CommandResponse> response;
+        long size;
+
+        Entry(CompletableFuture<CommandResponse> response) {
+            this.response = response;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxSize;
+    private final Path dir;
+    private final MessageCodec codec;
+    private final Executor reader;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private final AtomicLong repeated = new AtomicLong();
+    private final AtomicLong attached = new AtomicLong();
+
+    /**
+     * @param maxEntries Maximum number of request ids remembered
+     * @param maxSize    Maximum bytes of responses kept
+     * @param dir        Directory to keep the responses, {@code null} to keep them in memory
+     * @param codec      Encodes the responses kept on disk
+     * @param reader     Reads the responses kept on disk, it may reject the task when it is busy
+     * @throws IOException If the directory cannot be read
+     */
+    public RequestHistory(int maxEntries, long maxSize, Path dir, MessageCodec codec, Executor reader) throws IOException {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException(String.format("Invalid request history size: %d", maxEntries));
+        }
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+        this.dir = dir;
+        this.codec = codec;
+        this.reader = reader;
+        if (dir != null) {
+            load();
+        }
+    }
+
+    /**
+     * Index the responses kept by a previous run, oldest first
+     */
+    private void load() throws IOException {
+        Files.createDirectories(dir);
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        final Map<Path, Long> modified = new LinkedHashMap<>();
+        final Map<Path, Long> sizes = new LinkedHashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file).toMillis());
+            sizes.put(file, Files.size(file));
+        }
+        files.sort(Comparator.comparing(modified::get));
+        final List<String> removed;
+        synchronized (this) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                final Entry entry = new Entry(null);
+                entry.size = sizes.get(file);
+                entries.put(name.substring(0, name.length() - FILE_SUFFIX.length()), entry);
+                size += entry.size;
+            }
+            removed = evict();
+        }
+        delete(removed);
+        if (!entries.isEmpty()) {
+            logger.info("Loaded {} recent command requests from '{}'", entries.size(), dir);
+        }
+    }
+
+    /**
+     * Register a command request
+     *
+     * @param id Request id
+     * @return {@code null} when the id is new and the command has to run, otherwise
+     * the response of the first request with this id. A response kept on disk is read
+     * on the executor, the future completes with {@code null} if it cannot be read and
+     * the command has to run again, or fails if the executor rejects the read.
+     */
+    public CompletableFuture<CommandResponse> attach(String id) {
+        final String key = key(id);
+        final List<String> removed;
+        synchronized (this) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.response != null) {
+                (entry.response.isDone() ? repeated : attached).incrementAndGet();
+                return entry.response;
+            }
+            if (entry == null) {
+                entries.put(key, new Entry(new CompletableFuture<>()));
+                removed = evict();
+            } else {
+                removed = null;
+            }
+        }
+        if (removed != null) {
+            delete(removed);
+            return null;
+        }
+
+        repeated.incrementAndGet();
+        try {
+            return CompletableFuture.supplyAsync(() -> read(key, id), reader);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Read a response kept on disk. When it cannot be read the id is registered again
+     * as a new request.
+     *
+     * @return The response, {@code null} if the command has to run again
+     */
+    private CommandResponse read(String key, String id) {
+        try {
+            final byte[] data = Files.readAllBytes(file(key));
+            return (CommandResponse) codec.decode(data);
+        } catch (IOException | ClassCastException e) {
+            logger.warn("Failed to read the response of command [{}], running it again - {}", id, e.getMessage());
+            synchronized (this) {
+                final Entry stale = entries.put(key, new Entry(new CompletableFuture<>()));
+                if (stale != null) {
+                    size -= stale.size;
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Keep the response of a request registered with {@link #attach(String)}, and pass
+     * it to the requests with the same id that are waiting for it
+     *
+     * @param id       Request id
+     * @param response Response of the command
+     */
+    public void complete(String id, CommandResponse response) {
+        final String key = key(id);
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || entry.response == null || entry.response.isDone()) {
+                return;
+            }
+        }
+
+        // the entry is not evicted while its future is not done
+        long stored = -1;
+        if (dir != null) {
+            try {
+                stored = store(key, response);
+            } catch (IOException e) {
+                logger.warn("Failed to keep the response of command [{}] - {}", id, e.getMessage());
+            }
+        }
+
+        final CompletableFuture<CommandResponse> future = entry.response;
+        final List<String> removed;
+        synchronized (this) {
+            if (entries.get(key) != entry) {
+                // forgotten while it was stored
+                removed = stored >= 0 ? List.of(key) : List.of();
+            } else {
+                entry.size = stored >= 0 ? stored : response.getResult() != null ? response.getResult().length : 0;
+                if (stored >= 0) {
+                    entry.response = null;
+                }
+                size += entry.size;
+                removed = evict();
+            }
+        }
+        delete(removed);
+        future.complete(response);
+    }
+
+    /**
+     * Forget a request that did not run (e.g. rejected because the agent is busy),
+     * so that it runs when Tower tries again
+     *
+     * @param id Request id
+     */
+    public void forget(String id) {
+        final String key = key(id);
+        final CompletableFuture<CommandResponse> future;
+        synchronized (this) {
+            final Entry entry = entries.remove(key);
+            if (entry == null) {
+                return;
+            }
+            size -= entry.size;
+            future = entry.response;
+        }
+        delete(key);
+        if (future != null && !future.isDone()) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Drop the least recently used entries over the limits
+     *
+     * @return The keys of the dropped entries, their files are deleted outside the lock
+     */
+    private List<String> evict() {
+        final List<String> removed = new ArrayList<>();
+        final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || size > maxSize) && it.hasNext()) {
+            final Map.Entry<String, Entry> eldest = it.next();
+            // a running command keeps its slot, so that repeated requests can still attach
+            if (eldest.getValue().response != null && !eldest.getValue().response.isDone()) {
+                continue;
+            }
+            it.remove();
+            size -= eldest.getValue().size;
+            removed.add(eldest.getKey());
+        }
+        return removed;
+    }
+
+    private long store(String key, CommandResponse response) throws IOException {
+        final byte[] data = ((String) codec.encode(response, WireFormat.JSON)).getBytes(StandardCharsets.UTF_8);
+        final Path tmp = dir.resolve(key + ".tmp");
+        Files.write(tmp, data);
+        try {
+            Files.move(tmp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file(key), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return data.length;
+    }
+
+    private void delete(List<String> keys) {
+        for (String key : keys) {
+            delete(key);
+        }
+    }
+
+    private void delete(String key) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file(key));
+        } catch (IOException e) {
+            logger.warn("Failed to delete '{}' - {}", file(key), e.getMessage());
+        }
+    }
+
+    private Path file(String key) {
+        return dir.resolve(key + FILE_SUFFIX);
+    }
+
+    /**
+     * Request ids come from Tower, on disk they are replaced by their SHA-256
+     */
+    private String key(String id) {
+        if (dir == null) {
+            return id;
+        }
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(id.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return Number of request ids remembered
+     */
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    /**
+     * @return Bytes of responses kept
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Number of repeated requests answered with the response of a finished command
+     */
+    public long getRepeated() {
+        return repeated.get();
+    }
+
+    /**
+     * @return Number of repeated requests that waited for a running command
+     */
+    public long getAttached() {
+        return attached.get();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import io.seqera.tower.agent.utils.ShellUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A long lived {@code sh} process that runs commands sent to its stdin.
+ * <p>
+ * Each command runs in a subshell with stdin from {@code /dev/null} and stderr merged
+ * into stdout, so changes to the working directory, variables or options do not leak
+ * to the next command. The worker then prints a delimiter with a random marker and
+ * the exit status, see {@link FrameInputStream}.
+ */
+class ShellWorker {
+
+    private final Process process;
+    private final OutputStream stdin;
+    private final InputStream stdout;
+    private int commands;
+
+    ShellWorker() throws IOException {
+        this.process = new ProcessBuilder()
+                .command("sh")
+                .redirectErrorStream(true)
+                .start();
+        this.stdin = process.getOutputStream();
+        this.stdout = process.getInputStream();
+    }
+
+    /**
+     * Send a command to the worker. The previous command output must have been read completely.
+     *
+     * @param command Shell command line
+     * @return The command output
+     * @throws IOException If the worker is gone
+     */
+    FrameInputStream submit(String command) throws IOException {
+        final String marker = "__tw_agent_" + UUID.randomUUID().toString().replace("-", "");
+        final String script = "( eval " + ShellUtils.quote(command) + "\n) </dev/null 2>&1\n"
+                + "printf '\\n%s %d\\n' " + marker + " \"$?\"\n";
+
+        commands++;
+        stdin.write(script.getBytes(StandardCharsets.UTF_8));
+        stdin.flush();
+        return new FrameInputStream(stdout, ("\n" + marker + " ").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return Number of commands sent to this worker
+     */
+    int getCommands() {
+        return commands;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    ProcessHandle toHandle() {
+        return process.toHandle();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import io.seqera.tower.agent.jfr.ProcessExitEvent;
+import io.seqera.tower.agent.jfr.ProcessStartEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs commands on a pool of pre-forked {@link ShellWorker}s, which avoids a fork and
+ * exec of a new shell for every command.
+ * <p>
+ * Workers are started on demand up to {@code size}. A worker is retired after running
+ * {@code maxCommands} commands, or when a command fails to complete cleanly (it timed
+ * out, it was cancelled or the worker output was not read to the end).
+ */
+public class ShellWorkerPool extends CommandRunner {
+    private static final Logger logger = LoggerFactory.getLogger(ShellWorkerPool.class);
+
+    private final int maxCommands;
+    private final Semaphore slots;
+    private final BlockingDeque<ShellWorker> idle = new LinkedBlockingDeque<>();
+
+    /**
+     * @param size        Maximum number of workers
+     * @param maxCommands Commands run by a worker before it is replaced
+     * @param killGrace   Time given to a process to exit after SIGTERM before sending SIGKILL
+     */
+    public ShellWorkerPool(int size, int maxCommands, Duration killGrace) {
+        super(killGrace);
+        if (size < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of shell workers: %d", size));
+        }
+        this.maxCommands = Math.max(1, maxCommands);
+        this.slots = new Semaphore(size, true);
+    }
+
+    @Override
+    public int run(String command, TrackedCommand tracked, Duration timeout, OutputReader reader) throws IOException, InterruptedException {
+        slots.acquire();
+        ShellWorker worker = null;
+        boolean reusable = false;
+        try {
+            final long start = System.nanoTime();
+            final ProcessStartEvent started = new ProcessStartEvent();
+            final ProcessExitEvent exited = new ProcessExitEvent();
+            started.begin();
+            exited.begin();
+            worker = idle.pollFirst();
+            if (worker == null || !worker.isAlive()) {
+                worker = new ShellWorker();
+                logger.debug("Started shell worker {}", worker.toHandle().pid());
+            }
+
+            final ShellWorker current = worker;
+            final FrameInputStream output = worker.submit(command);
+            spawned(start);
+            started.commit(tracked.getId(), "shell-worker");
+            tracked.attach(() -> ProcessTree.kill(current.toHandle(), killGrace, scheduler));
+
+            readOutput(output, reader, tracked, timeout);
+
+            reusable = tracked.isActive() && output.isComplete() && worker.getCommands() < maxCommands;
+            exited.commit(tracked.getId(), output.getExitStatus());
+            return output.getExitStatus();
+        } finally {
+            if (reusable) {
+                idle.offerFirst(worker);
+            } else if (worker != null) {
+                retire(worker);
+            }
+            slots.release();
+        }
+    }
+
+    private void retire(ShellWorker worker) {
+        logger.debug("Retiring shell worker {} after {} commands", worker.toHandle().pid(), worker.getCommands());
+        ProcessTree.kill(worker.toHandle(), killGrace, scheduler);
+    }
+
+    /**
+     * Stop the idle workers
+     */
+    @Override
+    public void close() {
+        ShellWorker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            retire(worker);
+        }
+    }
+
+    /**
+     * @return Number of idle workers
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+}
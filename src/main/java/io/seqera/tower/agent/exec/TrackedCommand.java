@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A command accepted by the agent that can be cancelled or timed out
+ * while it is queued or running.
+ */
+public class TrackedCommand {
+
+    public enum State {ACTIVE, CANCELLED, TIMED_OUT}
+
+    private final String id;
+    private final AtomicReference<State> state = new AtomicReference<>(State.ACTIVE);
+    private final AtomicBoolean killing = new AtomicBoolean();
+    private final CompletableFuture<Void> killed = new CompletableFuture<>();
+    private volatile Runnable killer;
+
+    public TrackedCommand(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public boolean isActive() {
+        return state.get() == State.ACTIVE;
+    }
+
+    /**
+     * Set how to kill the command once it is running. If the command was already
+     * cancelled it is killed straight away.
+     *
+     * @param killer Kills the command processes, it is run at most once
+     */
+    public void attach(Runnable killer) {
+        this.killer = killer;
+        if (!isActive()) {
+            kill();
+        }
+    }
+
+    public void cancel() {
+        if (state.compareAndSet(State.ACTIVE, State.CANCELLED)) {
+            kill();
+        }
+    }
+
+    public void timeout() {
+        if (state.compareAndSet(State.ACTIVE, State.TIMED_OUT)) {
+            kill();
+        }
+    }
+
+    /**
+     * @return Completes when the command is cancelled or timed out
+     */
+    public CompletableFuture<Void> killed() {
+        return killed;
+    }
+
+    private void kill() {
+        final Runnable k = killer;
+        if (k != null && killing.compareAndSet(false, true)) {
+            k.run();
+        }
+        killed.complete(null);
+    }
+}
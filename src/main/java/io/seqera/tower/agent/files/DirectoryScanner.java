@@ -0,0 +1,276 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.files;
+
+import io.seqera.tower.agent.exchange.DirSummary;
+import io.seqera.tower.agent.exec.TrackedCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Computes the size of directory trees in parallel with fork/join, one task per directory.
+ * <p>
+ * The files of each directory are summarised in a cache keyed by the directory path and
+ * modification time. A directory mtime changes when entries are added, removed or renamed
+ * in it, so on the next scan an unchanged directory is not listed and its files are not
+ * read again; only its subdirectories are checked. Files that grow in place do not change
+ * the mtime of their directory, a refresh scan reads everything again. The cache keeps the
+ * directories scanned most recently, the others are evicted once it is full.
+ */
+public class DirectoryScanner implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryScanner.class);
+
+    // Summary of the entries of one directory, without its subdirectories
+    private static class CachedDir {
+        final FileTime mtime;
+        final long files;
+        final long bytes;
+        final List<String> subdirs;
+
+        CachedDir(FileTime mtime, long files, long bytes, List<String> subdirs) {
+            this.mtime = mtime;
+            this.files = files;
+            this.bytes = bytes;
+            this.subdirs = subdirs;
+        }
+    }
+
+    // Totals of a subtree
+    private static class Totals {
+        long files;
+        long directories;
+        long bytes;
+        long errors;
+
+        void add(Totals other) {
+            files += other.files;
+            directories += other.directories + 1;
+            bytes += other.bytes;
+            errors += other.errors;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Map<Path, CachedDir> cache;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong dirsRead = new AtomicLong();
+
+    /**
+     * @param parallelism     Number of directories read at the same time
+     * @param maxCacheEntries Maximum number of directories kept in the cache
+     */
+    public DirectoryScanner(int parallelism, int maxCacheEntries) {
+        this.pool = new ForkJoinPool(parallelism);
+        // access ordered, the eldest entry is the least recently scanned directory
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedDir> eldest) {
+                return size() > maxCacheEntries;
+            }
+        };
+    }
+
+    /**
+     * Scan a directory tree. Symbolic links are counted as files and never followed.
+     *
+     * @param root    The directory to scan
+     * @param depth   Level of the directories reported to {@code entries}, zero for none
+     * @param refresh Read every directory instead of using the cache
+     * @param tracked Tracks the scan cancellation
+     * @param entries Receives the summary of each directory at {@code depth}, from many threads
+     * @return The summary of the whole tree
+     * @throws IOException           If the root is not a readable directory
+     * @throws CancellationException If the scan is cancelled
+     */
+    public DirSummary scan(Path root, int depth, boolean refresh, TrackedCommand tracked, Consumer<DirSummary> entries) throws IOException {
+        final BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class);
+        if (!attrs.isDirectory()) {
+            throw new IOException(String.format("Not a directory: %s", root));
+        }
+
+        final long start = System.nanoTime();
+        final Totals totals = pool.invoke(new ScanTask(root, root, attrs.lastModifiedTime(), 0, depth, refresh, tracked, entries));
+        logger.debug("Scanned {} in {} ms - {} files, {} directories ({} read, {} cached so far)", root, (System.nanoTime() - start) / 1_000_000, totals.files, totals.directories, dirsRead.get(), cacheHits.get());
+        return new DirSummary("", totals.files, totals.directories, totals.bytes, totals.errors);
+    }
+
+    /**
+     * Scan a directory tree on the scanner threads, without waiting for it
+     *
+     * @see #scan(Path, int, boolean, TrackedCommand, Consumer)
+     * @return The summary of the whole tree, failed with the exception of the scan
+     */
+    public CompletableFuture<DirSummary> scanAsync(Path root, int depth, boolean refresh, TrackedCommand tracked, Consumer<DirSummary> entries) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return scan(root, depth, refresh, tracked, entries);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, pool);
+    }
+
+    /**
+     * @return Directories found unchanged in the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return Directories listed
+     */
+    public long getDirsRead() {
+        return dirsRead.get();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private CachedDir cached(Path dir) {
+        synchronized (cache) {
+            return cache.get(dir);
+        }
+    }
+
+    private void uncache(Path dir) {
+        synchronized (cache) {
+            cache.remove(dir);
+        }
+    }
+
+    private class ScanTask extends RecursiveTask<Totals> {
+        private final Path root;
+        private final Path dir;
+        private final FileTime mtime;
+        private final int level;
+        private final int depth;
+        private final boolean refresh;
+        private final TrackedCommand tracked;
+        private final Consumer<DirSummary> entries;
+
+        ScanTask(Path root, Path dir, FileTime mtime, int level, int depth, boolean refresh, TrackedCommand tracked, Consumer<DirSummary> entries) {
+            this.root = root;
+            this.dir = dir;
+            this.mtime = mtime;
+            this.level = level;
+            this.depth = depth;
+            this.refresh = refresh;
+            this.tracked = tracked;
+            this.entries = entries;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (!tracked.isActive()) {
+                throw new CancellationException("Scan cancelled");
+            }
+
+            final Totals totals = new Totals();
+            CachedDir summary = refresh ? null : cached(dir);
+            if (summary != null && summary.mtime.equals(mtime)) {
+                cacheHits.incrementAndGet();
+            } else {
+                try {
+                    summary = read();
+                } catch (NoSuchFileException e) {
+                    // removed while scanning
+                    uncache(dir);
+                    return totals;
+                } catch (IOException e) {
+                    logger.trace("Cannot read directory {} - {}", dir, e.getMessage());
+                    uncache(dir);
+                    totals.errors++;
+                    return totals;
+                }
+                synchronized (cache) {
+                    cache.put(dir, summary);
+                }
+            }
+            totals.files = summary.files;
+            totals.bytes = summary.bytes;
+
+            final List<ScanTask> tasks = new ArrayList<>(summary.subdirs.size());
+            for (String name : summary.subdirs) {
+                final Path subdir = dir.resolve(name);
+                try {
+                    final BasicFileAttributes attrs = Files.readAttributes(subdir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        tasks.add(new ScanTask(root, subdir, attrs.lastModifiedTime(), level + 1, depth, refresh, tracked, entries));
+                    }
+                } catch (IOException e) {
+                    // removed since the directory was cached, its mtime changed and it is read again next time
+                    logger.trace("Cannot read directory {} - {}", subdir, e.getMessage());
+                }
+            }
+            for (ScanTask task : invokeAll(tasks)) {
+                totals.add(task.join());
+            }
+
+            if (depth > 0 && level == depth) {
+                entries.accept(new DirSummary(root.relativize(dir).toString(), totals.files, totals.directories, totals.bytes, totals.errors));
+            }
+            return totals;
+        }
+
+        private CachedDir read() throws IOException {
+            dirsRead.incrementAndGet();
+            long files = 0;
+            long bytes = 0;
+            final List<String> subdirs = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    final BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        subdirs.add(entry.getFileName().toString());
+                    } else {
+                        files++;
+                        bytes += attrs.size();
+                    }
+                }
+            }
+            return new CachedDir(mtime, files, bytes, subdirs);
+        }
+    }
+}
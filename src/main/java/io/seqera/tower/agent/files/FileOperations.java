@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.files;
+
+import io.seqera.tower.agent.exchange.FileReadRequest;
+import io.seqera.tower.agent.exchange.FileReadResponse;
+import io.seqera.tower.agent.exchange.FileStatRequest;
+import io.seqera.tower.agent.exchange.FileStatResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves the file requests in-process with {@code java.nio.file}, without starting a shell.
+ * <p>
+ * Only the files under the configured roots can be accessed. Paths are checked both as
+ * they are written and after following symbolic links, so a link cannot be used to get
+ * out of a root.
+ */
+public class FileOperations {
+
+    private final List<Path> roots;
+    private final List<Path> realRoots;
+    private final int maxReadSize;
+
+    /**
+     * @param roots       The directories that can be accessed, the first one is used to resolve relative paths
+     * @param maxReadSize Maximum number of bytes returned by a read
+     * @throws IOException If a root does not exist
+     */
+    public FileOperations(List<Path> roots, int maxReadSize) throws IOException {
+        if (roots.isEmpty()) {
+            throw new IllegalArgumentException("At least one file root is required");
+        }
+        this.roots = new ArrayList<>();
+        this.realRoots = new ArrayList<>();
+        for (Path root : roots) {
+            this.roots.add(root.toAbsolutePath().normalize());
+            this.realRoots.add(root.toRealPath());
+        }
+        this.maxReadSize = maxReadSize;
+    }
+
+    public FileStatResponse stat(FileStatRequest request) {
+        try {
+            final Path path = resolve(request.getPath());
+            final BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return new FileStatResponse(request.getId(), false);
+            }
+            checkReal(path, request.getPath());
+
+            final String type = attrs.isRegularFile() ? FileStatResponse.TYPE_FILE : attrs.isDirectory() ? FileStatResponse.TYPE_DIRECTORY : FileStatResponse.TYPE_OTHER;
+            return new FileStatResponse(request.getId(), type, attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (IOException | RuntimeException e) {
+            return new FileStatResponse(request.getId(), false).error(errorMessage(e));
+        }
+    }
+
+    public FileReadResponse read(FileReadRequest request) {
+        try {
+            if (request.getOffset() < 0 || (request.getLength() != null && request.getLength() < 0)) {
+                throw new IllegalArgumentException("Invalid file range");
+            }
+            final Path path = resolve(request.getPath());
+            checkReal(path, request.getPath());
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                final long size = channel.size();
+                final long offset = Math.min(request.getOffset(), size);
+                final long wanted = request.getLength() != null ? Math.min(request.getLength(), size - offset) : size - offset;
+                final int length = (int) Math.min(wanted, maxReadSize);
+
+                final byte[] data = new byte[length];
+                final ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) == -1) {
+                        break;
+                    }
+                }
+                if (buffer.hasRemaining()) {
+                    // the file was truncated while reading it
+                    final byte[] partial = new byte[buffer.position()];
+                    System.arraycopy(data, 0, partial, 0, partial.length);
+                    return new FileReadResponse(request.getId(), partial, offset, size, true);
+                }
+                return new FileReadResponse(request.getId(), data, offset, size, offset + length >= size);
+            }
+        } catch (IOException | RuntimeException e) {
+            return new FileReadResponse(request.getId(), new byte[0], request.getOffset(), 0, false).error(errorMessage(e));
+        }
+    }
+
+    /**
+     * @param value The requested path, relative to the first root or absolute
+     * @return The normalised path, after checking that it exists inside the roots
+     * @throws IOException If the path does not exist or it is outside the roots
+     */
+    public Path access(String value) throws IOException {
+        final Path path = resolve(value);
+        checkReal(path, value);
+        return path;
+    }
+
+    /**
+     * @param value The requested path, relative to the first root or absolute
+     * @return The normalised path
+     * @throws AccessDeniedException If the path is outside the roots
+     */
+    Path resolve(String value) throws AccessDeniedException {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing file path");
+        }
+        final Path path = roots.get(0).resolve(value).normalize();
+        for (Path root : roots) {
+            if (path.startsWith(root)) {
+                return path;
+            }
+        }
+        throw new AccessDeniedException(value, null, "outside the agent file roots");
+    }
+
+    private void checkReal(Path path, String value) throws IOException {
+        final Path real = path.toRealPath();
+        for (Path root : realRoots) {
+            if (real.startsWith(root)) {
+                return;
+            }
+        }
+        throw new AccessDeniedException(value, null, "outside the agent file roots");
+    }
+
+    static String errorMessage(Exception e) {
+        if (e instanceof NoSuchFileException) {
+            return String.format("No such file: %s", e.getMessage());
+        }
+        if (e instanceof AccessDeniedException) {
+            final AccessDeniedException denied = (AccessDeniedException) e;
+            return String.format("Access denied: %s%s", denied.getFile(), denied.getReason() != null ? " - " + denied.getReason() : "");
+        }
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+}
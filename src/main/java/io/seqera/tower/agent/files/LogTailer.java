@@ -0,0 +1,317 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.files;
+
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.LogData;
+import io.seqera.tower.agent.exchange.LogSubscribe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Follows log files on behalf of Tower and sends only the bytes appended since the
+ * last time, so the cost of following a log does not grow with its size.
+ * <p>
+ * The files are checked on a timer, which also batches the small appends of a busy
+ * log into one message per interval (file watchers do not work on shared file systems
+ * like NFS). A file that shrinks was truncated and it is sent again from the start. A
+ * file that is replaced by a new one (same path, different inode) was rotated: the rest
+ * of the old file is sent first, then the new file from the start. In both cases the
+ * first message of the new content has the {@code reset} flag.
+ * <p>
+ * A subscription is not checked again while its previous message is still being sent, and
+ * no chunk is read while the outbound queue is full, so a fast growing log is sent at the
+ * pace of the connection. The timer never waits while it holds a subscription, and an
+ * unsubscribe never waits for the timer: a subscription being checked is closed by the
+ * timer when it is done with it.
+ */
+public class LogTailer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LogTailer.class);
+
+    /**
+     * Tells if the outbound queue has room for another chunk, it must not block
+     */
+    @FunctionalInterface
+    public interface Throttle {
+        boolean hasCapacity();
+    }
+
+    private static class Subscription {
+        final String id;
+        final Path path;
+        FileChannel channel;
+        Object fileKey;
+        long offset;
+        boolean reset;
+        volatile boolean closed;
+        final ReentrantLock lock = new ReentrantLock();
+        CompletableFuture<?> sending = CompletableFuture.completedFuture(null);
+
+        Subscription(String id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    private final FileOperations files;
+    private final int maxChunkSize;
+    private final int maxSubscriptions;
+    private final Function<AgentMessage, CompletableFuture<?>> sender;
+    private final Throttle throttle;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    /**
+     * @param files            Checks that the files are inside the agent roots
+     * @param interval         Time between checks of the files, zero to only check them on {@link #poll()}
+     * @param maxChunkSize     Maximum bytes per message
+     * @param maxSubscriptions Maximum number of files followed at the same time
+     * @param sender           Sends a message to Tower
+     * @param throttle         Waits for room in the outbound queue
+     */
+    public LogTailer(FileOperations files, Duration interval, int maxChunkSize, int maxSubscriptions, Function<AgentMessage, CompletableFuture<?>> sender, Throttle throttle) {
+        this.files = files;
+        this.maxChunkSize = maxChunkSize;
+        this.maxSubscriptions = maxSubscriptions;
+        this.sender = sender;
+        this.throttle = throttle;
+        if (interval.isZero() || interval.isNegative()) {
+            this.timer = null;
+        } else {
+            this.timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("tw-agent-log-tail").daemon(true).factory());
+            this.timer.scheduleWithFixedDelay(this::poll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Start following a file. Errors are sent to Tower as a {@link LogData} with an error.
+     * A subscription with the same id replaces the previous one.
+     *
+     * @param message Subscribe message
+     */
+    public void subscribe(LogSubscribe message) {
+        unsubscribe(message.getId());
+        if (subscriptions.size() >= maxSubscriptions) {
+            sender.apply(new LogData(message.getId(), 0, new byte[0], false).error(String.format("Too many log subscriptions, the maximum is %d", maxSubscriptions)));
+            return;
+        }
+
+        final Subscription sub;
+        try {
+            sub = new Subscription(message.getId(), files.access(message.getPath()));
+            open(sub);
+            final long size = sub.channel.size();
+            if (message.getOffset() == LogSubscribe.OFFSET_END) {
+                sub.offset = size;
+            } else if (message.getOffset() > size || message.getOffset() < 0) {
+                // the file is shorter than what Tower has, it was truncated or replaced
+                sub.reset = true;
+            } else {
+                sub.offset = message.getOffset();
+            }
+        } catch (IOException | RuntimeException e) {
+            sender.apply(new LogData(message.getId(), message.getOffset(), new byte[0], false).error(FileOperations.errorMessage(e)));
+            return;
+        }
+
+        subscriptions.put(sub.id, sub);
+        logger.debug("Following log [{}] {} from offset {}", sub.id, sub.path, sub.offset);
+    }
+
+    /**
+     * Stop following a file
+     *
+     * @param id Subscription id
+     */
+    public void unsubscribe(String id) {
+        final Subscription sub = subscriptions.remove(id);
+        if (sub != null) {
+            close(sub);
+            logger.debug("Stopped following log [{}] {}", sub.id, sub.path);
+        }
+    }
+
+    /**
+     * Stop following all the files, when Tower is disconnected
+     */
+    public void unsubscribeAll() {
+        for (String id : subscriptions.keySet()) {
+            unsubscribe(id);
+        }
+    }
+
+    public int size() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Check all the followed files and send what was appended to them
+     */
+    public void poll() {
+        for (Subscription sub : subscriptions.values()) {
+            try {
+                tail(sub);
+            } catch (IOException | RuntimeException e) {
+                if (subscriptions.remove(sub.id, sub)) {
+                    logger.debug("Log [{}] {} failed - {}", sub.id, sub.path, e.getMessage());
+                    close(sub);
+                    sender.apply(new LogData(sub.id, sub.offset, new byte[0], false).error(FileOperations.errorMessage(e)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        unsubscribeAll();
+    }
+
+    private void tail(Subscription sub) throws IOException {
+        sub.lock.lock();
+        try {
+            if (sub.closed || !sub.sending.isDone()) {
+                return;
+            }
+
+            if (sub.channel.size() < sub.offset) {
+                logger.debug("Log [{}] {} was truncated", sub.id, sub.path);
+                sub.offset = 0;
+                sub.reset = true;
+            }
+            if (!drain(sub)) {
+                // the rest is sent once Tower has the previous chunk
+                return;
+            }
+
+            if (isRotated(sub)) {
+                logger.debug("Log [{}] {} was rotated", sub.id, sub.path);
+                sub.channel.close();
+                open(sub);
+                sub.offset = 0;
+                sub.reset = true;
+                if (!drain(sub)) {
+                    return;
+                }
+            }
+
+            if (sub.reset) {
+                // let Tower know about an empty new file
+                send(sub, new byte[0]);
+            }
+        } finally {
+            sub.lock.unlock();
+            // unsubscribed while it was checked
+            if (sub.closed) {
+                close(sub);
+            }
+        }
+    }
+
+    /**
+     * Send from the subscription offset to the end of its file, stopping while a chunk
+     * is still being sent
+     *
+     * @return {@code true} if the end of the file was sent
+     */
+    private boolean drain(Subscription sub) throws IOException {
+        long remaining = sub.channel.size() - sub.offset;
+        while (remaining > 0) {
+            // the rest waits for the next tick
+            if (!sub.sending.isDone() || !throttle.hasCapacity()) {
+                return false;
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(remaining, maxChunkSize));
+            while (buffer.hasRemaining()) {
+                if (sub.channel.read(buffer, sub.offset + buffer.position()) == -1) {
+                    break;
+                }
+            }
+            if (buffer.position() == 0) {
+                return true;
+            }
+            final byte[] data = buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+            send(sub, data);
+            remaining -= data.length;
+        }
+        return true;
+    }
+
+    private void send(Subscription sub, byte[] data) {
+        final LogData message = new LogData(sub.id, sub.offset, data, sub.reset);
+        sub.offset += data.length;
+        sub.reset = false;
+        sub.sending = sender.apply(message);
+    }
+
+    private boolean isRotated(Subscription sub) throws IOException {
+        final Object fileKey;
+        try {
+            fileKey = Files.readAttributes(sub.path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            // moved away and the new file is not there yet
+            return false;
+        }
+        return fileKey != null && !Objects.equals(fileKey, sub.fileKey);
+    }
+
+    private void open(Subscription sub) throws IOException {
+        sub.channel = FileChannel.open(sub.path, StandardOpenOption.READ);
+        sub.fileKey = Files.readAttributes(sub.path, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Close a subscription without waiting, when the timer is checking it the channel
+     * is closed by the timer at the end of the check
+     */
+    private static void close(Subscription sub) {
+        sub.closed = true;
+        if (!sub.lock.tryLock()) {
+            return;
+        }
+        try {
+            if (sub.channel != null) {
+                sub.channel.close();
+            }
+        } catch (IOException e) {
+            logger.trace("Error closing log [{}] - {}", sub.id, e.getMessage());
+        } finally {
+            sub.lock.unlock();
+        }
+    }
+}
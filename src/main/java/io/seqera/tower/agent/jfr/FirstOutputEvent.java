@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Time from the start of reading the output of a command to its first byte
+ */
+@Name("io.seqera.tower.agent.FirstOutput")
+@Label("First Output")
+@Category("Tower Agent")
+@Description("Time from the start of reading the output of a command to its first byte")
+@StackTrace(false)
+public class FirstOutputEvent extends Event {
+
+    @Label("Request ID")
+    private String requestId;
+
+    /**
+     * End the event and record it, if JFR is recording it
+     */
+    public void commit(String requestId) {
+        end();
+        if (shouldCommit()) {
+            this.requestId = requestId;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.jfr;
+
+import io.seqera.tower.agent.exchange.AgentMessage;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A websocket frame was written to the session, the duration is the time to write it
+ */
+@Name("io.seqera.tower.agent.FrameSent")
+@Label("Frame Sent")
+@Category("Tower Agent")
+@Description("A websocket frame was written to the session, the duration is the time to write it")
+@StackTrace(false)
+public class FrameSentEvent extends Event {
+
+    @Label("Request ID")
+    private String requestId;
+
+    @Label("Message Type")
+    private String messageType;
+
+    @Label("Size")
+    @DataAmount
+    private long size;
+
+    /**
+     * End the event and record it, if JFR is recording it
+     */
+    public void commit(AgentMessage message, long size) {
+        end();
+        if (shouldCommit()) {
+            this.requestId = MessageIds.of(message);
+            this.messageType = message.getClass().getSimpleName();
+            this.size = size;
+            commit();
+        }
+    }
+}
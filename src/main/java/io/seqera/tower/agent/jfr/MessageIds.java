@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.jfr;
+
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.CommandBatchRequest;
+import io.seqera.tower.agent.exchange.CommandBatchResponse;
+import io.seqera.tower.agent.exchange.CommandCancel;
+import io.seqera.tower.agent.exchange.CommandChunk;
+import io.seqera.tower.agent.exchange.CommandRequest;
+import io.seqera.tower.agent.exchange.CommandResponse;
+
+/**
+ * Request id of the messages of the command lifecycle, that ties together the events
+ * of a command
+ */
+final class MessageIds {
+
+    private MessageIds() {
+    }
+
+    static String of(AgentMessage message) {
+        if (message instanceof CommandRequest) {
+            return ((CommandRequest) message).getId();
+        }
+        if (message instanceof CommandResponse) {
+            return ((CommandResponse) message).getId();
+        }
+        if (message instanceof CommandChunk) {
+            return ((CommandChunk) message).getId();
+        }
+        if (message instanceof CommandCancel) {
+            return ((CommandCancel) message).getId();
+        }
+        if (message instanceof CommandBatchRequest) {
+            return ((CommandBatchRequest) message).getId();
+        }
+        if (message instanceof CommandBatchResponse) {
+            return ((CommandBatchResponse) message).getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A command process was started, or handed to a shell worker
+ */
+@Name("io.seqera.tower.agent.ProcessStart")
+@Label("Process Start")
+@Category("Tower Agent")
+@Description("A command process was started, or handed to a shell worker")
+@StackTrace(false)
+public class ProcessStartEvent extends Event {
+
+    @Label("Request ID")
+    private String requestId;
+
+    @Label("Runner")
+    private String runner;
+
+    /**
+     * End the event and record it, if JFR is recording it
+     */
+    public void commit(String requestId, String runner) {
+        end();
+        if (shouldCommit()) {
+            this.requestId = requestId;
+            this.runner = runner;
+            commit();
+        }
+    }
+}
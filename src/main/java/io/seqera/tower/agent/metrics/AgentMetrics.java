@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the agent, written in the Prometheus text exposition format.
+ * <p>
+ * The instruments shared by several components (e.g. the websocket client and the
+ * command runner) are created here, the other components register their own
+ * counters and gauges.
+ */
+public class AgentMetrics {
+
+    /**
+     * A metric that can be written in the Prometheus text format
+     */
+    public interface Metric {
+        void write(StringBuilder out);
+    }
+
+    /**
+     * A monotonic counter
+     */
+    public static class Counter implements Metric {
+        private final String name;
+        private final String help;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        public void write(StringBuilder out) {
+            writeSample(out, name, help, "counter", value.sum());
+        }
+    }
+
+    private static final double[] SESSION_BUCKETS = {60, 300, 900, 3600, 4 * 3600, 12 * 3600, 24 * 3600, 7 * 24 * 3600};
+
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+
+    private final Histogram spawnTime = histogram("tw_agent_command_spawn_seconds", "Time to start the process of a command", Histogram.LATENCY_BUCKETS);
+    private final Histogram encodeTime = histogram("tw_agent_message_encode_seconds", "Time to serialize a message to Tower", Histogram.LATENCY_BUCKETS);
+    private final Histogram sessionDuration = histogram("tw_agent_session_duration_seconds", "Duration of the closed websocket sessions", SESSION_BUCKETS);
+    private final Counter receivedBytes = counter("tw_agent_received_bytes_total", "Bytes received from Tower");
+    private final Counter sentBytes = counter("tw_agent_sent_bytes_total", "Bytes queued to send to Tower");
+
+    /**
+     * @return A new histogram
+     */
+    public Histogram histogram(String name, String help, double[] buckets) {
+        return register(new Histogram(name, help, buckets));
+    }
+
+    /**
+     * @return A new counter
+     */
+    public Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+
+    /**
+     * Register a counter kept by another component
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        register(out -> writeSample(out, name, help, "counter", value.getAsLong()));
+    }
+
+    /**
+     * Register a value that can go up and down
+     */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        register(out -> writeSample(out, name, help, "gauge", value.getAsDouble()));
+    }
+
+    /**
+     * Register a counter with one sample for each value of a label, e.g. for each Tower connection
+     */
+    public void counter(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        register(out -> writeSamples(out, name, help, "counter", label, values.get()));
+    }
+
+    /**
+     * Register a gauge with one sample for each value of a label
+     */
+    public void gauge(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        register(out -> writeSamples(out, name, help, "gauge", label, values.get()));
+    }
+
+    private <T extends Metric> T register(T metric) {
+        metrics.add(metric);
+        return metric;
+    }
+
+    /**
+     * @return All the metrics in the Prometheus text exposition format
+     */
+    public String scrape() {
+        final StringBuilder out = new StringBuilder(4096);
+        for (Metric metric : metrics) {
+            metric.write(out);
+        }
+        return out.toString();
+    }
+
+    private static void writeSample(StringBuilder out, String name, String help, String type, Number value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void writeSamples(StringBuilder out, String name, String help, String type, String label, Map<String, ? extends Number> values) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for (Map.Entry<String, ? extends Number> sample : values.entrySet()) {
+            final String value = sample.getKey().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+            out.append(name).append('{').append(label).append("=\"").append(value).append("\"} ").append(sample.getValue()).append('\n');
+        }
+    }
+
+    public Histogram getSpawnTime() {
+        return spawnTime;
+    }
+
+    public Histogram getEncodeTime() {
+        return encodeTime;
+    }
+
+    public Histogram getSessionDuration() {
+        return sessionDuration;
+    }
+
+    public Counter getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public Counter getSentBytes() {
+        return sentBytes;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of a duration (in seconds) over fixed buckets, as a Prometheus histogram.
+ * Recording a value does not lock nor allocate.
+ */
+public class Histogram implements AgentMetrics.Metric {
+
+    /**
+     * Buckets for the latencies of the agent operations, from 1ms to 5 minutes
+     */
+    public static final double[] LATENCY_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    private final String name;
+    private final String help;
+    private final double[] buckets;
+
+    // Observations per bucket, the last one counts the values above the largest bucket
+    private final LongAdder[] counts;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(String name, String help, double[] buckets) {
+        for (int i = 1; i < buckets.length; i++) {
+            if (buckets[i] <= buckets[i - 1]) {
+                throw new IllegalArgumentException(String.format("Histogram '%s' buckets must be sorted", name));
+            }
+        }
+        this.name = name;
+        this.help = help;
+        this.buckets = buckets.clone();
+        this.counts = new LongAdder[buckets.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param seconds Value to record
+     */
+    public void observe(double seconds) {
+        int i = 0;
+        while (i < buckets.length && seconds > buckets[i]) {
+            i++;
+        }
+        counts[i].increment();
+        sum.add(seconds);
+    }
+
+    /**
+     * Record the time elapsed since {@code start}
+     *
+     * @param start Value of {@link System#nanoTime()} at the start of the operation
+     */
+    public void observeSince(long start) {
+        observe((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * @return Number of values recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder it : counts) {
+            count += it.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return Sum of the values recorded
+     */
+    public double getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public void write(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket{le=\"").append(buckets[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[buckets.length].sum();
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum ").append(sum.sum()).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import io.seqera.tower.agent.exchange.JobStatus;
+import io.seqera.tower.agent.exec.BufferPool;
+import io.seqera.tower.agent.exec.CommandRunner;
+import io.seqera.tower.agent.exec.OutputCapture;
+import io.seqera.tower.agent.exec.TrackedCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps an index by job id of the user's batch scheduler jobs.
+ * <p>
+ * The scheduler is polled with a single command for all the jobs, at most once per
+ * interval and only when there is a query, so the agent does not run a scheduler
+ * command for every job status request. Concurrent queries that find the index out of
+ * date wait for the same poll.
+ */
+public class JobStatusTracker {
+    private static final Logger logger = LoggerFactory.getLogger(JobStatusTracker.class);
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMinutes(1);
+    private static final int MAX_OUTPUT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The jobs as seen by one poll
+     */
+    public static class Snapshot {
+        private final Map<String, JobStatus> jobs;
+        private final long timestamp;
+        private final long nanos;
+
+        Snapshot(Map<String, JobStatus> jobs, long timestamp, long nanos) {
+            this.jobs = jobs;
+            this.timestamp = timestamp;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @param jobIds The jobs to report, all of them when it is {@code null} or empty
+         * @return The jobs state, {@link JobStatus.State#NOT_FOUND} for the jobs the scheduler did not report
+         */
+        public List<JobStatus> get(List<String> jobIds) {
+            if (jobIds == null || jobIds.isEmpty()) {
+                return new ArrayList<>(jobs.values());
+            }
+            final List<JobStatus> result = new ArrayList<>(jobIds.size());
+            for (String jobId : jobIds) {
+                final JobStatus status = jobs.get(jobId);
+                result.add(status != null ? status : new JobStatus(jobId, JobStatus.State.NOT_FOUND, null));
+            }
+            return result;
+        }
+
+        /**
+         * @return Epoch milliseconds of the poll
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int size() {
+            return jobs.size();
+        }
+    }
+
+    private final SchedulerParser parser;
+    private final String command;
+    private final long intervalNanos;
+    private final CommandRunner runner;
+    private final BufferPool bufferPool;
+
+    private final ReentrantLock polling = new ReentrantLock();
+    private final AtomicLong polls = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    // The last poll failure, reported until the next poll is due
+    private IOException failure;
+    private long failureNanos;
+
+    /**
+     * @param parser     Reads the scheduler output
+     * @param command    Shell command that lists the jobs
+     * @param interval   Minimum time between polls
+     * @param runner     Runs the command
+     * @param bufferPool Buffers for the command output
+     */
+    public JobStatusTracker(SchedulerParser parser, String command, Duration interval, CommandRunner runner, BufferPool bufferPool) {
+        this.parser = parser;
+        this.command = command;
+        this.intervalNanos = interval.toNanos();
+        this.runner = runner;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * @return The index, polling the scheduler if it is older than the interval
+     * @throws IOException          If the scheduler command fails
+     * @throws InterruptedException If the calling thread is interrupted
+     */
+    public Snapshot query() throws IOException, InterruptedException {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+
+        polling.lockInterruptibly();
+        try {
+            // another query may have polled while this one was waiting
+            current = snapshot;
+            if (isFresh(current)) {
+                return current;
+            }
+            if (failure != null && System.nanoTime() - failureNanos < intervalNanos) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            try {
+                current = poll();
+            } catch (IOException e) {
+                failure = e;
+                failureNanos = System.nanoTime();
+                throw e;
+            }
+            failure = null;
+            snapshot = current;
+            return current;
+        } finally {
+            polling.unlock();
+        }
+    }
+
+    /**
+     * @return Number of times the scheduler was polled
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    public String getSchedulerName() {
+        return parser.getName();
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && System.nanoTime() - current.nanos < intervalNanos;
+    }
+
+    private Snapshot poll() throws IOException, InterruptedException {
+        polls.incrementAndGet();
+        final long start = System.nanoTime();
+        final TrackedCommand tracked = new TrackedCommand("job-status-" + polls.get());
+        try (OutputCapture output = new OutputCapture(bufferPool, MAX_OUTPUT_SIZE)) {
+            final int exitStatus = runner.run(command, tracked, POLL_TIMEOUT, output::read);
+            final String text = new String(output.toByteArray(), StandardCharsets.UTF_8);
+            if (!tracked.isActive()) {
+                throw new IOException(String.format("%s poll timed out after %s", parser.getName(), POLL_TIMEOUT));
+            }
+            if (exitStatus != 0) {
+                throw new IOException(String.format("%s poll failed with exit status %d - %s", parser.getName(), exitStatus, text.trim()));
+            }
+
+            final Snapshot result = new Snapshot(parser.parse(text), System.currentTimeMillis(), start);
+            logger.debug("Polled {} jobs from {} in {} ms", result.size(), parser.getName(), (System.nanoTime() - start) / 1_000_000);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import io.seqera.tower.agent.exchange.JobStatus;
+import io.seqera.tower.agent.utils.ShellUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * IBM Spectrum LSF, using {@code bjobs}. Recently finished jobs are included.
+ */
+public class LsfParser implements SchedulerParser {
+
+    private static final Map<String, JobStatus.State> STATES = Map.of(
+            "PEND", JobStatus.State.PENDING,
+            "WAIT", JobStatus.State.PENDING,
+            "RUN", JobStatus.State.RUNNING,
+            "PSUSP", JobStatus.State.HOLD,
+            "USUSP", JobStatus.State.HOLD,
+            "SSUSP", JobStatus.State.HOLD,
+            "DONE", JobStatus.State.DONE,
+            "EXIT", JobStatus.State.ERROR,
+            "ZOMBI", JobStatus.State.ERROR
+    );
+
+    @Override
+    public String getName() {
+        return "lsf";
+    }
+
+    @Override
+    public String pollCommand(String user) {
+        return "bjobs -a -w -u " + ShellUtils.quote(user);
+    }
+
+    @Override
+    public Map<String, JobStatus> parse(String output) {
+        final Map<String, JobStatus> jobs = new HashMap<>();
+        for (String line : output.split("\n")) {
+            // JOBID USER STAT QUEUE FROM_HOST EXEC_HOST JOB_NAME SUBMIT_TIME
+            final String[] cols = line.trim().split("\\s+");
+            if (cols.length < 3 || cols[0].isEmpty() || !Character.isDigit(cols[0].charAt(0))) {
+                continue;
+            }
+            jobs.put(cols[0], new JobStatus(cols[0], STATES.getOrDefault(cols[2], JobStatus.State.UNKNOWN), cols[2]));
+        }
+        return jobs;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import io.seqera.tower.agent.exchange.JobStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PBS Pro, OpenPBS and Torque, using {@code qstat -f}. The full format cannot be
+ * filtered by user, so the index has all the jobs the user can see. The job ids are
+ * kept as printed by qstat, including the server name.
+ */
+public class PbsParser implements SchedulerParser {
+
+    private static final Map<String, JobStatus.State> STATES = Map.ofEntries(
+            Map.entry("Q", JobStatus.State.PENDING),
+            Map.entry("W", JobStatus.State.PENDING),
+            Map.entry("T", JobStatus.State.PENDING),
+            Map.entry("R", JobStatus.State.RUNNING),
+            Map.entry("E", JobStatus.State.RUNNING),
+            Map.entry("B", JobStatus.State.RUNNING),
+            Map.entry("H", JobStatus.State.HOLD),
+            Map.entry("S", JobStatus.State.HOLD),
+            Map.entry("U", JobStatus.State.HOLD),
+            Map.entry("C", JobStatus.State.DONE),
+            Map.entry("F", JobStatus.State.DONE),
+            Map.entry("X", JobStatus.State.DONE)
+    );
+
+    private static final String JOB_ID = "Job Id:";
+    private static final String JOB_STATE = "job_state =";
+
+    @Override
+    public String getName() {
+        return "pbs";
+    }
+
+    @Override
+    public String pollCommand(String user) {
+        return "qstat -f";
+    }
+
+    @Override
+    public Map<String, JobStatus> parse(String output) {
+        final Map<String, JobStatus> jobs = new HashMap<>();
+        String jobId = null;
+        for (String line : output.split("\n")) {
+            final String trimmed = line.trim();
+            if (trimmed.startsWith(JOB_ID)) {
+                jobId = trimmed.substring(JOB_ID.length()).trim();
+            } else if (trimmed.startsWith(JOB_STATE) && jobId != null) {
+                final String status = trimmed.substring(JOB_STATE.length()).trim();
+                jobs.put(jobId, new JobStatus(jobId, STATES.getOrDefault(status, JobStatus.State.UNKNOWN), status));
+                jobId = null;
+            }
+        }
+        return jobs;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import io.seqera.tower.agent.exchange.JobStatus;
+
+import java.util.Map;
+
+/**
+ * Knows how to list the jobs of a batch scheduler and how to read its output.
+ * New schedulers are added with {@link SchedulerParsers#register(SchedulerParser)}.
+ */
+public interface SchedulerParser {
+
+    /**
+     * @return The scheduler name, used in the agent configuration
+     */
+    String getName();
+
+    /**
+     * @param user The user running the agent
+     * @return Shell command that lists the state of all the user's jobs
+     */
+    String pollCommand(String user);
+
+    /**
+     * @param output Output of the {@link #pollCommand(String)}, stdout and stderr merged
+     * @return The jobs by job id
+     */
+    Map<String, JobStatus> parse(String output);
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The known scheduler parsers by name
+ */
+public final class SchedulerParsers {
+
+    private static final Map<String, SchedulerParser> parsers = new ConcurrentHashMap<>();
+
+    static {
+        register(new SlurmParser());
+        register(new PbsParser());
+        register(new LsfParser());
+    }
+
+    private SchedulerParsers() {
+    }
+
+    public static void register(SchedulerParser parser) {
+        parsers.put(parser.getName(), parser);
+    }
+
+    /**
+     * @param name Scheduler name
+     * @return The parser
+     * @throws IllegalArgumentException If there is no parser with that name
+     */
+    public static SchedulerParser get(String name) {
+        final SchedulerParser parser = parsers.get(name.toLowerCase());
+        if (parser == null) {
+            throw new IllegalArgumentException(String.format("Unknown scheduler '%s', it must be one of %s", name, new TreeMap<>(parsers).keySet()));
+        }
+        return parser;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import io.seqera.tower.agent.exchange.JobStatus;
+import io.seqera.tower.agent.utils.ShellUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Slurm, using {@code squeue}
+ */
+public class SlurmParser implements SchedulerParser {
+
+    private static final Map<String, JobStatus.State> STATES = Map.ofEntries(
+            Map.entry("PD", JobStatus.State.PENDING),
+            Map.entry("CF", JobStatus.State.PENDING),
+            Map.entry("RQ", JobStatus.State.PENDING),
+            Map.entry("RF", JobStatus.State.PENDING),
+            Map.entry("RS", JobStatus.State.PENDING),
+            Map.entry("R", JobStatus.State.RUNNING),
+            Map.entry("CG", JobStatus.State.RUNNING),
+            Map.entry("SO", JobStatus.State.RUNNING),
+            Map.entry("S", JobStatus.State.HOLD),
+            Map.entry("ST", JobStatus.State.HOLD),
+            Map.entry("RH", JobStatus.State.HOLD),
+            Map.entry("CD", JobStatus.State.DONE),
+            Map.entry("F", JobStatus.State.ERROR),
+            Map.entry("CA", JobStatus.State.ERROR),
+            Map.entry("TO", JobStatus.State.ERROR),
+            Map.entry("NF", JobStatus.State.ERROR),
+            Map.entry("OOM", JobStatus.State.ERROR),
+            Map.entry("BF", JobStatus.State.ERROR),
+            Map.entry("DL", JobStatus.State.ERROR),
+            Map.entry("PR", JobStatus.State.ERROR)
+    );
+
+    @Override
+    public String getName() {
+        return "slurm";
+    }
+
+    @Override
+    public String pollCommand(String user) {
+        return "squeue --noheader -o '%i %t' -u " + ShellUtils.quote(user);
+    }
+
+    @Override
+    public Map<String, JobStatus> parse(String output) {
+        final Map<String, JobStatus> jobs = new HashMap<>();
+        for (String line : output.split("\n")) {
+            final String[] cols = line.trim().split("\\s+");
+            if (cols.length != 2 || !Character.isDigit(cols[0].charAt(0))) {
+                continue;
+            }
+            jobs.put(cols[0], new JobStatus(cols[0], STATES.getOrDefault(cols[1], JobStatus.State.UNKNOWN), cols[1]));
+        }
+        return jobs;
+    }
+}
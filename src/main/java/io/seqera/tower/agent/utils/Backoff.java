@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.utils;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter between reconnection attempts.
+ * <p>
+ * The n-th consecutive failure waits a random time between half and the whole of
+ * {@code initialDelay * multiplier^n}, capped at {@code maxDelay}. The random part
+ * spreads the agents that lost their connection at the same time (e.g. a Tower
+ * restart), so they do not all come back in lockstep.
+ */
+public class Backoff {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double multiplier;
+    private final Random random;
+
+    private int attempts;
+
+    /**
+     * @param initialDelay Delay after the first failure
+     * @param maxDelay     Maximum delay between two attempts
+     * @param multiplier   Growth factor of the delay after each failure
+     */
+    public Backoff(Duration initialDelay, Duration maxDelay, double multiplier) {
+        this(initialDelay, maxDelay, multiplier, null);
+    }
+
+    Backoff(Duration initialDelay, Duration maxDelay, double multiplier, Random random) {
+        if (initialDelay.isNegative() || initialDelay.isZero()) {
+            throw new IllegalArgumentException(String.format("Invalid reconnect initial delay: %s", initialDelay));
+        }
+        if (maxDelay.compareTo(initialDelay) < 0) {
+            throw new IllegalArgumentException(String.format("Invalid reconnect maximum delay: %s", maxDelay));
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException(String.format("Invalid reconnect multiplier: %s", multiplier));
+        }
+        this.initialDelay = initialDelay.toMillis();
+        this.maxDelay = maxDelay.toMillis();
+        this.multiplier = multiplier;
+        this.random = random;
+    }
+
+    /**
+     * Record a failed attempt
+     *
+     * @return The time to wait before the next attempt
+     */
+    public synchronized Duration next() {
+        final double delay = Math.min(maxDelay, initialDelay * Math.pow(multiplier, attempts));
+        if (delay < maxDelay) {
+            attempts++;
+        }
+        final double jitter = (random != null ? random : ThreadLocalRandom.current()).nextDouble();
+        return Duration.ofMillis((long) (delay / 2 + jitter * delay / 2));
+    }
+
+    /**
+     * Start again from the initial delay, after a successful attempt
+     */
+    public synchronized void reset() {
+        attempts = 0;
+    }
+
+    /**
+     * @return The number of consecutive failed attempts
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+}
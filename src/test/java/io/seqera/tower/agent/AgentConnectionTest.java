@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.seqera.tower.agent.utils.Backoff;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+
+class AgentConnectionTest {
+
+    @Test
+    void testDisable() throws Exception {
+        Backoff backoff = new Backoff(Duration.ofSeconds(1), Duration.ofSeconds(10), 2);
+        AgentConnection connection = new AgentConnection("workspace-1", "token", "https://tower", "/work", backoff, backoff, 1);
+        OutboundQueue queue = new OutboundQueue(100, 10);
+        connection.setOutboundQueue(queue);
+
+        connection.disable();
+        Assertions.assertTrue(connection.isDisabled());
+        Assertions.assertFalse(connection.isOpen());
+
+        // the producers of the connection no longer wait for it
+        queue.awaitCapacity();
+        Assertions.assertThrows(ExecutionException.class, () -> queue.offer("frame", 5, false, null, frame -> {
+        }).get());
+    }
+}
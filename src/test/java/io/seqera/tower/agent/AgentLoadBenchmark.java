@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.micronaut.runtime.server.EmbeddedServer;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.CommandRequest;
+import io.seqera.tower.agent.exchange.CommandResponse;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives an agent process with command requests from the local Tower stand-in and
+ * reports the throughput, the latency percentiles and the agent memory (RSS). Run it
+ * with {@code ./gradlew benchmark --tests '*AgentLoadBenchmark'} and tune the load with
+ * these system properties:
+ * <ul>
+ *     <li>{@code tw.load.rate}: command requests per second (100)</li>
+ *     <li>{@code tw.load.duration}: time sending requests (30s)</li>
+ *     <li>{@code tw.load.output-size}: bytes of output of each command (1024)</li>
+ *     <li>{@code tw.load.drop-interval}: drop the connection this often (0s, never)</li>
+ *     <li>{@code tw.load.read-delay}: time Tower takes to read each message (0ms)</li>
+ *     <li>{@code tw.load.agent-opts}: JVM options of the agent process (-Xmx256m)</li>
+ *     <li>{@code tw.load.sessions}: websocket sessions the agent opens (1)</li>
+ *     <li>{@code tw.load.large-output-size}: bytes of output of the large commands (0, none)</li>
+ *     <li>{@code tw.load.large-every}: one request out of this many is a large command (10)</li>
+ * </ul>
+ * With large commands the latency of the small and the large ones is reported apart, to
+ * compare how much the large responses delay the small ones with one or more sessions.
+ */
+@MicronautTest
+@Tag("benchmark")
+class AgentLoadBenchmark {
+
+    private static final int RATE = Integer.parseInt(System.getProperty("tw.load.rate", "100"));
+    private static final Duration DURATION = duration("tw.load.duration", "30s");
+    private static final int OUTPUT_SIZE = Integer.parseInt(System.getProperty("tw.load.output-size", "1024"));
+    private static final Duration DROP_INTERVAL = duration("tw.load.drop-interval", "0s");
+    private static final Duration READ_DELAY = duration("tw.load.read-delay", "0ms");
+    private static final String AGENT_OPTS = System.getProperty("tw.load.agent-opts", "-Xmx256m");
+    private static final int SESSIONS = Integer.parseInt(System.getProperty("tw.load.sessions", "1"));
+    private static final int LARGE_OUTPUT_SIZE = Integer.parseInt(System.getProperty("tw.load.large-output-size", "0"));
+    private static final int LARGE_EVERY = Integer.parseInt(System.getProperty("tw.load.large-every", "10"));
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    @Inject
+    EmbeddedServer server;
+
+    @Inject
+    TowerStandIn tower;
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> largeLatencies = new ConcurrentLinkedQueue<>();
+    private final AtomicLong unsent = new AtomicLong();
+    private final AtomicLong peakRss = new AtomicLong(-1);
+
+    @Test
+    void commandLoad() throws Exception {
+        tower.setReadDelay(READ_DELAY);
+        final Process agent = AgentProcess.start(AgentProcess.jvm(AGENT_OPTS), server.getURI(), dir, Map.of("TOWER_AGENT_SEND_SESSIONS", String.valueOf(SESSIONS)));
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3);
+        final Thread collector = Thread.ofPlatform().name("load-collector").start(this::collect);
+        try {
+            waitConnected(agent);
+            scheduler.scheduleAtFixedRate(() -> peakRss.accumulateAndGet(rss(agent.pid()), Math::max), 0, 100, TimeUnit.MILLISECONDS);
+            if (!DROP_INTERVAL.isZero()) {
+                scheduler.scheduleAtFixedRate(tower::dropConnections, DROP_INTERVAL.toMillis(), DROP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            final String command = output(OUTPUT_SIZE);
+            final String largeCommand = output(LARGE_OUTPUT_SIZE);
+            final AtomicLong sequence = new AtomicLong();
+            final long start = System.nanoTime();
+            scheduler.scheduleAtFixedRate(() -> {
+                final long n = sequence.incrementAndGet();
+                if (LARGE_OUTPUT_SIZE > 0 && n % LARGE_EVERY == 0) {
+                    request(largeCommand, "large-" + n);
+                } else {
+                    request(command, "load-" + n);
+                }
+            }, 0, 1_000_000_000L / RATE, TimeUnit.NANOSECONDS);
+            Thread.sleep(DURATION.toMillis());
+            scheduler.shutdownNow();
+
+            final long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+            while (!pending.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            report(sequence.get(), System.nanoTime() - start);
+            Assertions.assertFalse(latencies.isEmpty() && largeLatencies.isEmpty(), "No command response received, see " + dir.resolve("agent.log"));
+        } finally {
+            scheduler.shutdownNow();
+            collector.interrupt();
+            AgentProcess.stop(agent);
+        }
+    }
+
+    private void waitConnected(Process agent) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 60_000;
+        while (tower.getSessionCount() < SESSIONS) {
+            if (!agent.isAlive() || System.currentTimeMillis() > deadline) {
+                Assertions.fail("The agent did not connect, see " + dir.resolve("agent.log"));
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private void request(String command, String id) {
+        pending.put(id, System.nanoTime());
+        try {
+            if (tower.send(new CommandRequest(id, command))) {
+                return;
+            }
+        } catch (IOException e) {
+            // counted as not sent
+        }
+        pending.remove(id);
+        unsent.incrementAndGet();
+    }
+
+    private void collect() {
+        try {
+            while (true) {
+                final AgentMessage message = tower.next(Duration.ofSeconds(1));
+                if (message instanceof CommandResponse) {
+                    final String id = ((CommandResponse) message).getId();
+                    final Long sent = pending.remove(id);
+                    if (sent != null) {
+                        (id.startsWith("large-") ? largeLatencies : latencies).add(System.nanoTime() - sent);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // finished
+        }
+    }
+
+    private void report(long requests, long elapsed) {
+        final long[] times = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        final long[] largeTimes = largeLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%d requests/s for %s, %d bytes of output, drop every %s, read delay %s, %d sessions%n", RATE, DURATION, OUTPUT_SIZE, DROP_INTERVAL, READ_DELAY, SESSIONS);
+        System.out.printf("requests %d   responses %d   not sent %d   lost %d%n", requests, times.length + largeTimes.length, unsent.get(), pending.size());
+        System.out.printf("throughput %.1f responses/s%n", (times.length + largeTimes.length) / (elapsed / 1e9));
+        System.out.printf("latency    p50 %8.3f ms   p99 %8.3f ms   p999 %8.3f ms%n", percentile(times, 0.5), percentile(times, 0.99), percentile(times, 0.999));
+        if (LARGE_OUTPUT_SIZE > 0) {
+            System.out.printf("large      p50 %8.3f ms   p99 %8.3f ms   p999 %8.3f ms   (%d bytes, 1 in %d)%n", percentile(largeTimes, 0.5), percentile(largeTimes, 0.99), percentile(largeTimes, 0.999), LARGE_OUTPUT_SIZE, LARGE_EVERY);
+        }
+        System.out.printf("agent RSS  peak %s%n", peakRss.get() < 0 ? "n/a" : String.format("%.1f MB", peakRss.get() / 1024.0 / 1024.0));
+    }
+
+    private static String output(int size) {
+        return String.format("head -c %d /dev/zero | tr '\\0' x", size);
+    }
+
+    private static double percentile(long[] times, double quantile) {
+        return times.length == 0 ? Double.NaN : times[Math.min(times.length - 1, (int) (times.length * quantile))] / 1e6;
+    }
+
+    /**
+     * @return Resident memory of the process in bytes, -1 if it is not known
+     */
+    private static long rss(long pid) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux, or the process has finished
+        }
+        return -1;
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        final String value = System.getProperty(property, defaultValue).trim().toLowerCase();
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        return Duration.parse("PT" + value);
+    }
+}
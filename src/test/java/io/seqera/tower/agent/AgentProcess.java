@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an agent in its own process, connected to the local Tower stand-in
+ */
+class AgentProcess {
+
+    private AgentProcess() {
+    }
+
+    /**
+     * @param options JVM options separated by spaces
+     * @return The command line to run the agent with the JVM and classpath of the tests
+     */
+    static List<String> jvm(String options) {
+        final List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        if (!options.isBlank()) {
+            command.addAll(Arrays.asList(options.trim().split("\\s+")));
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), Agent.class.getName()));
+        return command;
+    }
+
+    /**
+     * Start an agent, its output goes to {@code agent.log} in the given directory, which
+     * is also its work directory and where it keeps its journal.
+     *
+     * @param launcher Command line of the agent, without its arguments
+     * @param url      Tower API endpoint
+     * @param dir      Directory of the agent files
+     */
+    static Process start(List<String> launcher, URI url, Path dir) throws IOException {
+        return start(launcher, url, dir, Map.of());
+    }
+
+    /**
+     * @param launcher Command line of the agent, without its arguments
+     * @param url      Tower API endpoint
+     * @param dir      Directory of the agent files
+     * @param env      Additional environment variables, e.g. the agent settings
+     */
+    static Process start(List<String> launcher, URI url, Path dir, Map<String, String> env) throws IOException {
+        final List<String> command = new ArrayList<>(launcher);
+        command.addAll(List.of("load-test",
+                "--url", url.toString(),
+                "--access-token", "load-test",
+                "--work-dir", dir.toString()));
+        final ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(dir.resolve("agent.log").toFile()));
+        builder.environment().put("TOWER_AGENT_JOURNAL_DIR", dir.toString());
+        // the stand-in of Tower runs on plain http
+        builder.environment().put("TOWER_AGENT_INSECURE_LOCALHOST", "true");
+        builder.environment().putAll(env);
+        return builder.start();
+    }
+
+    static void stop(Process agent) throws InterruptedException {
+        agent.destroy();
+        if (!agent.waitFor(10, TimeUnit.SECONDS)) {
+            agent.destroyForcibly();
+        }
+    }
+}
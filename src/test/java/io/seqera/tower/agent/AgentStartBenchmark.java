@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.micronaut.runtime.server.EmbeddedServer;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.InfoMessage;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cold start of the agent: time from starting the process until Tower receives its
+ * {@link InfoMessage}, with the JVM and with the native image when it has been built
+ * ({@code ./gradlew nativeCompile}). Run it with
+ * {@code ./gradlew benchmark --tests '*AgentStartBenchmark'}.
+ */
+@MicronautTest
+@Tag("benchmark")
+class AgentStartBenchmark {
+
+    private static final int ITERATIONS = 5;
+    private static final Path NATIVE_IMAGE = Paths.get(System.getProperty("tw.load.native-image", "build/native/nativeCompile/tw-agent"));
+
+    @Inject
+    EmbeddedServer server;
+
+    @Inject
+    TowerStandIn tower;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void timeToInfoMessage() throws Exception {
+        report("jvm", measure(AgentProcess.jvm("")));
+        if (Files.isExecutable(NATIVE_IMAGE)) {
+            report("native image", measure(List.of(NATIVE_IMAGE.toAbsolutePath().toString())));
+        } else {
+            System.out.printf("%-14s not found at %s%n", "native image", NATIVE_IMAGE);
+        }
+    }
+
+    private long[] measure(List<String> launcher) throws Exception {
+        final long[] times = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            final long start = System.nanoTime();
+            final Process agent = AgentProcess.start(launcher, server.getURI(), dir);
+            try {
+                AgentMessage message;
+                do {
+                    message = tower.next(Duration.ofSeconds(60));
+                    Assertions.assertNotNull(message, "The agent did not connect, see " + dir.resolve("agent.log"));
+                } while (!(message instanceof InfoMessage));
+                times[i] = System.nanoTime() - start;
+            } finally {
+                AgentProcess.stop(agent);
+            }
+            // the next agent would be rejected as a duplicate by a real Tower
+            while (tower.isConnected()) {
+                Thread.sleep(10);
+            }
+        }
+        Arrays.sort(times);
+        return times;
+    }
+
+    private static void report(String name, long[] times) {
+        System.out.printf("%-14s min %8.1f ms   median %8.1f ms   max %8.1f ms%n", name,
+                times[0] / 1e6,
+                times[times.length / 2] / 1e6,
+                times[times.length - 1] / 1e6);
+    }
+}
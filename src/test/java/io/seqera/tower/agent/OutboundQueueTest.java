@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+class OutboundQueueTest {
+
+    private final OutboundQueue queue = new OutboundQueue(100, 10);
+    private final List<Object> written = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // blocks on the first frame until released, so the next ones pile up in the queue
+    private final OutboundQueue.Transport transport = frame -> {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        written.add(frame);
+    };
+
+    @AfterEach
+    void cleanup() {
+        queue.close();
+    }
+
+    @Test
+    void testPriorities() throws Exception {
+        queue.offer("first", 1, false, null, transport);
+        waitUntil(() -> queue.getQueued(OutboundQueue.Priority.SMALL) == 0);
+
+        queue.offer("large", 50, false, null, transport);
+        queue.offer("small", 5, false, null, transport);
+        CompletableFuture<Void> heartbeat = queue.offer("heartbeat", 20, true, null, transport);
+        Assertions.assertEquals(1, queue.getQueued(OutboundQueue.Priority.LARGE));
+        Assertions.assertEquals(76, queue.getQueuedBytes());
+
+        release.countDown();
+        heartbeat.get(5, TimeUnit.SECONDS);
+        waitUntil(() -> written.size() == 4);
+        Assertions.assertEquals(List.of("first", "heartbeat", "small", "large"), written);
+        Assertions.assertEquals(0, queue.getQueuedBytes());
+        Assertions.assertEquals(4, queue.getSent());
+    }
+
+    @Test
+    void testSameKeyKeepsTheOrder() throws Exception {
+        queue.offer("first", 1, false, null, transport);
+        waitUntil(() -> queue.getQueued(OutboundQueue.Priority.SMALL) == 0);
+
+        queue.offer("chunk", 50, false, "command:1", transport);
+        queue.offer("response", 5, false, "command:1", transport);
+        queue.offer("other", 5, false, "command:2", transport);
+
+        release.countDown();
+        waitUntil(() -> written.size() == 4);
+        Assertions.assertEquals(List.of("first", "other", "chunk", "response"), written);
+    }
+
+    @Test
+    void testHighWaterMark() throws Exception {
+        queue.offer("first", 60, false, null, transport);
+        queue.offer("second", 60, false, null, transport);
+
+        CountDownLatch waited = new CountDownLatch(1);
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                queue.awaitCapacity();
+                waited.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Assertions.assertFalse(waited.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        Assertions.assertTrue(waited.await(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test
+    void testFailedSend() throws Exception {
+        CompletableFuture<Void> sent = queue.offer("frame", 1, false, null, frame -> {
+            throw new IOException("session closed");
+        });
+        Exception e = Assertions.assertThrows(Exception.class, () -> sent.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("session closed", e.getCause().getMessage());
+        waitUntil(() -> queue.getFailed() == 1);
+        Assertions.assertEquals(0, queue.getQueuedBytes());
+    }
+
+    @Test
+    void testLargeMessagesDoNotBlockTheSmallOnes() throws Exception {
+        OutboundQueue lanes = new OutboundQueue(1000, 10, 3);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        try {
+            // the large frames never finish, as on a slow session
+            OutboundQueue.LaneTransport slow = (lane, frame) -> {
+                if (lane > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                sent.add(lane + ":" + frame);
+            };
+            lanes.offer("large-1", 50, false, "command:1", slow);
+            lanes.offer("large-2", 60, false, null, slow);
+            lanes.offer("small", 5, false, null, slow).get(5, TimeUnit.SECONDS);
+            lanes.offer("heartbeat", 5, true, null, slow).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(List.of("0:small", "0:heartbeat"), sent);
+            Assertions.assertEquals(50, lanes.getQueuedBytes(1));
+            Assertions.assertEquals(60, lanes.getQueuedBytes(2));
+
+            // a message of a queued key stays in its lane
+            CompletableFuture<Void> response = lanes.offer("response", 5, false, "command:1", slow);
+            release.countDown();
+            response.get(5, TimeUnit.SECONDS);
+            waitUntil(() -> sent.size() == 5);
+            Assertions.assertTrue(sent.indexOf("1:large-1") < sent.indexOf("1:response"));
+        } finally {
+            lanes.close();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assertions.fail("Timeout waiting for the queue");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
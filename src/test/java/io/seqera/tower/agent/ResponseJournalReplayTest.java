@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.rxjava2.http.client.websockets.RxWebSocketClient;
+import io.micronaut.runtime.server.EmbeddedServer;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.CommandResponse;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@MicronautTest
+class ResponseJournalReplayTest {
+
+    @Inject
+    EmbeddedServer server;
+
+    @Inject
+    TowerStandIn tower;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testConnectionLostWhileCommandRuns() throws Exception {
+        Path file = dir.resolve("agent.journal");
+        AgentClientSocket client = connect();
+
+        // the command finishes after Tower dropped the connection
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<CommandResponse> command = CompletableFuture.supplyAsync(() -> {
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new CommandResponse("job-1", "Submitted batch job 42".getBytes(), 0);
+        });
+        tower.dropConnections();
+        waitUntilClosed(client);
+        finish.countDown();
+
+        try (ResponseJournal journal = new ResponseJournal(file, 1024 * 1024, new MessageCodec(objectMapper))) {
+            journal.deliver(client, command.get(5, TimeUnit.SECONDS)).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(1, journal.getPending());
+        }
+
+        // the response is sent on the next connection, also after an agent restart
+        try (ResponseJournal journal = new ResponseJournal(file, 1024 * 1024, new MessageCodec(objectMapper))) {
+            Assertions.assertEquals(1, journal.replay(connect()));
+
+            AgentMessage message = tower.next(Duration.ofSeconds(5));
+            Assertions.assertInstanceOf(CommandResponse.class, message);
+            Assertions.assertEquals("job-1", ((CommandResponse) message).getId());
+            Assertions.assertEquals("Submitted batch job 42", new String(((CommandResponse) message).getResult()));
+            Assertions.assertEquals(0, journal.getPending());
+            Assertions.assertEquals(0, Files.size(file));
+        }
+    }
+
+    private AgentClientSocket connect() {
+        RxWebSocketClient webSocketClient = server.getApplicationContext().getBean(RxWebSocketClient.class);
+        return webSocketClient.connect(AgentClientSocket.class, HttpRequest.GET(server.getURI() + "/agent/test/connect"))
+                .timeout(5, TimeUnit.SECONDS)
+                .blockingFirst();
+    }
+
+    private static void waitUntilClosed(AgentClientSocket client) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.isOpen()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assertions.fail("Timeout waiting for the connection to close");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
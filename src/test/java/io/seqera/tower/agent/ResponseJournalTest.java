@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.CommandResponse;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class ResponseJournalTest {
+
+    private final MessageCodec codec = new MessageCodec(new ObjectMapper());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReplayInOrder() throws IOException {
+        Path file = dir.resolve("agent.journal");
+        try (ResponseJournal journal = new ResponseJournal(file, 1024 * 1024, codec)) {
+            journal.deliver(null, new CommandResponse("1", "first".getBytes(), 0));
+            journal.deliver(null, new CommandResponse("2", "second".getBytes(), 0));
+            Assertions.assertEquals(2, journal.getPending());
+            Assertions.assertEquals(journal.getSize(), Files.size(file));
+
+            List<AgentMessage> sent = new ArrayList<>();
+            Assertions.assertEquals(2, journal.replay(client(sent, 2)));
+            Assertions.assertEquals("1", ((CommandResponse) sent.get(0)).getId());
+            Assertions.assertEquals("second", new String(((CommandResponse) sent.get(1)).getResult()));
+
+            // delivered records are trimmed
+            Assertions.assertEquals(0, journal.getPending());
+            Assertions.assertEquals(0, Files.size(file));
+        }
+    }
+
+    @Test
+    void testReplayStopsOnFailure() throws IOException {
+        Path file = dir.resolve("agent.journal");
+        try (ResponseJournal journal = new ResponseJournal(file, 1024 * 1024, codec)) {
+            journal.append(new CommandResponse("1", new byte[0], 0));
+            journal.append(new CommandResponse("2", new byte[0], 0));
+            journal.append(new CommandResponse("3", new byte[0], 0));
+
+            List<AgentMessage> sent = new ArrayList<>();
+            Assertions.assertEquals(1, journal.replay(client(sent, 1)));
+            Assertions.assertEquals(2, journal.getPending());
+
+            Assertions.assertEquals(2, journal.replay(client(sent, 2)));
+            Assertions.assertEquals(List.of("1", "2", "3"), sent.stream().map(it -> ((CommandResponse) it).getId()).toList());
+        }
+    }
+
+    @Test
+    void testNewResponsesWaitForTheReplay() throws IOException {
+        Path file = dir.resolve("agent.journal");
+        try (ResponseJournal journal = new ResponseJournal(file, 1024 * 1024, codec)) {
+            journal.append(new CommandResponse("1", new byte[0], 0));
+
+            // a response of the new session while the old ones are not sent yet
+            List<AgentMessage> sent = new ArrayList<>();
+            AgentClientSocket client = client(sent, 10);
+            journal.hold();
+            journal.deliver(client, new CommandResponse("2", new byte[0], 0));
+            Assertions.assertEquals(2, journal.getPending());
+
+            Assertions.assertEquals(2, journal.replay(client));
+            Assertions.assertEquals(List.of("1", "2"), sent.stream().map(it -> ((CommandResponse) it).getId()).toList());
+            Assertions.assertEquals(0, journal.getPending());
+        }
+    }
+
+    @Test
+    void testSurvivesRestart() throws IOException {
+        Path file = dir.resolve("agent.journal");
+        try (ResponseJournal journal = new ResponseJournal(file, 1024 * 1024, codec)) {
+            journal.append(new CommandResponse("1", new byte[0], 0));
+            journal.append(new CommandResponse("2", new byte[0], 0));
+            journal.replay(client(new ArrayList<>(), 1));
+        }
+        // the agent was killed while appending a record
+        Files.write(file, new byte[]{1, 0, 0, 1, 0, '{'}, StandardOpenOption.APPEND);
+
+        try (ResponseJournal journal = new ResponseJournal(file, 1024 * 1024, codec)) {
+            Assertions.assertEquals(1, journal.getPending());
+            Assertions.assertEquals(journal.getSize(), Files.size(file));
+
+            List<AgentMessage> sent = new ArrayList<>();
+            Assertions.assertEquals(1, journal.replay(client(sent, 1)));
+            Assertions.assertEquals("2", ((CommandResponse) sent.get(0)).getId());
+        }
+    }
+
+    @Test
+    void testMaxSize() throws IOException {
+        try (ResponseJournal journal = new ResponseJournal(dir.resolve("agent.journal"), 256, codec)) {
+            Assertions.assertTrue(journal.append(new CommandResponse("1", new byte[0], 0)));
+            Assertions.assertFalse(journal.append(new CommandResponse("2", new byte[1024], 0)));
+            Assertions.assertEquals(1, journal.getPending());
+        }
+    }
+
+    /**
+     * @return A connection that sends up to {@code limit} messages and then fails
+     */
+    private AgentClientSocket client(List<AgentMessage> sent, int limit) {
+        return new AgentClientSocket(new ObjectMapper()) {
+            private int count;
+
+            @Override
+            void send(AgentMessage message) {
+                if (count++ >= limit) {
+                    throw new UncheckedIOException(new IOException("Connection closed"));
+                }
+                sent.add(message);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.micronaut.runtime.server.EmbeddedServer;
+import io.micronaut.rxjava2.http.client.RxHttpClient;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.seqera.tower.agent.utils.Backoff;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+@MicronautTest
+class ResultUploadTest {
+
+    @Inject
+    EmbeddedServer server;
+
+    @Inject
+    RxHttpClient httpClient;
+
+    @Inject
+    TowerApiStandIn tower;
+
+    @AfterEach
+    void cleanup() {
+        tower.setAcceptUploads(true);
+        tower.loseUploadResponses(0);
+    }
+
+    @Test
+    void testUploadInChunks() {
+        byte[] output = new byte[10_000];
+        new Random(42).nextBytes(output);
+
+        ResultUpload upload = upload("request-1");
+        writeAll(upload, output);
+        Assertions.assertTrue(upload.finish());
+
+        Assertions.assertEquals("/agent/test/results/request-1", upload.getRef());
+        Assertions.assertEquals(output.length, upload.getSize());
+        Assertions.assertArrayEquals(output, tower.getResult("test", "request-1"));
+    }
+
+    @Test
+    void testResumeAfterLostResponse() {
+        byte[] output = new byte[10_000];
+        new Random(42).nextBytes(output);
+
+        // Tower keeps a chunk but the agent does not get the answer
+        tower.loseUploadResponses(1);
+        ResultUpload upload = upload("request-2");
+        writeAll(upload, output);
+        Assertions.assertTrue(upload.finish());
+
+        Assertions.assertNull(upload.getError());
+        Assertions.assertArrayEquals(output, tower.getResult("test", "request-2"));
+    }
+
+    @Test
+    void testTowerWithoutUploads() {
+        tower.setAcceptUploads(false);
+        ResultUpload upload = upload("request-3");
+
+        Assertions.assertFalse(upload.write(new byte[2048], 0, 2048));
+        Assertions.assertFalse(upload.finish());
+        Assertions.assertTrue(upload.isUnsupported());
+    }
+
+    private ResultUpload upload(String requestId) {
+        Backoff backoff = new Backoff(Duration.ofMillis(10), Duration.ofMillis(100), 2);
+        return new ResultUpload(httpClient, server.getURI().toString(), "test", requestId, "token", 1024, backoff);
+    }
+
+    // write the output in pieces that do not match the chunks
+    private static void writeAll(ResultUpload upload, byte[] output) {
+        for (int offset = 0; offset < output.length; offset += 700) {
+            Assertions.assertTrue(upload.write(output, offset, Math.min(700, output.length - offset)));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
+import io.micronaut.http.annotation.Put;
+import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.core.annotation.Nullable;
+import io.seqera.tower.agent.model.ResultUploadResponse;
+import io.seqera.tower.agent.model.ServiceInfo;
+import io.seqera.tower.agent.model.ServiceInfoResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Tower REST endpoints that the agent checks before connecting.
+ * It reports the API version required by this agent and accepts any bearer token. It
+ * also keeps the command results uploaded by the agent, see {@link ResultUpload}.
+ */
+@Controller
+public class TowerApiStandIn {
+
+    private final Map<String, ByteArrayOutputStream> results = new ConcurrentHashMap<>();
+    private final Set<String> completed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger lostResponses = new AtomicInteger();
+    private volatile boolean acceptUploads = true;
+
+    @Get(value = "/service-info", produces = MediaType.APPLICATION_JSON)
+    ServiceInfoResponse serviceInfo() throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream input = getClass().getResourceAsStream("/META-INF/build-info.properties")) {
+            properties.load(input);
+        }
+        return new ServiceInfoResponse().serviceInfo(new ServiceInfo().version("stand-in").apiVersion(properties.getProperty("versionApi")));
+    }
+
+    @Get(value = "/user", produces = MediaType.APPLICATION_JSON)
+    HttpResponse<?> user(@Nullable @Header(HttpHeaders.AUTHORIZATION) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return HttpResponse.unauthorized();
+        }
+        return HttpResponse.ok(Map.of("user", Map.of("id", 1, "userName", "stand-in")));
+    }
+
+    @Put(value = "/agent/{agentKey}/results/{requestId}", consumes = MediaType.APPLICATION_OCTET_STREAM, produces = MediaType.APPLICATION_JSON)
+    HttpResponse<?> uploadResult(String agentKey, String requestId, @QueryValue long offset, @QueryValue(defaultValue = "false") boolean last, @Body byte[] data) {
+        if (!acceptUploads) {
+            return HttpResponse.notFound();
+        }
+        final ByteArrayOutputStream result = results.computeIfAbsent(agentKey + "/" + requestId, k -> new ByteArrayOutputStream());
+        synchronized (result) {
+            if (offset != result.size()) {
+                return HttpResponse.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            result.writeBytes(data);
+            if (last) {
+                completed.add(agentKey + "/" + requestId);
+            }
+            // the chunk is kept but the agent does not know it, as when the connection drops
+            if (lostResponses.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                return HttpResponse.status(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return HttpResponse.ok(new ResultUploadResponse().size((long) result.size()));
+        }
+    }
+
+    @Get(value = "/agent/{agentKey}/results/{requestId}", produces = MediaType.APPLICATION_JSON)
+    HttpResponse<?> resultSize(String agentKey, String requestId) {
+        final ByteArrayOutputStream result = results.get(agentKey + "/" + requestId);
+        if (result == null) {
+            return HttpResponse.notFound();
+        }
+        synchronized (result) {
+            return HttpResponse.ok(new ResultUploadResponse().size((long) result.size()));
+        }
+    }
+
+    /**
+     * @return The uploaded result, {@code null} if its last chunk was not received
+     */
+    byte[] getResult(String agentKey, String requestId) {
+        final ByteArrayOutputStream result = results.get(agentKey + "/" + requestId);
+        if (result == null || !completed.contains(agentKey + "/" + requestId)) {
+            return null;
+        }
+        synchronized (result) {
+            return result.toByteArray();
+        }
+    }
+
+    /**
+     * @param acceptUploads {@code false} to answer the uploads as a Tower without the endpoint
+     */
+    void setAcceptUploads(boolean acceptUploads) {
+        this.acceptUploads = acceptUploads;
+    }
+
+    /**
+     * @param count Number of uploaded chunks to keep without a successful response
+     */
+    void loseUploadResponses(int count) {
+        lostResponses.set(count);
+    }
+}
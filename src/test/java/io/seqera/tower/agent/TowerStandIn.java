@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.websocket.WebSocketSession;
+import io.micronaut.websocket.annotation.OnClose;
+import io.micronaut.websocket.annotation.OnMessage;
+import io.micronaut.websocket.annotation.OnOpen;
+import io.micronaut.websocket.annotation.ServerWebSocket;
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import io.seqera.tower.agent.exchange.WireFormat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the Tower agent endpoint. It records the messages sent by the
+ * agent, sends requests to it and can drop the connections or read slowly to test how
+ * the agent recovers. See {@link TowerApiStandIn} for the REST endpoints.
+ */
+@ServerWebSocket("/agent/{agentKey}/connect")
+public class TowerStandIn {
+
+    private final MessageCodec codec;
+    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<AgentMessage> received = new LinkedBlockingQueue<>();
+    private volatile Duration readDelay = Duration.ZERO;
+
+    TowerStandIn(ObjectMapper objectMapper) {
+        this.codec = new MessageCodec(objectMapper);
+    }
+
+    @OnOpen
+    void onOpen(String agentKey, WebSocketSession session) {
+        sessions.add(session);
+    }
+
+    @OnMessage(maxPayloadLength = Agent.MAX_WEBSOCKET_PAYLOAD_SIZE)
+    void onMessage(String agentKey, String frame, WebSocketSession session) throws IOException, InterruptedException {
+        if (!readDelay.isZero()) {
+            // holds the event loop of the session, as a busy Tower that reads slowly
+            Thread.sleep(readDelay.toMillis());
+        }
+        received.add(codec.decode(frame.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @OnClose
+    void onClose(String agentKey, WebSocketSession session) {
+        sessions.remove(session);
+    }
+
+    /**
+     * Close all the agent connections, as when Tower is restarted
+     */
+    void dropConnections() {
+        for (WebSocketSession session : sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * Send a message to one of the connected agents
+     *
+     * @return {@code false} if there is no agent connected
+     */
+    boolean send(AgentMessage message) throws IOException {
+        for (WebSocketSession session : sessions) {
+            if (session.isOpen()) {
+                session.sendAsync(codec.encode(message, WireFormat.JSON));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} if an agent is connected
+     */
+    boolean isConnected() {
+        return sessions.stream().anyMatch(WebSocketSession::isOpen);
+    }
+
+    /**
+     * @return Number of open agent sessions
+     */
+    int getSessionCount() {
+        return (int) sessions.stream().filter(WebSocketSession::isOpen).count();
+    }
+
+    /**
+     * @param readDelay Time to wait before reading each message sent by an agent
+     */
+    void setReadDelay(Duration readDelay) {
+        this.readDelay = readDelay;
+    }
+
+    /**
+     * @return The next message sent by an agent, {@code null} if none arrives in time
+     */
+    AgentMessage next(Duration timeout) throws InterruptedException {
+        return received.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
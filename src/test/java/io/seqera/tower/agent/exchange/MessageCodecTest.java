@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class MessageCodecTest {
+
+    private final MessageCodec codec = new MessageCodec(new ObjectMapper());
+
+    @Test
+    void testJsonRoundTrip() throws IOException {
+        Object frame = codec.encode(new CommandRequest("1", "ls -l"), WireFormat.JSON);
+        Assertions.assertTrue(frame instanceof String);
+
+        byte[] bytes = ((String) frame).getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(WireFormat.JSON, MessageCodec.detect(bytes));
+
+        CommandRequest request = (CommandRequest) codec.decode(bytes);
+        Assertions.assertEquals("1", request.getId());
+        Assertions.assertEquals("ls -l", request.getCommand());
+    }
+
+    @Test
+    void testCborRoundTrip() throws IOException {
+        byte[] result = new byte[]{0, 1, 2, (byte) 0xff};
+        Object frame = codec.encode(new CommandResponse("2", result, 3), WireFormat.CBOR);
+        Assertions.assertTrue(frame instanceof byte[]);
+
+        byte[] bytes = (byte[]) frame;
+        Assertions.assertEquals(WireFormat.CBOR, MessageCodec.detect(bytes));
+
+        CommandResponse response = (CommandResponse) codec.decode(bytes);
+        Assertions.assertEquals("2", response.getId());
+        Assertions.assertArrayEquals(result, response.getResult());
+        Assertions.assertEquals(3, response.getExitStatus());
+    }
+
+    @Test
+    void testBatchRoundTrip() throws IOException {
+        String json = "{\"@type\":\"command-batch-request\",\"id\":\"b1\",\"parallel\":true,\"commands\":["
+                + "{\"@type\":\"command-request\",\"id\":\"c1\",\"command\":\"squeue\"},"
+                + "{\"@type\":\"command-request\",\"id\":\"c2\",\"command\":\"cat .exitcode\",\"timeout\":1000}]}";
+
+        CommandBatchRequest batch = (CommandBatchRequest) codec.decode(json.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals("b1", batch.getId());
+        Assertions.assertTrue(batch.isParallel());
+        Assertions.assertEquals(2, batch.getCommands().size());
+        Assertions.assertEquals("squeue", batch.getCommands().get(0).getCommand());
+        Assertions.assertEquals(Long.valueOf(1000), batch.getCommands().get(1).getTimeout());
+
+        Object frame = codec.encode(new CommandBatchResponse("b1", List.of(new CommandResponse("c1", "ok".getBytes(), 0), new CommandResponse("c2", new byte[0], 1))), WireFormat.JSON);
+        CommandBatchResponse response = (CommandBatchResponse) codec.decode(((String) frame).getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals("b1", response.getId());
+        Assertions.assertEquals(2, response.getResults().size());
+        Assertions.assertEquals("ok", response.getResults().get(0).getResultAsString());
+        Assertions.assertEquals(1, response.getResults().get(1).getExitStatus());
+    }
+
+    @Test
+    void testDetectJsonWithLeadingWhiteSpace() {
+        Assertions.assertEquals(WireFormat.JSON, MessageCodec.detect(" \n{}".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(WireFormat.CBOR, MessageCodec.detect(new byte[]{(byte) 0xbf, (byte) 0xff}));
+    }
+
+}
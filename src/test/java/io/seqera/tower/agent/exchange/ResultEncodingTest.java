@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exchange;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class ResultEncodingTest {
+
+    @Test
+    void testNegotiate() {
+        Assertions.assertNull(ResultEncoding.negotiate(null));
+        Assertions.assertNull(ResultEncoding.negotiate(List.of("br")));
+        Assertions.assertEquals(CommandResponse.ENCODING_GZIP, ResultEncoding.negotiate(List.of("br", "gzip")));
+    }
+
+    @Test
+    void testGzipRoundTrip() {
+        byte[] data = "line\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+        byte[] encoded = ResultEncoding.encode(data, CommandResponse.ENCODING_GZIP);
+        Assertions.assertTrue(encoded.length < data.length / 10);
+        Assertions.assertArrayEquals(data, ResultEncoding.decode(encoded, CommandResponse.ENCODING_GZIP));
+
+        CommandResponse response = new CommandResponse("1", encoded, 0).encoding(CommandResponse.ENCODING_GZIP);
+        Assertions.assertEquals(new String(data, StandardCharsets.UTF_8), response.getResultAsString());
+    }
+
+    @Test
+    void testEncodingIsOnlySentWhenSet() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        JsonNode plain = mapper.readTree(mapper.writeValueAsString(new CommandResponse("1", "ok".getBytes(), 0)));
+        Assertions.assertFalse(plain.has("encoding"));
+        Assertions.assertEquals("ok", plain.get("resultAsString").asText());
+
+        // the text is only repeated for the Towers that read it
+        JsonNode gzip = mapper.readTree(mapper.writeValueAsString(new CommandResponse("1", new byte[]{1, 2}, 0).encoding("gzip")));
+        Assertions.assertEquals("gzip", gzip.get("encoding").asText());
+        Assertions.assertFalse(gzip.has("resultAsString"));
+
+        JsonNode omitted = mapper.readTree(mapper.writeValueAsString(new CommandResponse("1", "ok".getBytes(), 0).omitResultAsString()));
+        Assertions.assertFalse(omitted.has("resultAsString"));
+    }
+
+}
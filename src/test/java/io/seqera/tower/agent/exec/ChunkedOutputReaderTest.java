@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class ChunkedOutputReaderTest {
+
+    @Test
+    void testChunksRebuildTheOutput() throws IOException {
+        byte[] output = new byte[10_000];
+        new Random(42).nextBytes(output);
+
+        List<byte[]> chunks = new ArrayList<>();
+        int count = new ChunkedOutputReader(new BufferPool(1024, 4)).read(new ByteArrayInputStream(output), chunks::add);
+
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            Assertions.assertTrue(chunk.length <= 1024);
+            rebuilt.write(chunk);
+        }
+        Assertions.assertEquals(chunks.size(), count);
+        Assertions.assertArrayEquals(output, rebuilt.toByteArray());
+    }
+
+    @Test
+    void testEmptyOutput() throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        int count = new ChunkedOutputReader(new BufferPool()).read(new ByteArrayInputStream(new byte[0]), chunks::add);
+
+        Assertions.assertEquals(0, count);
+        Assertions.assertTrue(chunks.isEmpty());
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CommandCacheTest {
+
+    private static final CommandCache.Result OK = new CommandCache.Result("ok".getBytes(), 0);
+
+    @Test
+    void testCacheableCommands() {
+        CommandCache cache = new CommandCache(CommandCache.parseAllowList("squeue( .*)?, qstat( .*)?"), Duration.ZERO, 1024);
+
+        Assertions.assertTrue(cache.isCacheable("squeue"));
+        Assertions.assertTrue(cache.isCacheable("squeue -u $USER -o '%i %t'"));
+        Assertions.assertTrue(cache.isCacheable(" qstat -x "));
+        Assertions.assertFalse(cache.isCacheable("squeuex"));
+        Assertions.assertFalse(cache.isCacheable("sbatch job.sh"));
+        Assertions.assertFalse(cache.isCacheable("squeue; rm -rf work"));
+        Assertions.assertFalse(cache.isCacheable("squeue > out.txt"));
+        Assertions.assertFalse(cache.isCacheable("squeue -u $(whoami)"));
+        Assertions.assertFalse(cache.isCacheable("squeue\nscancel 1"));
+        Assertions.assertFalse(new CommandCache(CommandCache.parseAllowList(""), Duration.ZERO, 1024).isCacheable("squeue"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CommandCache.parseAllowList("squeue("));
+    }
+
+    @Test
+    void testIdenticalCommandsAreCoalesced() throws Exception {
+        CommandCache cache = new CommandCache(List.of(), Duration.ZERO, 1024);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<CommandCache.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.run("squeue", new TrackedCommand("x"), null, () -> {
+                    runs.incrementAndGet();
+                    release.await();
+                    return OK;
+                })));
+            }
+            // wait until all the requests are either running or waiting
+            while (cache.getMisses() + cache.getCoalesced() < 8) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (Future<CommandCache.Result> result : results) {
+                Assertions.assertSame(OK, result.get(5, TimeUnit.SECONDS));
+            }
+            Assertions.assertEquals(1, runs.get());
+            Assertions.assertEquals(1, cache.getMisses());
+            Assertions.assertEquals(7, cache.getCoalesced());
+
+            // without a TTL nothing is kept once the command is done
+            cache.run("squeue", new TrackedCommand("y"), null, () -> OK);
+            Assertions.assertEquals(2, cache.getMisses());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testResultsAreCachedUntilTheTtl() throws Exception {
+        CommandCache cache = new CommandCache(List.of(), Duration.ofMillis(200), 1024);
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            cache.run("qstat", new TrackedCommand("x"), null, () -> new CommandCache.Result(("run " + runs.incrementAndGet()).getBytes(), 0));
+        }
+        Assertions.assertEquals(1, runs.get());
+        Assertions.assertEquals(2, cache.getHits());
+
+        Thread.sleep(300);
+        Assertions.assertEquals("run 2", new String(cache.run("qstat", new TrackedCommand("x"), null, () -> new CommandCache.Result(("run " + runs.incrementAndGet()).getBytes(), 0)).getOutput()));
+
+        // failures are not cached
+        cache.run("bjobs", new TrackedCommand("x"), null, () -> new CommandCache.Result(new byte[0], 1));
+        cache.run("bjobs", new TrackedCommand("x"), null, () -> new CommandCache.Result(new byte[0], 1));
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    void testCacheSizeIsBounded() throws Exception {
+        CommandCache cache = new CommandCache(List.of(), Duration.ofMinutes(1), 10);
+        cache.run("a", new TrackedCommand("a"), null, () -> new CommandCache.Result(new byte[6], 0));
+        cache.run("b", new TrackedCommand("b"), null, () -> new CommandCache.Result(new byte[6], 0));
+        cache.run("c", new TrackedCommand("c"), null, () -> new CommandCache.Result(new byte[20], 0));
+
+        Assertions.assertEquals(1, cache.size());
+        cache.run("b", new TrackedCommand("b"), null, () -> OK);
+        Assertions.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void testCancelledWaiter() throws Exception {
+        CommandCache cache = new CommandCache(List.of(), Duration.ZERO, 1024);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<CommandCache.Result> leader = executor.submit(() -> cache.run("squeue", new TrackedCommand("1"), null, () -> {
+                started.countDown();
+                release.await();
+                return OK;
+            }));
+            started.await();
+
+            TrackedCommand waiter = new TrackedCommand("2");
+            Future<CommandCache.Result> waiting = executor.submit(() -> cache.run("squeue", waiter, null, () -> OK));
+            while (cache.getCoalesced() == 0) {
+                Thread.sleep(10);
+            }
+            waiter.cancel();
+
+            Exception e = Assertions.assertThrows(Exception.class, () -> waiting.get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(CancellationException.class, e.getCause());
+            release.countDown();
+            Assertions.assertSame(OK, leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testWaitersRunAgainWhenTheLeaderIsCancelled() throws Exception {
+        CommandCache cache = new CommandCache(List.of(), Duration.ZERO, 1024);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TrackedCommand leader = new TrackedCommand("1");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<CommandCache.Result> first = executor.submit(() -> cache.run("squeue", leader, null, () -> {
+                started.countDown();
+                release.await();
+                return new CommandCache.Result(new byte[0], 143);
+            }));
+            started.await();
+
+            Future<CommandCache.Result> second = executor.submit(() -> cache.run("squeue", new TrackedCommand("2"), null, () -> OK));
+            while (cache.getCoalesced() == 0) {
+                Thread.sleep(10);
+            }
+            leader.cancel();
+            release.countDown();
+
+            Assertions.assertEquals(143, first.get(5, TimeUnit.SECONDS).getExitStatus());
+            Assertions.assertSame(OK, second.get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(2, cache.getMisses());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
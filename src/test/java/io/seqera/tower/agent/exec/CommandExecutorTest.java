@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CommandExecutorTest {
+
+    @Test
+    void testBoundedInFlight() throws InterruptedException {
+        CommandExecutor executor = new CommandExecutor(true, 2, 1);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger maxSeen = new AtomicInteger();
+
+        Runnable task = () -> {
+            maxSeen.accumulateAndGet(executor.getRunning(), Math::max);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        Assertions.assertTrue(executor.submit(task));
+        Assertions.assertTrue(executor.submit(task));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // one more fits in the queue, the next one is rejected
+        Assertions.assertTrue(executor.submit(task));
+        Assertions.assertFalse(executor.submit(task));
+        Assertions.assertEquals(2, executor.getRunning());
+        Assertions.assertEquals(1, executor.getQueued());
+
+        release.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(maxSeen.get() <= 2);
+    }
+
+    @Test
+    void testSlotsAreReleased() throws InterruptedException {
+        CommandExecutor executor = new CommandExecutor(false, 1, 0);
+
+        // a failing task must not keep its slot
+        for (int i = 0; i < 3; i++) {
+            long deadline = System.currentTimeMillis() + 5000;
+            boolean accepted = false;
+            while (!accepted && System.currentTimeMillis() < deadline) {
+                accepted = executor.submit(() -> {
+                    throw new RuntimeException("failing task");
+                });
+                if (!accepted) {
+                    Thread.sleep(10);
+                }
+            }
+            Assertions.assertTrue(accepted);
+        }
+
+        executor.shutdown();
+    }
+
+    @Test
+    void testKeysTakeTurns() throws InterruptedException {
+        CommandExecutor executor = new CommandExecutor(true, 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(7);
+
+        Assertions.assertTrue(executor.submit("a", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }));
+
+        // a busy connection queues first, the other one is not left behind
+        for (int i = 0; i < 4; i++) {
+            String name = "a" + i;
+            Assertions.assertTrue(executor.submit("a", () -> {
+                order.add(name);
+                done.countDown();
+            }));
+        }
+        for (int i = 0; i < 2; i++) {
+            String name = "b" + i;
+            Assertions.assertTrue(executor.submit("b", () -> {
+                order.add(name);
+                done.countDown();
+            }));
+        }
+
+        release.countDown();
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of("a0", "b0", "a1", "b1", "a2", "a3"), order);
+        executor.shutdown();
+    }
+
+    @Test
+    void testCapacityOfEachKey() throws InterruptedException {
+        CommandExecutor executor = new CommandExecutor(true, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable task = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // a connection that fills its share does not get the other one rejected
+        Assertions.assertTrue(executor.submit("a", task));
+        Assertions.assertTrue(executor.submit("a", task));
+        Assertions.assertFalse(executor.submit("a", task));
+        Assertions.assertTrue(executor.submit("b", task));
+        Assertions.assertTrue(executor.submit("b", task));
+        Assertions.assertFalse(executor.submit("b", task));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, executor.getRunning());
+
+        release.countDown();
+        executor.shutdown();
+    }
+}
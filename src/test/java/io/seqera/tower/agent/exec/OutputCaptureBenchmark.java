@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated per MB of command output by the line based capture used before
+ * {@link OutputCapture} and by the pooled capture. Run it with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class OutputCaptureBenchmark {
+
+    private static final int OUTPUT_SIZE = 8 * 1024 * 1024;
+    private static final int ITERATIONS = 20;
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void allocatedBytesPerMegabyte() throws IOException {
+        byte[] output = syntheticOutput();
+        BufferPool pool = new BufferPool();
+
+        // warm up both paths, and the pool
+        for (int i = 0; i < 5; i++) {
+            lineCapture(new ByteArrayInputStream(output));
+            pooledCapture(new ByteArrayInputStream(output), pool);
+        }
+
+        long line = 0;
+        long pooled = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = threads.getCurrentThreadAllocatedBytes();
+            lineCapture(new ByteArrayInputStream(output));
+            long middle = threads.getCurrentThreadAllocatedBytes();
+            pooledCapture(new ByteArrayInputStream(output), pool);
+            long end = threads.getCurrentThreadAllocatedBytes();
+
+            line += middle - start;
+            pooled += end - middle;
+        }
+
+        double megabytes = (double) OUTPUT_SIZE * ITERATIONS / (1024 * 1024);
+        System.out.printf("Line capture:   %,12.0f bytes allocated per MB of output%n", line / megabytes);
+        System.out.printf("Pooled capture: %,12.0f bytes allocated per MB of output%n", pooled / megabytes);
+    }
+
+    /**
+     * The capture loop as it was before the pooled capture
+     */
+    private static byte[] lineCapture(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+        StringBuilder builder = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            builder.append(line);
+            builder.append("\n");
+        }
+        String result = builder.toString();
+        return result.getBytes();
+    }
+
+    private static byte[] pooledCapture(InputStream input, BufferPool pool) throws IOException {
+        try (OutputCapture capture = new OutputCapture(pool, Integer.MAX_VALUE)) {
+            return capture.read(input).toByteArray();
+        }
+    }
+
+    /**
+     * Something that looks like the output of 'ls -l' on a work directory
+     */
+    private static byte[] syntheticOutput() {
+        StringBuilder builder = new StringBuilder(OUTPUT_SIZE);
+        int i = 0;
+        while (builder.length() < OUTPUT_SIZE) {
+            builder.append(String.format("-rw-r--r-- 1 user group %8d Oct 18 10:%02d .command.%d.log%n", i * 37, i % 60, i));
+            i++;
+        }
+        builder.setLength(OUTPUT_SIZE);
+        return builder.toString().getBytes();
+    }
+}
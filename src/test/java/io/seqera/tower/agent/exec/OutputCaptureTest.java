@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+class OutputCaptureTest {
+
+    @Test
+    void testOutputIsByteExact() throws IOException {
+        // binary data, CRLF line endings and no trailing new line
+        byte[] output = new byte[200_000];
+        new Random(42).nextBytes(output);
+        output[output.length - 2] = '\r';
+        output[output.length - 1] = '\n';
+
+        BufferPool pool = new BufferPool(4096, 64);
+        try (OutputCapture capture = new OutputCapture(pool, Integer.MAX_VALUE)) {
+            capture.read(new ByteArrayInputStream(output));
+
+            Assertions.assertFalse(capture.isTruncated());
+            Assertions.assertEquals(output.length, capture.length());
+            Assertions.assertArrayEquals(output, capture.toByteArray());
+        }
+    }
+
+    @Test
+    void testOutputIsTruncated() throws IOException {
+        byte[] output = new byte[10_000];
+        new Random(42).nextBytes(output);
+
+        BufferPool pool = new BufferPool(1024, 64);
+        try (OutputCapture capture = new OutputCapture(pool, 2500)) {
+            capture.read(new ByteArrayInputStream(output));
+
+            Assertions.assertTrue(capture.isTruncated());
+            Assertions.assertEquals(10_000, capture.getTotal());
+            Assertions.assertArrayEquals(Arrays.copyOf(output, 2500), capture.toByteArray());
+        }
+    }
+
+    @Test
+    void testOverflowGetsTheWholeOutput() throws IOException {
+        byte[] output = new byte[10_000];
+        new Random(42).nextBytes(output);
+
+        ByteArrayOutputStream overflowed = new ByteArrayOutputStream();
+        try (OutputCapture capture = new OutputCapture(new BufferPool(1024, 64), 2500, (data, offset, length) -> {
+            overflowed.write(data, offset, length);
+            return true;
+        })) {
+            capture.read(new ByteArrayInputStream(output));
+
+            Assertions.assertTrue(capture.isTruncated());
+            Assertions.assertArrayEquals(output, overflowed.toByteArray());
+        }
+
+        // no overflow when the output fits
+        overflowed.reset();
+        try (OutputCapture capture = new OutputCapture(new BufferPool(1024, 64), 2500, (data, offset, length) -> {
+            overflowed.write(data, offset, length);
+            return true;
+        })) {
+            capture.read(new ByteArrayInputStream(Arrays.copyOf(output, 2500)));
+
+            Assertions.assertFalse(capture.isTruncated());
+            Assertions.assertEquals(0, overflowed.size());
+        }
+    }
+
+    @Test
+    void testOverflowBelowTheLimit() throws IOException {
+        byte[] output = new byte[10_000];
+        new Random(42).nextBytes(output);
+
+        // the overflow gets the whole output, the first bytes are still captured
+        ByteArrayOutputStream overflowed = new ByteArrayOutputStream();
+        try (OutputCapture capture = new OutputCapture(new BufferPool(1024, 64), 2500, 1000, (data, offset, length) -> {
+            overflowed.write(data, offset, length);
+            return true;
+        })) {
+            capture.read(new ByteArrayInputStream(output));
+
+            Assertions.assertArrayEquals(output, overflowed.toByteArray());
+            Assertions.assertArrayEquals(Arrays.copyOf(output, 2500), capture.toByteArray());
+        }
+
+        // an overflow that gives up does not change the captured bytes
+        try (OutputCapture capture = new OutputCapture(new BufferPool(1024, 64), 2500, 1000, (data, offset, length) -> false)) {
+            capture.read(new ByteArrayInputStream(Arrays.copyOf(output, 2000)));
+
+            Assertions.assertFalse(capture.isTruncated());
+            Assertions.assertArrayEquals(Arrays.copyOf(output, 2000), capture.toByteArray());
+        }
+    }
+
+    @Test
+    void testBuffersAreReused() throws IOException {
+        BufferPool pool = new BufferPool(1024, 64);
+
+        try (OutputCapture capture = new OutputCapture(pool, Integer.MAX_VALUE)) {
+            capture.read(new ByteArrayInputStream(new byte[5000]));
+        }
+        Assertions.assertEquals(5, pool.getPooled());
+
+        try (OutputCapture capture = new OutputCapture(pool, Integer.MAX_VALUE)) {
+            capture.read(new ByteArrayInputStream(new byte[3000]));
+            Assertions.assertEquals(2, pool.getPooled());
+        }
+        Assertions.assertEquals(5, pool.getPooled());
+    }
+
+    @Test
+    void testEmptyOutput() throws IOException {
+        try (OutputCapture capture = new OutputCapture(new BufferPool(), 100)) {
+            capture.read(new ByteArrayInputStream(new byte[0]));
+
+            Assertions.assertFalse(capture.isTruncated());
+            Assertions.assertEquals(0, capture.toByteArray().length);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class ProcessRunnerTest {
+
+    private final ProcessRunner runner = new ProcessRunner(Duration.ofSeconds(1));
+    private final BufferPool pool = new BufferPool();
+
+    @Test
+    void testExitStatusAndOutput() throws Exception {
+        TrackedCommand command = new TrackedCommand("1");
+        try (OutputCapture output = new OutputCapture(pool, 1024)) {
+            int exitStatus = runner.run("printf 'hello'; exit 3", command, Duration.ofSeconds(10), output::read);
+
+            Assertions.assertEquals(3, exitStatus);
+            Assertions.assertEquals("hello", new String(output.toByteArray(), StandardCharsets.UTF_8));
+            Assertions.assertTrue(command.isActive());
+        }
+    }
+
+    @Test
+    void testTimeoutKillsTheProcessTree(@TempDir Path dir) throws Exception {
+        Path pid = dir.resolve("child.pid");
+        TrackedCommand command = new TrackedCommand("2");
+        long start = System.currentTimeMillis();
+
+        try (OutputCapture output = new OutputCapture(pool, 1024)) {
+            runner.run("sleep 30 & echo $! > " + pid + "; wait", command, Duration.ofMillis(500), output::read);
+        }
+
+        Assertions.assertEquals(TrackedCommand.State.TIMED_OUT, command.getState());
+        Assertions.assertTrue(System.currentTimeMillis() - start < 10_000);
+        assertNotAlive(Long.parseLong(Files.readString(pid).trim()));
+    }
+
+    @Test
+    void testCancelKillsTheProcessTree(@TempDir Path dir) throws Exception {
+        Path pid = dir.resolve("child.pid");
+        TrackedCommand command = new TrackedCommand("3");
+
+        CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+            try (OutputCapture output = new OutputCapture(pool, 1024)) {
+                return runner.run("sleep 30 & echo $! > " + pid + "; wait", command, null, output::read);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(pid) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        command.cancel();
+
+        result.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(TrackedCommand.State.CANCELLED, command.getState());
+        assertNotAlive(Long.parseLong(Files.readString(pid).trim()));
+    }
+
+    @Test
+    void testCancelledBeforeStart() throws Exception {
+        TrackedCommand command = new TrackedCommand("4");
+        command.cancel();
+
+        try (OutputCapture output = new OutputCapture(pool, 1024)) {
+            runner.run("sleep 30", command, null, output::read);
+        }
+        Assertions.assertEquals(TrackedCommand.State.CANCELLED, command.getState());
+    }
+
+    @Test
+    void testKillEscalatesToSigkill() throws Exception {
+        // the shell ignores SIGTERM
+        TrackedCommand command = new TrackedCommand("5");
+        long start = System.currentTimeMillis();
+
+        try (OutputCapture output = new OutputCapture(pool, 1024)) {
+            runner.run("trap '' TERM; while true; do sleep 0.1; done", command, Duration.ofMillis(500), output::read);
+        }
+
+        Assertions.assertEquals(TrackedCommand.State.TIMED_OUT, command.getState());
+        Assertions.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    private static void assertNotAlive(long pid) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false), "process " + pid + " is still alive");
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.seqera.tower.agent.exchange.CommandResponse;
+import io.seqera.tower.agent.exchange.MessageCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+class RequestHistoryTest {
+
+    private final MessageCodec codec = new MessageCodec(new ObjectMapper());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRepeatedRequest() throws Exception {
+        RequestHistory history = new RequestHistory(10, 1024, null, codec, Runnable::run);
+        Assertions.assertNull(history.attach("1"));
+
+        // the first request is still running
+        CompletableFuture<CommandResponse> attached = history.attach("1");
+        Assertions.assertNotNull(attached);
+        Assertions.assertFalse(attached.isDone());
+
+        history.complete("1", new CommandResponse("1", "Submitted batch job 42".getBytes(), 0));
+        Assertions.assertEquals("Submitted batch job 42", new String(attached.get().getResult()));
+
+        // the first request has finished
+        CompletableFuture<CommandResponse> repeated = history.attach("1");
+        Assertions.assertTrue(repeated.isDone());
+        Assertions.assertEquals(0, repeated.get().getExitStatus());
+        Assertions.assertEquals(1, history.getAttached());
+        Assertions.assertEquals(1, history.getRepeated());
+    }
+
+    @Test
+    void testForget() throws IOException {
+        RequestHistory history = new RequestHistory(10, 1024, null, codec, Runnable::run);
+        Assertions.assertNull(history.attach("1"));
+        history.forget("1");
+        Assertions.assertNull(history.attach("1"));
+    }
+
+    @Test
+    void testBounded() throws IOException {
+        RequestHistory history = new RequestHistory(3, 100, null, codec, Runnable::run);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertNull(history.attach(String.valueOf(i)));
+            history.complete(String.valueOf(i), new CommandResponse(String.valueOf(i), new byte[40], 0));
+        }
+        Assertions.assertEquals(2, history.getEntries());
+        Assertions.assertEquals(80, history.getSize());
+        Assertions.assertNotNull(history.attach("99"));
+        Assertions.assertNull(history.attach("0"));
+    }
+
+    @Test
+    void testRunningRequestsAreKept() throws IOException {
+        RequestHistory history = new RequestHistory(2, 1024, null, codec, Runnable::run);
+        Assertions.assertNull(history.attach("running"));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertNull(history.attach(String.valueOf(i)));
+            history.complete(String.valueOf(i), new CommandResponse(String.valueOf(i), new byte[0], 0));
+        }
+        Assertions.assertFalse(history.attach("running").isDone());
+    }
+
+    @Test
+    void testDiskBacked() throws Exception {
+        RequestHistory history = new RequestHistory(10, 1024, dir, codec, Runnable::run);
+        Assertions.assertNull(history.attach("job/1"));
+        history.complete("job/1", new CommandResponse("job/1", "Submitted batch job 42".getBytes(), 0));
+
+        // a new agent remembers the requests of the previous one
+        RequestHistory restarted = new RequestHistory(10, 1024, dir, codec, Runnable::run);
+        Assertions.assertEquals(1, restarted.getEntries());
+        CommandResponse response = restarted.attach("job/1").get();
+        Assertions.assertEquals("job/1", response.getId());
+        Assertions.assertEquals("Submitted batch job 42", new String(response.getResult()));
+        Assertions.assertNull(restarted.attach("job/2"));
+    }
+
+    @Test
+    void testDiskReadOnTheExecutor() throws Exception {
+        RequestHistory history = new RequestHistory(10, 1024, dir, codec, Runnable::run);
+        Assertions.assertNull(history.attach("job/1"));
+        history.complete("job/1", new CommandResponse("job/1", "Submitted batch job 42".getBytes(), 0));
+
+        // the read waits for the executor
+        List<Runnable> tasks = new ArrayList<>();
+        RequestHistory restarted = new RequestHistory(10, 1024, dir, codec, tasks::add);
+        CompletableFuture<CommandResponse> attached = restarted.attach("job/1");
+        Assertions.assertFalse(attached.isDone());
+        tasks.get(0).run();
+        Assertions.assertEquals("job/1", attached.get().getId());
+
+        // a busy executor fails the lookup
+        RequestHistory busy = new RequestHistory(10, 1024, dir, codec, task -> {
+            throw new RejectedExecutionException("busy");
+        });
+        Assertions.assertThrows(ExecutionException.class, () -> busy.attach("job/1").get());
+    }
+}
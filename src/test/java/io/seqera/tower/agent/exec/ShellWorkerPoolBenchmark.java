@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Latency of short commands run with a new {@code sh -c} process each time and on a
+ * pool of persistent shell workers. Run it with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class ShellWorkerPoolBenchmark {
+
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 500;
+    private static final String COMMAND = "echo hello";
+
+    @Test
+    void commandLatency() throws Exception {
+        BufferPool buffers = new BufferPool();
+        Duration grace = Duration.ofSeconds(1);
+
+        try (ProcessRunner spawn = new ProcessRunner(grace); ShellWorkerPool pool = new ShellWorkerPool(1, 100, grace)) {
+            report("sh -c per command", measure(spawn, buffers));
+            report("shell worker pool", measure(pool, buffers));
+        }
+    }
+
+    private static long[] measure(CommandRunner runner, BufferPool buffers) throws Exception {
+        long[] times = new long[ITERATIONS];
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            try (OutputCapture output = new OutputCapture(buffers, 1024)) {
+                runner.run(COMMAND, new TrackedCommand("bench"), Duration.ofSeconds(10), output::read);
+            }
+            if (i >= WARMUP) {
+                times[i - WARMUP] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        return times;
+    }
+
+    private static void report(String name, long[] times) {
+        System.out.printf("%-20s p50 %8.3f ms   p99 %8.3f ms%n", name,
+                times[times.length / 2] / 1e6,
+                times[(int) (times.length * 0.99)] / 1e6);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.exec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+class ShellWorkerPoolTest {
+
+    private final ShellWorkerPool pool = new ShellWorkerPool(2, 3, Duration.ofSeconds(1));
+    private final BufferPool buffers = new BufferPool();
+
+    @AfterEach
+    void cleanup() {
+        pool.close();
+    }
+
+    @Test
+    void testExitStatusAndOutput() throws Exception {
+        Assertions.assertEquals("hello", run("printf 'hello'; exit 3", 3));
+        Assertions.assertEquals("a\nb\n", run("echo a; echo b >&2", 0));
+        Assertions.assertEquals("it's \"quoted\"\n", run("echo \"it's \\\"quoted\\\"\"", 0));
+        Assertions.assertEquals("", run("true", 0));
+    }
+
+    @Test
+    void testCommandsAreIsolated() throws Exception {
+        run("cd /; export TW_AGENT_TEST=leaked; set -e", 0);
+        Assertions.assertEquals("\n", run("echo $TW_AGENT_TEST", 0));
+        Assertions.assertNotEquals("/\n", run("pwd", 0));
+        Assertions.assertEquals("", run("cat", 0));
+        Assertions.assertEquals("ok\n", run("false; echo ok", 0));
+    }
+
+    @Test
+    void testOutputLooksLikeTheDelimiter() throws Exception {
+        Assertions.assertEquals("\n__tw_agent_ 1\n", run("printf '\\n__tw_agent_ 1\\n'", 0));
+        Assertions.assertEquals("x\n", run("echo x", 0));
+    }
+
+    @Test
+    void testWorkersAreReused() throws Exception {
+        String first = run("echo $$", 0);
+        Assertions.assertEquals(first, run("echo $$", 0));
+        Assertions.assertEquals(1, pool.getIdle());
+        // The worker is replaced after 3 commands
+        run("true", 0);
+        Assertions.assertEquals(0, pool.getIdle());
+        Assertions.assertNotEquals(first, run("echo $$", 0));
+    }
+
+    @Test
+    void testTimeoutRetiresTheWorker() throws Exception {
+        String first = run("echo $$", 0);
+        TrackedCommand command = new TrackedCommand("1");
+        try (OutputCapture output = new OutputCapture(buffers, 1024)) {
+            pool.run("sleep 30", command, Duration.ofMillis(300), output::read);
+        } catch (Exception e) {
+            // expected when the worker is killed
+        }
+        Assertions.assertEquals(TrackedCommand.State.TIMED_OUT, command.getState());
+        Assertions.assertNotEquals(first, run("echo $$", 0));
+    }
+
+    private String run(String command, int expectedExitStatus) throws Exception {
+        try (OutputCapture output = new OutputCapture(buffers, 1024)) {
+            int exitStatus = pool.run(command, new TrackedCommand("test"), Duration.ofSeconds(10), output::read);
+            Assertions.assertEquals(expectedExitStatus, exitStatus);
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.files;
+
+import io.seqera.tower.agent.exchange.DirSummary;
+import io.seqera.tower.agent.exec.TrackedCommand;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Time to get the size of a generated Nextflow like work directory with {@code du} and
+ * with the scanner: the first scan (including the JIT warm up), a scan that reads every
+ * directory again, and a scan of the unchanged tree. The {@code du} size also counts the
+ * directories themselves. Run it with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class DirectoryScannerBenchmark {
+
+    private static final int PREFIXES = 64;
+    private static final int TASKS_PER_PREFIX = 32;
+    private static final int FILES_PER_TASK = 20;
+
+    @Test
+    void scanWorkDirectory(@TempDir Path dir) throws Exception {
+        generate(dir);
+        System.out.printf("Work directory with %,d files%n", PREFIXES * TASKS_PER_PREFIX * FILES_PER_TASK);
+
+        long start = System.nanoTime();
+        Process du = new ProcessBuilder("du", "-s", "--apparent-size", "-B1", dir.toString()).redirectErrorStream(true).start();
+        String output = new String(du.getInputStream().readAllBytes()).trim();
+        du.waitFor();
+        report("du", start, output.split("\\s+")[0]);
+
+        try (DirectoryScanner scanner = new DirectoryScanner(16, 1_000_000)) {
+            start = System.nanoTime();
+            DirSummary cold = scanner.scan(dir, 2, false, new TrackedCommand("cold"), entry -> {});
+            report("scanner (cold)", start, String.valueOf(cold.getBytes()));
+
+            start = System.nanoTime();
+            DirSummary refresh = scanner.scan(dir, 2, true, new TrackedCommand("refresh"), entry -> {});
+            report("scanner (refresh)", start, String.valueOf(refresh.getBytes()));
+
+            start = System.nanoTime();
+            DirSummary warm = scanner.scan(dir, 2, false, new TrackedCommand("warm"), entry -> {});
+            report("scanner (cached)", start, String.valueOf(warm.getBytes()));
+        }
+    }
+
+    private static void report(String name, long start, String bytes) {
+        System.out.printf("%-18s %8.1f ms  %s bytes%n", name, (System.nanoTime() - start) / 1e6, bytes);
+    }
+
+    private static void generate(Path dir) throws IOException {
+        byte[] content = new byte[512];
+        for (int p = 0; p < PREFIXES; p++) {
+            for (int t = 0; t < TASKS_PER_PREFIX; t++) {
+                Path task = Files.createDirectories(dir.resolve(String.format("%02x/%030x", p, t)));
+                for (int f = 0; f < FILES_PER_TASK; f++) {
+                    Files.write(task.resolve("file" + f), content);
+                }
+            }
+        }
+    }
+}
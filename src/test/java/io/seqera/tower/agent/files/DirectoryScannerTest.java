@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.files;
+
+import io.seqera.tower.agent.exchange.DirSummary;
+import io.seqera.tower.agent.exec.TrackedCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+class DirectoryScannerTest {
+
+    private final DirectoryScanner scanner = new DirectoryScanner(4, 1000);
+
+    @AfterEach
+    void cleanup() {
+        scanner.close();
+    }
+
+    @Test
+    void testTotalsAndEntries(@TempDir Path dir) throws Exception {
+        // a small Nextflow like work directory: work/ab/cdef.../files
+        Path work = Files.createDirectory(dir.resolve("work"));
+        for (String hash : List.of("ab/1234", "ab/5678", "cd/9abc")) {
+            Path task = Files.createDirectories(work.resolve(hash));
+            Files.write(task.resolve(".command.sh"), new byte[100]);
+            Files.write(task.resolve(".exitcode"), new byte[1]);
+        }
+        Files.write(work.resolve("ab/1234/output.bam"), new byte[5000]);
+        Files.createSymbolicLink(work.resolve("ab/5678/input.bam"), work.resolve("ab/1234/output.bam"));
+
+        Map<String, DirSummary> entries = new ConcurrentHashMap<>();
+        DirSummary total = scanner.scan(work, 2, false, new TrackedCommand("1"), entry -> entries.put(entry.getPath(), entry));
+
+        Assertions.assertEquals(8, total.getFiles());
+        Assertions.assertEquals(5, total.getDirectories());
+        Assertions.assertEquals(3 * 101 + 5000 + Files.readAttributes(work.resolve("ab/5678/input.bam"), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size(), total.getBytes());
+        Assertions.assertEquals(3, entries.size());
+        Assertions.assertEquals(5101, entries.get("ab/1234").getBytes());
+        Assertions.assertEquals(2, entries.get("cd/9abc").getFiles());
+    }
+
+    @Test
+    void testUnchangedDirectoriesAreCached(@TempDir Path dir) throws Exception {
+        for (int i = 0; i < 10; i++) {
+            Path task = Files.createDirectories(dir.resolve("t" + i));
+            Files.write(task.resolve("data"), new byte[10]);
+        }
+
+        DirSummary first = scanner.scan(dir, 0, false, new TrackedCommand("1"), entry -> {});
+        Assertions.assertEquals(11, scanner.getDirsRead());
+
+        DirSummary second = scanner.scan(dir, 0, false, new TrackedCommand("2"), entry -> {});
+        Assertions.assertEquals(11, scanner.getDirsRead());
+        Assertions.assertEquals(11, scanner.getCacheHits());
+        Assertions.assertEquals(first.getBytes(), second.getBytes());
+
+        // a new file changes the mtime of its directory only
+        Path added = dir.resolve("t3/more");
+        Files.write(added, new byte[7]);
+        Files.setLastModifiedTime(dir.resolve("t3"), FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        DirSummary third = scanner.scan(dir, 0, false, new TrackedCommand("3"), entry -> {});
+        Assertions.assertEquals(12, scanner.getDirsRead());
+        Assertions.assertEquals(first.getBytes() + 7, third.getBytes());
+        Assertions.assertEquals(first.getFiles() + 1, third.getFiles());
+
+        // a refresh reads everything again
+        scanner.scan(dir, 0, true, new TrackedCommand("4"), entry -> {});
+        Assertions.assertEquals(23, scanner.getDirsRead());
+    }
+
+    @Test
+    void testCacheKeepsTheRecentDirectories(@TempDir Path dir) throws Exception {
+        Path first = Files.createDirectories(dir.resolve("first"));
+        Path second = Files.createDirectories(dir.resolve("second"));
+        Path third = Files.createDirectories(dir.resolve("third"));
+        try (DirectoryScanner small = new DirectoryScanner(1, 2)) {
+            small.scan(first, 0, false, new TrackedCommand("1"), entry -> {});
+            small.scan(second, 0, false, new TrackedCommand("2"), entry -> {});
+            small.scan(first, 0, false, new TrackedCommand("3"), entry -> {});
+            Assertions.assertEquals(1, small.getCacheHits());
+
+            // the cache is full, the directory not scanned for the longest time goes
+            small.scan(third, 0, false, new TrackedCommand("4"), entry -> {});
+            small.scan(first, 0, false, new TrackedCommand("5"), entry -> {});
+            small.scan(second, 0, false, new TrackedCommand("6"), entry -> {});
+            Assertions.assertEquals(2, small.getCacheHits());
+            Assertions.assertEquals(4, small.getDirsRead());
+        }
+    }
+
+    @Test
+    void testCancelledScan(@TempDir Path dir) throws Exception {
+        Files.createDirectories(dir.resolve("a/b"));
+        TrackedCommand command = new TrackedCommand("1");
+        command.cancel();
+        Assertions.assertThrows(CancellationException.class, () -> scanner.scan(dir, 0, false, command, entry -> {}));
+    }
+
+    @Test
+    void testNotADirectory(@TempDir Path dir) throws Exception {
+        Path file = Files.writeString(dir.resolve("file"), "x");
+        Assertions.assertThrows(IOException.class, () -> scanner.scan(file, 0, false, new TrackedCommand("1"), entry -> {}));
+
+        CompletionException error = Assertions.assertThrows(CompletionException.class, () -> scanner.scanAsync(file, 0, false, new TrackedCommand("2"), entry -> {}).join());
+        Assertions.assertInstanceOf(IOException.class, error.getCause());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.files;
+
+import io.seqera.tower.agent.exchange.FileReadRequest;
+import io.seqera.tower.agent.exchange.FileReadResponse;
+import io.seqera.tower.agent.exchange.FileStatRequest;
+import io.seqera.tower.agent.exchange.FileStatResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class FileOperationsTest {
+
+    @Test
+    void testStat(@TempDir Path dir) throws Exception {
+        Path work = Files.createDirectory(dir.resolve("work"));
+        Files.writeString(work.resolve(".exitcode"), "0");
+        Files.createDirectory(work.resolve("ab"));
+        FileOperations files = new FileOperations(List.of(work), 1024);
+
+        FileStatResponse file = files.stat(new FileStatRequest("1", ".exitcode"));
+        Assertions.assertTrue(file.isExists());
+        Assertions.assertEquals(FileStatResponse.TYPE_FILE, file.getType());
+        Assertions.assertEquals(Long.valueOf(1), file.getSize());
+        Assertions.assertNull(file.getError());
+
+        Assertions.assertEquals(FileStatResponse.TYPE_DIRECTORY, files.stat(new FileStatRequest("2", work + "/ab")).getType());
+
+        FileStatResponse missing = files.stat(new FileStatRequest("3", "ab/.command.log"));
+        Assertions.assertFalse(missing.isExists());
+        Assertions.assertNull(missing.getError());
+    }
+
+    @Test
+    void testReadRanges(@TempDir Path dir) throws Exception {
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(content);
+        Files.write(dir.resolve("data.bin"), content);
+        FileOperations files = new FileOperations(List.of(dir), 2 * 1024 * 1024);
+
+        FileReadResponse head = files.read(new FileReadRequest("1", "data.bin", 0, 10L));
+        Assertions.assertArrayEquals(Arrays.copyOf(content, 10), head.getData());
+        Assertions.assertEquals(content.length, head.getSize());
+        Assertions.assertFalse(head.isEof());
+
+        // a large read is capped to the maximum read size
+        FileReadResponse large = files.read(new FileReadRequest("2", "data.bin", 5, null));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(content, 5, 5 + 2 * 1024 * 1024), large.getData());
+        Assertions.assertFalse(large.isEof());
+
+        long next = large.getOffset() + large.getData().length;
+        FileReadResponse rest = files.read(new FileReadRequest("3", "data.bin", next, null));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(content, (int) next, content.length), rest.getData());
+        Assertions.assertTrue(rest.isEof());
+
+        FileReadResponse beyond = files.read(new FileReadRequest("4", "data.bin", content.length + 10, 5L));
+        Assertions.assertEquals(0, beyond.getData().length);
+        Assertions.assertTrue(beyond.isEof());
+    }
+
+    @Test
+    void testAccessIsConfinedToTheRoots(@TempDir Path dir) throws Exception {
+        Path work = Files.createDirectory(dir.resolve("work"));
+        Path scratch = Files.createDirectory(dir.resolve("scratch"));
+        Files.writeString(dir.resolve("secret"), "secret");
+        Files.writeString(scratch.resolve("out.txt"), "out");
+        Files.createSymbolicLink(work.resolve("link"), dir.resolve("secret"));
+        FileOperations files = new FileOperations(List.of(work, scratch), 1024);
+
+        Assertions.assertEquals("out", new String(files.read(new FileReadRequest("1", scratch + "/out.txt", 0, null)).getData(), StandardCharsets.UTF_8));
+
+        FileReadResponse parent = files.read(new FileReadRequest("2", "../secret", 0, null));
+        Assertions.assertEquals(0, parent.getData().length);
+        Assertions.assertTrue(parent.getError().startsWith("Access denied"));
+
+        Assertions.assertNotNull(files.read(new FileReadRequest("3", "/etc/passwd", 0, null)).getError());
+        Assertions.assertNotNull(files.read(new FileReadRequest("4", "link", 0, null)).getError());
+        Assertions.assertNotNull(files.stat(new FileStatRequest("5", "link")).getError());
+        Assertions.assertNotNull(files.read(new FileReadRequest("6", "missing", 0, null)).getError());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.files;
+
+import io.seqera.tower.agent.exchange.AgentMessage;
+import io.seqera.tower.agent.exchange.LogData;
+import io.seqera.tower.agent.exchange.LogSubscribe;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+class LogTailerTest {
+
+    private final List<LogData> sent = new ArrayList<>();
+    private CompletableFuture<?> sending = CompletableFuture.completedFuture(null);
+    private BooleanSupplier capacity = () -> true;
+    private LogTailer tailer;
+
+    @AfterEach
+    void cleanup() {
+        if (tailer != null) {
+            tailer.close();
+        }
+    }
+
+    @Test
+    void testAppendedBytesAreSent(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve(".nextflow.log");
+        Files.writeString(log, "line 1\n");
+        tailer = tailer(dir, 4);
+
+        tailer.subscribe(new LogSubscribe("s1", ".nextflow.log", 0));
+        tailer.poll();
+        Assertions.assertEquals("line 1\n", text());
+        Assertions.assertEquals(2, sent.size());
+        Assertions.assertEquals(4, sent.get(1).getOffset());
+
+        // nothing new, nothing sent
+        sent.clear();
+        tailer.poll();
+        Assertions.assertTrue(sent.isEmpty());
+
+        Files.writeString(log, "line 2\nline 3\n", StandardOpenOption.APPEND);
+        tailer.poll();
+        Assertions.assertEquals("line 2\nline 3\n", text());
+        Assertions.assertEquals(7, sent.get(0).getOffset());
+        Assertions.assertFalse(sent.get(0).isReset());
+
+        tailer.unsubscribe("s1");
+        sent.clear();
+        Files.writeString(log, "line 4\n", StandardOpenOption.APPEND);
+        tailer.poll();
+        Assertions.assertTrue(sent.isEmpty());
+        Assertions.assertEquals(0, tailer.size());
+    }
+
+    @Test
+    void testWaitForTheChunkBeingSent(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve(".nextflow.log");
+        Files.writeString(log, "line 1\n");
+        tailer = tailer(dir, 4);
+
+        // the first chunk is not sent yet, the rest waits for it
+        sending = new CompletableFuture<>();
+        tailer.subscribe(new LogSubscribe("s1", ".nextflow.log", 0));
+        tailer.poll();
+        tailer.poll();
+        Assertions.assertEquals("line", text());
+
+        sending.complete(null);
+        sending = CompletableFuture.completedFuture(null);
+        tailer.poll();
+        Assertions.assertEquals("line 1\n", text());
+        Assertions.assertEquals(4, sent.get(1).getOffset());
+    }
+
+    @Test
+    void testWaitForRoomInTheQueue(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve(".nextflow.log");
+        Files.writeString(log, "line 1\n");
+        tailer = tailer(dir, 4);
+
+        // nothing is read while the outbound queue is full
+        capacity = () -> false;
+        tailer.subscribe(new LogSubscribe("s1", ".nextflow.log", 0));
+        tailer.poll();
+        Assertions.assertTrue(sent.isEmpty());
+
+        capacity = () -> true;
+        tailer.poll();
+        Assertions.assertEquals("line 1\n", text());
+    }
+
+    @Test
+    void testUnsubscribeDoesNotWaitForTheTimer(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve(".nextflow.log");
+        Files.writeString(log, "line 1\n");
+        tailer = tailer(dir, 4);
+        tailer.subscribe(new LogSubscribe("s1", ".nextflow.log", 0));
+
+        // the check of the queue is stuck while the subscription is being tailed
+        CountDownLatch checking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        capacity = () -> {
+            checking.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        };
+        Thread poller = Thread.ofPlatform().start(tailer::poll);
+        try {
+            Assertions.assertTrue(checking.await(5, TimeUnit.SECONDS));
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(1), () -> tailer.unsubscribe("s1"));
+            Assertions.assertEquals(0, tailer.size());
+        } finally {
+            release.countDown();
+            poller.join(5000);
+        }
+    }
+
+    @Test
+    void testSubscribeFromTheEnd(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve(".command.log");
+        Files.writeString(log, "old\n");
+        tailer = tailer(dir, 1024);
+
+        tailer.subscribe(new LogSubscribe("s1", log.toString(), LogSubscribe.OFFSET_END));
+        tailer.poll();
+        Assertions.assertTrue(sent.isEmpty());
+
+        Files.writeString(log, "new\n", StandardOpenOption.APPEND);
+        tailer.poll();
+        Assertions.assertEquals("new\n", text());
+        Assertions.assertEquals(4, sent.get(0).getOffset());
+    }
+
+    @Test
+    void testTruncation(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve("app.log");
+        Files.writeString(log, "a long first line\n");
+        tailer = tailer(dir, 1024);
+        tailer.subscribe(new LogSubscribe("s1", "app.log", 0));
+        tailer.poll();
+
+        sent.clear();
+        Files.writeString(log, "short\n");
+        tailer.poll();
+        Assertions.assertEquals("short\n", text());
+        Assertions.assertTrue(sent.get(0).isReset());
+        Assertions.assertEquals(0, sent.get(0).getOffset());
+    }
+
+    @Test
+    void testRotation(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve("app.log");
+        Files.writeString(log, "one\n");
+        tailer = tailer(dir, 1024);
+        tailer.subscribe(new LogSubscribe("s1", "app.log", 0));
+        tailer.poll();
+
+        sent.clear();
+        Files.writeString(log, "two\n", StandardOpenOption.APPEND);
+        Files.move(log, dir.resolve("app.log.1"));
+        Files.writeString(log, "three\n");
+        tailer.poll();
+
+        Assertions.assertEquals(2, sent.size());
+        Assertions.assertEquals("two\n", new String(sent.get(0).getData(), StandardCharsets.UTF_8));
+        Assertions.assertFalse(sent.get(0).isReset());
+        Assertions.assertEquals("three\n", new String(sent.get(1).getData(), StandardCharsets.UTF_8));
+        Assertions.assertTrue(sent.get(1).isReset());
+    }
+
+    @Test
+    void testErrors(@TempDir Path dir) throws Exception {
+        tailer = tailer(dir, 1024);
+        tailer.subscribe(new LogSubscribe("s1", "missing.log", 0));
+        tailer.subscribe(new LogSubscribe("s2", "/etc/passwd", 0));
+
+        Assertions.assertEquals(2, sent.size());
+        Assertions.assertNotNull(sent.get(0).getError());
+        Assertions.assertTrue(sent.get(1).getError().startsWith("Access denied"));
+        Assertions.assertEquals(0, tailer.size());
+    }
+
+    @Test
+    void testTimer(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve("app.log");
+        Files.writeString(log, "");
+        List<AgentMessage> received = new CopyOnWriteArrayList<>();
+        tailer = new LogTailer(new FileOperations(List.of(dir), 1024), Duration.ofMillis(50), 1024, 10, message -> {
+            received.add(message);
+            return CompletableFuture.completedFuture(null);
+        }, () -> true);
+        tailer.subscribe(new LogSubscribe("s1", "app.log", 0));
+        Files.writeString(log, "hello\n");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals("hello\n", new String(((LogData) received.get(0)).getData(), StandardCharsets.UTF_8));
+    }
+
+    private LogTailer tailer(Path dir, int chunkSize) throws Exception {
+        return new LogTailer(new FileOperations(List.of(dir), 1024), Duration.ZERO, chunkSize, 10, message -> {
+            sent.add((LogData) message);
+            return sending;
+        }, () -> capacity.getAsBoolean());
+    }
+
+    private String text() {
+        StringBuilder builder = new StringBuilder();
+        for (LogData data : sent) {
+            builder.append(new String(data.getData(), StandardCharsets.UTF_8));
+        }
+        return builder.toString();
+    }
+}
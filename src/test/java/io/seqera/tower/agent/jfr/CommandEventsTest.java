@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.jfr;
+
+import io.seqera.tower.agent.exec.BufferPool;
+import io.seqera.tower.agent.exec.OutputCapture;
+import io.seqera.tower.agent.exec.ProcessRunner;
+import io.seqera.tower.agent.exec.TrackedCommand;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+class CommandEventsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testProcessLifecycle() throws Exception {
+        Path file = dir.resolve("agent.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ProcessStartEvent.class);
+            recording.enable(FirstOutputEvent.class);
+            recording.enable(ProcessExitEvent.class);
+            recording.start();
+
+            try (OutputCapture output = new OutputCapture(new BufferPool(), 1024)) {
+                new ProcessRunner(Duration.ofSeconds(1)).run("sleep 0.1; echo hello; exit 3", new TrackedCommand("cmd-1"), Duration.ofSeconds(10), output::read);
+            }
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Map<String, RecordedEvent> byName = events.stream()
+                .filter(it -> "cmd-1".equals(it.getString("requestId")))
+                .collect(Collectors.toMap(it -> it.getEventType().getName(), Function.identity()));
+
+        Assertions.assertEquals("process", byName.get("io.seqera.tower.agent.ProcessStart").getString("runner"));
+        Assertions.assertEquals(3, byName.get("io.seqera.tower.agent.ProcessExit").getInt("exitStatus"));
+
+        // the first output comes after the sleep, and before the process exits
+        RecordedEvent started = byName.get("io.seqera.tower.agent.ProcessStart");
+        RecordedEvent firstOutput = byName.get("io.seqera.tower.agent.FirstOutput");
+        RecordedEvent exited = byName.get("io.seqera.tower.agent.ProcessExit");
+        Assertions.assertTrue(Duration.between(started.getStartTime(), firstOutput.getEndTime()).toMillis() >= 100);
+        Assertions.assertFalse(firstOutput.getEndTime().isAfter(exited.getEndTime()));
+    }
+
+    @Test
+    void testNothingRecordedWhenDisabled() throws Exception {
+        ProcessStartEvent event = new ProcessStartEvent();
+        Assertions.assertFalse(event.isEnabled());
+        event.begin();
+        event.commit("cmd-2", "process");
+    }
+}
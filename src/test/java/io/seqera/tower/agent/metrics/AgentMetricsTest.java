@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class AgentMetricsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testHistogram() {
+        AgentMetrics metrics = new AgentMetrics();
+        Histogram histogram = metrics.histogram("test_seconds", "Test latency", new double[]{0.1, 1});
+        histogram.observe(0.05);
+        histogram.observe(0.5);
+        histogram.observe(0.5);
+        histogram.observe(5);
+
+        Assertions.assertEquals(4, histogram.getCount());
+        Assertions.assertEquals(6.05, histogram.getSum(), 1e-9);
+        String text = metrics.scrape();
+        Assertions.assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+        Assertions.assertTrue(text.contains("test_seconds_bucket{le=\"0.1\"} 1\n"));
+        Assertions.assertTrue(text.contains("test_seconds_bucket{le=\"1.0\"} 3\n"));
+        Assertions.assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 4\n"));
+        Assertions.assertTrue(text.contains("test_seconds_count 4\n"));
+    }
+
+    @Test
+    void testCountersAndGauges() {
+        AgentMetrics metrics = new AgentMetrics();
+        AgentMetrics.Counter counter = metrics.counter("test_total", "Test counter");
+        counter.increment();
+        counter.add(2);
+        metrics.gauge("test_running", "Test gauge", () -> 7);
+        metrics.counter("test_other_total", "Test supplied counter", () -> 11L);
+
+        String text = metrics.scrape();
+        Assertions.assertTrue(text.contains("# HELP test_total Test counter\n# TYPE test_total counter\ntest_total 3\n"));
+        Assertions.assertTrue(text.contains("# TYPE test_running gauge\ntest_running 7.0\n"));
+        Assertions.assertTrue(text.contains("test_other_total 11\n"));
+    }
+
+    @Test
+    void testLabels() {
+        AgentMetrics metrics = new AgentMetrics();
+        Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("workspace-1", 1);
+        values.put("odd\"id", 0);
+        metrics.gauge("test_up", "Test labelled gauge", "connection", () -> values);
+
+        String text = metrics.scrape();
+        Assertions.assertTrue(text.contains("# TYPE test_up gauge\ntest_up{connection=\"workspace-1\"} 1\ntest_up{connection=\"odd\\\"id\"} 0\n"));
+    }
+
+    @Test
+    void testExporter() throws IOException, InterruptedException {
+        AgentMetrics metrics = new AgentMetrics();
+        metrics.getReceivedBytes().add(42);
+
+        try (MetricsExporter exporter = new MetricsExporter(metrics)) {
+            exporter.start("127.0.0.1", 0);
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + exporter.getPort() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode());
+            Assertions.assertEquals(MetricsExporter.CONTENT_TYPE, response.headers().firstValue("Content-Type").orElse(null));
+            Assertions.assertTrue(response.body().contains("tw_agent_received_bytes_total 42\n"));
+
+            Path file = dir.resolve("tw-agent.prom");
+            exporter.write(file);
+            Assertions.assertEquals(metrics.scrape(), Files.readString(file));
+        }
+    }
+}
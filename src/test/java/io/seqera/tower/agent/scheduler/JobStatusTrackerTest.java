@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import io.seqera.tower.agent.exchange.JobStatus;
+import io.seqera.tower.agent.exec.BufferPool;
+import io.seqera.tower.agent.exec.ProcessRunner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class JobStatusTrackerTest {
+
+    private final ProcessRunner runner = new ProcessRunner(Duration.ofSeconds(1));
+    private final BufferPool pool = new BufferPool();
+
+    @Test
+    void testJobsAreAnsweredFromTheIndex(@TempDir Path dir) throws Exception {
+        // a fake squeue that counts its calls
+        fakeScheduler(dir, "squeue", "echo x >> " + dir.resolve("calls") + "\nprintf '101 PD\\n102 R\\n'\n");
+        JobStatusTracker tracker = tracker(dir, new SlurmParser(), Duration.ofMinutes(1));
+
+        List<JobStatus> jobs = tracker.query().get(List.of("102", "101", "999"));
+        Assertions.assertEquals(JobStatus.State.RUNNING, jobs.get(0).getState());
+        Assertions.assertEquals(JobStatus.State.PENDING, jobs.get(1).getState());
+        Assertions.assertEquals(JobStatus.State.NOT_FOUND, jobs.get(2).getState());
+        Assertions.assertEquals(2, tracker.query().get(null).size());
+
+        // concurrent queries share one poll
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JobStatusTracker.Snapshot>> queries = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                queries.add(executor.submit(tracker::query));
+            }
+            for (Future<JobStatusTracker.Snapshot> query : queries) {
+                Assertions.assertEquals(2, query.get(10, TimeUnit.SECONDS).size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, tracker.getPolls());
+        Assertions.assertEquals(1, Files.readAllLines(dir.resolve("calls")).size());
+    }
+
+    @Test
+    void testIndexIsRefreshedAfterTheInterval(@TempDir Path dir) throws Exception {
+        Path state = dir.resolve("state");
+        Files.writeString(state, "PEND");
+        fakeScheduler(dir, "bjobs", "echo 'JOBID USER STAT QUEUE FROM_HOST EXEC_HOST JOB_NAME SUBMIT_TIME'\necho \"7 jdoe $(cat " + state + ") normal login - nf Oct 18 10:00\"\n");
+        JobStatusTracker tracker = tracker(dir, new LsfParser(), Duration.ofMillis(200));
+
+        Assertions.assertEquals(JobStatus.State.PENDING, tracker.query().get(List.of("7")).get(0).getState());
+        Files.writeString(state, "DONE");
+        Assertions.assertEquals(JobStatus.State.PENDING, tracker.query().get(List.of("7")).get(0).getState());
+
+        Thread.sleep(300);
+        Assertions.assertEquals(JobStatus.State.DONE, tracker.query().get(List.of("7")).get(0).getState());
+        Assertions.assertEquals(2, tracker.getPolls());
+    }
+
+    @Test
+    void testPollFailure(@TempDir Path dir) throws Exception {
+        fakeScheduler(dir, "qstat", "echo 'qstat: cannot connect to server' >&2\nexit 2\n");
+        JobStatusTracker tracker = tracker(dir, new PbsParser(), Duration.ofMinutes(1));
+
+        IOException e = Assertions.assertThrows(IOException.class, tracker::query);
+        Assertions.assertTrue(e.getMessage().contains("cannot connect to server"));
+        // the failure is reported until the next poll is due
+        Assertions.assertThrows(IOException.class, tracker::query);
+        Assertions.assertEquals(1, tracker.getPolls());
+    }
+
+    private JobStatusTracker tracker(Path dir, SchedulerParser parser, Duration interval) {
+        String command = "PATH=" + dir + ":$PATH; " + parser.pollCommand("jdoe");
+        return new JobStatusTracker(parser, command, interval, runner, pool);
+    }
+
+    private static void fakeScheduler(Path dir, String name, String script) throws IOException {
+        Path path = dir.resolve(name);
+        Files.writeString(path, "#!/bin/sh\n" + script);
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwxr-xr-x"));
+    }
+}
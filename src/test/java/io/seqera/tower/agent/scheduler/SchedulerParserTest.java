@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.scheduler;
+
+import io.seqera.tower.agent.exchange.JobStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+class SchedulerParserTest {
+
+    @Test
+    void testSlurm() {
+        SchedulerParser parser = SchedulerParsers.get("slurm");
+        Assertions.assertEquals("squeue --noheader -o '%i %t' -u 'jdoe'", parser.pollCommand("jdoe"));
+
+        Map<String, JobStatus> jobs = parser.parse("1001 PD\n1002 R\n1003_4 CG\n1004 CA\n1005 XX\n\nslurm_load_jobs error: whatever\n");
+        Assertions.assertEquals(5, jobs.size());
+        Assertions.assertEquals(JobStatus.State.PENDING, jobs.get("1001").getState());
+        Assertions.assertEquals(JobStatus.State.RUNNING, jobs.get("1002").getState());
+        Assertions.assertEquals(JobStatus.State.RUNNING, jobs.get("1003_4").getState());
+        Assertions.assertEquals(JobStatus.State.ERROR, jobs.get("1004").getState());
+        Assertions.assertEquals(JobStatus.State.UNKNOWN, jobs.get("1005").getState());
+        Assertions.assertEquals("XX", jobs.get("1005").getStatus());
+    }
+
+    @Test
+    void testPbs() {
+        String output = "Job Id: 12.pbs-server\n"
+                + "    Job_Name = nf-hello\n"
+                + "    job_state = R\n"
+                + "    queue = workq\n"
+                + "\n"
+                + "Job Id: 13.pbs-server\n"
+                + "    job_state = Q\n";
+
+        Map<String, JobStatus> jobs = SchedulerParsers.get("PBS").parse(output);
+        Assertions.assertEquals(2, jobs.size());
+        Assertions.assertEquals(JobStatus.State.RUNNING, jobs.get("12.pbs-server").getState());
+        Assertions.assertEquals(JobStatus.State.PENDING, jobs.get("13.pbs-server").getState());
+    }
+
+    @Test
+    void testLsf() {
+        String output = "JOBID   USER    STAT  QUEUE      FROM_HOST   EXEC_HOST   JOB_NAME   SUBMIT_TIME\n"
+                + "3001    jdoe    RUN   normal     login1      node12      nf-a       Oct 18 10:00\n"
+                + "3002    jdoe    PEND  normal     login1      -           nf-b       Oct 18 10:01\n"
+                + "3003    jdoe    EXIT  normal     login1      node13      nf-c       Oct 18 09:00\n";
+
+        Map<String, JobStatus> jobs = SchedulerParsers.get("lsf").parse(output);
+        Assertions.assertEquals(3, jobs.size());
+        Assertions.assertEquals(JobStatus.State.RUNNING, jobs.get("3001").getState());
+        Assertions.assertEquals(JobStatus.State.PENDING, jobs.get("3002").getState());
+        Assertions.assertEquals(JobStatus.State.ERROR, jobs.get("3003").getState());
+        Assertions.assertTrue(SchedulerParsers.get("lsf").parse("No unfinished job found\n").isEmpty());
+    }
+
+    @Test
+    void testUnknownScheduler() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SchedulerParsers.get("condor"));
+    }
+}
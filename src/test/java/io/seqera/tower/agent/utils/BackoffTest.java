@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+class BackoffTest {
+
+    @Test
+    void testGrowsUpToTheMaximum() {
+        Backoff backoff = new Backoff(Duration.ofSeconds(1), Duration.ofSeconds(10), 2, new Random(42));
+        long[] bounds = {1000, 2000, 4000, 8000, 10000, 10000};
+        for (long bound : bounds) {
+            long delay = backoff.next().toMillis();
+            Assertions.assertTrue(delay >= bound / 2 && delay <= bound, delay + " ms");
+        }
+    }
+
+    @Test
+    void testReset() {
+        Backoff backoff = new Backoff(Duration.ofSeconds(1), Duration.ofMinutes(1), 2, new Random(42));
+        backoff.next();
+        backoff.next();
+        backoff.next();
+        Assertions.assertEquals(3, backoff.getAttempts());
+
+        backoff.reset();
+        Assertions.assertEquals(0, backoff.getAttempts());
+        Assertions.assertTrue(backoff.next().toMillis() <= 1000);
+    }
+
+    @Test
+    void testJitter() {
+        Backoff lowest = new Backoff(Duration.ofSeconds(1), Duration.ofMinutes(1), 2, fixed(0));
+        Backoff highest = new Backoff(Duration.ofSeconds(1), Duration.ofMinutes(1), 2, fixed(1));
+        Assertions.assertEquals(Duration.ofMillis(500), lowest.next());
+        Assertions.assertEquals(Duration.ofMillis(1000), highest.next());
+        Assertions.assertEquals(Duration.ofMillis(1000), lowest.next());
+        Assertions.assertEquals(Duration.ofMillis(2000), highest.next());
+    }
+
+    @Test
+    void testInvalidSettings() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Backoff(Duration.ZERO, Duration.ofSeconds(1), 2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Backoff(Duration.ofSeconds(2), Duration.ofSeconds(1), 2));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Backoff(Duration.ofSeconds(1), Duration.ofSeconds(2), 0.5));
+    }
+
+    private static Random fixed(double value) {
+        return new Random() {
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+}
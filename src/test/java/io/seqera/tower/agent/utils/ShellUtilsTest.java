@@ -0,0 +1,29 @@
+/*
+ * Copyright 2021-2026, Seqera.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.seqera.tower.agent.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ShellUtilsTest {
+
+    @Test
+    void testQuote() {
+        Assertions.assertEquals("'jdoe'", ShellUtils.quote("jdoe"));
+        Assertions.assertEquals("''", ShellUtils.quote(""));
+        Assertions.assertEquals("'it'\\''s $HOME'", ShellUtils.quote("it's $HOME"));
+    }
+}